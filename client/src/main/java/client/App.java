@@ -4,9 +4,16 @@ import client.utility.AuthHandler;
 import client.utility.UserHandler;
 import common.exceptions.NotInDeclaredLimitsException;
 import common.exceptions.WrongAmountOfElementsException;
+import common.interaction.CodecType;
+import common.interaction.CompressionType;
+import common.interaction.Handshake;
+import common.interaction.StreamResetPolicy;
 import common.utility.Outputer;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main client class. Creates all client instances.
@@ -18,16 +25,22 @@ public class App {
 
     private static final int RECONNECTION_TIMEOUT = 5 * 1000;
     private static final int MAX_RECONNECTION_ATTEMPTS = 5;
+    private static final int MAX_REQUESTS_IN_FLIGHT = 16;
 
     private static String host;
     private static int port;
+    private static Path unixSocket;
+    private static long requestTimeout;
+    private static Handshake connectionSettings;
+    private static StreamResetPolicy resetPolicy;
 
     public static void main(String[] args) {
         if (!initialize(args)) return;
         Scanner userScanner = new Scanner(System.in);
         AuthHandler authHandler = new AuthHandler(userScanner);
         UserHandler userHandler = new UserHandler(userScanner);
-        Client client = new Client(host, port, RECONNECTION_TIMEOUT, MAX_RECONNECTION_ATTEMPTS, userHandler, authHandler);
+        Client client = new Client(host, port, unixSocket, RECONNECTION_TIMEOUT, MAX_RECONNECTION_ATTEMPTS, MAX_REQUESTS_IN_FLIGHT,
+                requestTimeout, connectionSettings, resetPolicy, userHandler, authHandler);
         client.run();
         userScanner.close();
     }
@@ -37,10 +50,22 @@ public class App {
      */
     private static boolean initialize(String[] args) {
         try {
-            if (args.length != 2) throw new WrongAmountOfElementsException();
-            host = args[0];
-            port = Integer.parseInt(args[1]);
-            if (port < 0) throw new NotInDeclaredLimitsException();
+            String unixSocketFile = System.getProperty("client.unixSocket");
+            if (unixSocketFile != null) unixSocket = Paths.get(unixSocketFile);
+            if (args.length != 2 && (unixSocket == null || args.length != 0))
+                throw new WrongAmountOfElementsException();
+            if (args.length == 2) {
+                host = args[0];
+                port = Integer.parseInt(args[1]);
+                if (port < 0) throw new NotInDeclaredLimitsException();
+            }
+            connectionSettings = new Handshake(
+                    CodecType.parseList(System.getProperty("client.codecs", "binary,object")),
+                    CompressionType.parseList(System.getProperty("client.compressions", "deflate,none")));
+            resetPolicy = new StreamResetPolicy(Integer.getInteger("client.resetMessages", 1000),
+                    Long.getLong("client.resetBytes", 1024 * 1024));
+            requestTimeout = TimeUnit.SECONDS.toMillis(Integer.getInteger("client.requestTimeout", 0));
+            if (requestTimeout < 0) throw new NotInDeclaredLimitsException();
             return true;
         } catch (WrongAmountOfElementsException exception) {
             String jarName = new java.io.File(App.class.getProtectionDomain()
@@ -48,11 +73,14 @@ public class App {
                     .getLocation()
                     .getPath())
                     .getName();
-            Outputer.println("спользование: 'java -jar " + jarName + " <host> <port>'");
+            Outputer.println("спользование: 'java -jar " + jarName + " <host> <port>' или 'java " +
+                    "-Dclient.unixSocket=<file> -jar " + jarName + "'");
         } catch (NumberFormatException exception) {
             Outputer.printerror("Port should be represented by a number!");
+        } catch (IllegalArgumentException exception) {
+            Outputer.printerror("Codecs (binary, object) and compressions (deflate, none) should be listed by comma!");
         } catch (NotInDeclaredLimitsException exception) {
-            Outputer.printerror("Port cannot be negative!");
+            Outputer.printerror("Port and request timeout cannot be negative!");
         }
         return false;
     }
@@ -1,41 +1,80 @@
 package client;
 
 import client.utility.AuthHandler;
+import client.utility.PendingResponse;
+import client.utility.RequestPipeline;
 import client.utility.UserHandler;
 import common.exceptions.ConnectionErrorException;
 import common.exceptions.NotInDeclaredLimitsException;
+import common.interaction.ChannelStreams;
+import common.interaction.Handshake;
+import common.interaction.MessageStream;
 import common.interaction.Request;
 import common.interaction.Response;
+import common.interaction.StreamResetPolicy;
 import common.interaction.ResponseCode;
 import common.interaction.User;
 import common.utility.Outputer;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Runs the client.
+ * Runs the client. Client on the same host as the server can connect by the Unix domain socket instead of TCP.
+ * Request, that the busy server didn't run, is repeated after the time the server asked for, and each next time
+ * the client waits twice longer. Script sends fewer requests at once, while the server is busy.
  */
 public class Client {
+    private static final int MAX_BUSY_RETRIES = 5;
+    private static final long MAX_BUSY_DELAY = 10 * 1000;
+
     private String host;
     private int port;
+    private Path unixSocket;
     private int reconnectionTimeout;
     private int reconnectionAttempts;
     private int maxReconnectionAttempts;
+    private int maxRequestsInFlight;
+    private int requestWindow;
+    private long requestTimeout;
+    private Handshake connectionSettings;
+    private StreamResetPolicy resetPolicy;
     private UserHandler userHandler;
     private SocketChannel socketChannel;
-    private ObjectOutputStream serverWriter;
-    private ObjectInputStream serverReader;
+    private RequestPipeline requestPipeline;
     private AuthHandler authHandler;
     private User user;
 
-    public Client(String host, int port, int reconnectionTimeout, int maxReconnectionAttempts, UserHandler userHandler,
-                  AuthHandler authHandler) {
+    public Client(String host, int port, int reconnectionTimeout, int maxReconnectionAttempts,
+                  int maxRequestsInFlight, Handshake connectionSettings, StreamResetPolicy resetPolicy,
+                  UserHandler userHandler, AuthHandler authHandler) {
+        this(host, port, null, reconnectionTimeout, maxReconnectionAttempts, maxRequestsInFlight, 0,
+                connectionSettings, resetPolicy, userHandler, authHandler);
+    }
+
+    /**
+     * @param unixSocket     File of the Unix domain socket of the server, null if the client connects by TCP.
+     * @param requestTimeout Milliseconds, after which the server doesn't execute requests, 0 if it always does.
+     */
+    public Client(String host, int port, Path unixSocket, int reconnectionTimeout, int maxReconnectionAttempts,
+                  int maxRequestsInFlight, long requestTimeout, Handshake connectionSettings,
+                  StreamResetPolicy resetPolicy, UserHandler userHandler, AuthHandler authHandler) {
         this.host = host;
+        this.unixSocket = unixSocket;
         this.port = port;
         this.reconnectionTimeout = reconnectionTimeout;
         this.maxReconnectionAttempts = maxReconnectionAttempts;
+        this.maxRequestsInFlight = maxRequestsInFlight;
+        this.requestWindow = maxRequestsInFlight;
+        this.requestTimeout = requestTimeout;
+        this.connectionSettings = connectionSettings;
+        this.resetPolicy = resetPolicy;
         this.userHandler = userHandler;
         this.authHandler = authHandler;
     }
@@ -56,19 +95,11 @@ public class Client {
                         Outputer.printerror("Maximum connection attempts exceeded!");
                         break;
                     }
-                    try {
-                        Thread.sleep(reconnectionTimeout);
-                    } catch (IllegalArgumentException timeoutException) {
-                        Outputer.printerror("Connection timeout '" + reconnectionTimeout +
-                                "' is out of possible range!");
-                        Outputer.println("Reconnecting immediately.");
-                    } catch (Exception timeoutException) {
-                        Outputer.printerror("An error occurred while waiting for connection!");
-                        Outputer.println("Reconnecting immediately.");
-                    }
+                    waitBeforeReconnection();
                 }
                 reconnectionAttempts++;
             }
+            if (requestPipeline != null) requestPipeline.close();
             if (socketChannel != null) socketChannel.close();
             Outputer.println("Client work completed.");
         } catch (NotInDeclaredLimitsException exception) {
@@ -84,11 +115,19 @@ public class Client {
     private void connectToServer() throws ConnectionErrorException, NotInDeclaredLimitsException {
         try {
             if (reconnectionAttempts >= 1) Outputer.println("Reconnecting to server...");
-            socketChannel = SocketChannel.open(new InetSocketAddress(host, port));
+            if (requestPipeline != null) requestPipeline.close();
+            socketChannel = SocketChannel.open(unixSocket != null ? UnixDomainSocketAddress.of(unixSocket) :
+                    new InetSocketAddress(host, port));
             Outputer.println("Connected to server.");
             Outputer.println("Waiting for permission to exchange data...");
-            serverWriter = new ObjectOutputStream(socketChannel.socket().getOutputStream());
-            serverReader = new ObjectInputStream(socketChannel.socket().getInputStream());
+            MessageStream serverStream = new MessageStream(ChannelStreams.newInputStream(socketChannel),
+                    ChannelStreams.newOutputStream(socketChannel), resetPolicy);
+            if (serverStream.offer(connectionSettings).getCodec() == null) {
+                Outputer.printerror("Server doesn't support any codec of the client!");
+                serverStream.close();
+                throw new NotInDeclaredLimitsException();
+            }
+            requestPipeline = new RequestPipeline(serverStream, requestTimeout);
             Outputer.println("Permission to exchange data received.");
         } catch (IllegalArgumentException exception) {
             Outputer.printerror("Server address entered incorrectly!");
@@ -99,28 +138,60 @@ public class Client {
         }
     }
 
+    /**
+     * Connecting to the restarting server. Every attempt waits for the new server to start.
+     */
+    private void reconnectLater() throws ConnectionErrorException, NotInDeclaredLimitsException {
+        for (int attempt = 1; ; attempt++) {
+            waitBeforeReconnection();
+            try {
+                connectToServer();
+                return;
+            } catch (ConnectionErrorException exception) {
+                if (attempt >= maxReconnectionAttempts) throw exception;
+            }
+        }
+    }
+
+    /**
+     * Waits the reconnection timeout.
+     */
+    private void waitBeforeReconnection() {
+        try {
+            Thread.sleep(reconnectionTimeout);
+        } catch (IllegalArgumentException timeoutException) {
+            Outputer.printerror("Connection timeout '" + reconnectionTimeout + "' is out of possible range!");
+            Outputer.println("Reconnecting immediately.");
+        } catch (Exception timeoutException) {
+            Outputer.printerror("An error occurred while waiting for connection!");
+            Outputer.println("Reconnecting immediately.");
+        }
+    }
+
     /**
      * Server request process.
+     * Commands of a script are sent without waiting for the previous responses, responses are printed in order.
      */
     private void processRequestToServer() {
         Request requestToServer = null;
-        Response serverResponse = null;
+        ResponseCode serverResponseCode = null;
+        Deque<PendingResponse> unansweredRequests = new ArrayDeque<>();
         do {
             try {
-                requestToServer = serverResponse != null ? userHandler.handle(serverResponse.getResponseCode(), user) :
-                        userHandler.handle(null, user);
+                requestToServer = userHandler.handle(serverResponseCode, user);
                 if (requestToServer.isEmpty()) continue;
-                serverWriter.writeObject(requestToServer);
-                serverResponse = (Response) serverReader.readObject();
-                Outputer.print(serverResponse.getResponseBody());
+                unansweredRequests.add(requestPipeline.send(requestToServer));
+                int maxUnansweredRequests = userHandler.isScriptMode() &&
+                        !requestToServer.getCommandName().equals("exit") ? requestWindow - 1 : 0;
+                serverResponseCode = printResponses(unansweredRequests, maxUnansweredRequests);
             } catch (InvalidClassException | NotSerializableException exception) {
                 Outputer.printerror("An error occurred while sending data to the server!");
-            } catch (ClassNotFoundException exception) {
-                Outputer.printerror("An error occurred while reading received data!");
             } catch (IOException exception) {
                 Outputer.printerror("The connection to the server has been terminated!");
+                unansweredRequests.clear();
                 try {
-                    connectToServer();
+                    if (requestPipeline.isReconnectAsked()) reconnectLater();
+                    else connectToServer();
                 } catch (ConnectionErrorException | NotInDeclaredLimitsException reconnectionException) {
                     if (requestToServer.getCommandName().equals("exit"))
                         Outputer.println("The command will not be registered on the server.");
@@ -130,6 +201,70 @@ public class Client {
         } while (!requestToServer.getCommandName().equals("exit"));
     }
 
+    /**
+     * Prints responses in the order of requests, until there are not more unanswered requests than allowed.
+     * Chunks of the first unanswered response are printed as soon as they arrive.
+     *
+     * @param unansweredRequests    Responses, that will come, in the order of requests.
+     * @param maxUnansweredRequests How many requests can stay unanswered.
+     * @return Error code, if some of the printed responses has it, otherwise code of the last printed response.
+     * @throws IOException When connection is broken.
+     */
+    private ResponseCode printResponses(Deque<PendingResponse> unansweredRequests,
+                                        int maxUnansweredRequests) throws IOException {
+        ResponseCode serverResponseCode = null;
+        while (unansweredRequests.size() > maxUnansweredRequests) {
+            Response serverResponse = receiveResponse(unansweredRequests.poll());
+            Outputer.print(serverResponse.getResponseBody());
+            if (serverResponseCode != ResponseCode.ERROR && serverResponseCode != ResponseCode.SERVER_EXIT)
+                serverResponseCode = serverResponse.getResponseCode();
+        }
+        return serverResponseCode;
+    }
+
+    /**
+     * Prints chunks of the response and waits for its end. Request, that the server was too busy to run, is repeated.
+     *
+     * @param pendingResponse Response, that will come.
+     * @return Final response.
+     * @throws IOException When connection is broken.
+     */
+    private Response receiveResponse(PendingResponse pendingResponse) throws IOException {
+        Response serverResponse;
+        for (int busyRetries = 0; ; busyRetries++) {
+            while ((serverResponse = pendingResponse.next()).getResponseCode() == ResponseCode.CHUNK)
+                Outputer.print(serverResponse.getResponseBody());
+            if (serverResponse.getResponseCode() != ResponseCode.BUSY) {
+                requestWindow = Math.min(maxRequestsInFlight, requestWindow + 1);
+                return serverResponse;
+            }
+            requestWindow = Math.max(1, requestWindow / 2);
+            if (busyRetries >= MAX_BUSY_RETRIES) return serverResponse;
+            waitWhileBusy(serverResponse.getRetryAfter(), busyRetries);
+            pendingResponse = requestPipeline.send(pendingResponse.getRequest());
+        }
+    }
+
+    /**
+     * Waits before repeating the request, that the busy server didn't run.
+     * Time is random in the second half of the delay, so clients don't come back all at once.
+     *
+     * @param retryAfter  Milliseconds, that the server asked to wait.
+     * @param busyRetries How many times the request was already repeated.
+     * @throws InterruptedIOException When the client is interrupted.
+     */
+    private void waitWhileBusy(long retryAfter, int busyRetries) throws InterruptedIOException {
+        long delay = Math.min(MAX_BUSY_DELAY, Math.max(1, retryAfter) << busyRetries);
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        Outputer.println("Server is busy, the command is repeated in " + delay + " ms.");
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
     /**
      * Handle process authentication.
      */
@@ -140,17 +275,15 @@ public class Client {
             try {
                 requestToServer = authHandler.handle();
                 if (requestToServer.isEmpty()) continue;
-                serverWriter.writeObject(requestToServer);
-                serverResponse = (Response) serverReader.readObject();
+                serverResponse = receiveResponse(requestPipeline.send(requestToServer));
                 Outputer.print(serverResponse.getResponseBody());
             } catch (InvalidClassException | NotSerializableException exception) {
                 Outputer.printerror("An error occurred while sending data to the server!");
-            } catch (ClassNotFoundException exception) {
-                Outputer.printerror("An error occurred while reading received data!");
             } catch (IOException exception) {
                 Outputer.printerror("The connection to the server has been terminated!");
                 try {
-                    connectToServer();
+                    if (requestPipeline.isReconnectAsked()) reconnectLater();
+                    else connectToServer();
                 } catch (ConnectionErrorException | NotInDeclaredLimitsException reconnectionException) {
                     Outputer.println("Try repeating authentication later.");
                 }
@@ -0,0 +1,72 @@
+package client.utility;
+
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Response to one sent request, that comes by parts: chunks and then the final response.
+ */
+public class PendingResponse {
+    private static final Response CONNECTION_LOST = new Response(ResponseCode.ERROR, "");
+
+    private Request request;
+    private BlockingQueue<Response> parts = new LinkedBlockingQueue<>();
+    private volatile IOException failure;
+
+    /**
+     * @param request Request, this response is for.
+     */
+    PendingResponse(Request request) {
+        this.request = request;
+    }
+
+    /**
+     * @return Request, this response is for, e.g. to repeat it.
+     */
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * @param part Chunk or final response.
+     */
+    void add(Response part) {
+        parts.add(part);
+    }
+
+    /**
+     * Marks response as lost.
+     *
+     * @param failure Why connection was broken.
+     */
+    void fail(IOException failure) {
+        this.failure = failure;
+        parts.add(CONNECTION_LOST);
+    }
+
+    /**
+     * Waits for the next part.
+     *
+     * @return Chunk with code CHUNK or the final response.
+     * @throws IOException When connection was broken before the response came.
+     */
+    public Response next() throws IOException {
+        try {
+            Response part = parts.take();
+            if (part == CONNECTION_LOST) {
+                parts.add(part);
+                throw failure;
+            }
+            return part;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
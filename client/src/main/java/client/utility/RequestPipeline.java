@@ -0,0 +1,110 @@
+package client.utility;
+
+import common.interaction.MessageStream;
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+import common.utility.Outputer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests without waiting for previous responses.
+ * Responses can come in any order, they are matched with requests by request ID.
+ * Big responses come by chunks, which are given out as soon as they arrive.
+ * Heartbeats of the server are answered automatically.
+ * Stopping server asks to reconnect later, then closes the connection.
+ * Requests can have a timeout, after which the server doesn't execute them.
+ */
+public class RequestPipeline implements Closeable {
+    private MessageStream serverStream;
+    private long requestTimeout;
+    private Map<Long, PendingResponse> pendingResponses = new ConcurrentHashMap<>();
+    private AtomicLong lastRequestId = new AtomicLong();
+    private volatile IOException failure;
+    private volatile boolean isReconnectAsked;
+
+    public RequestPipeline(MessageStream serverStream) {
+        this(serverStream, 0);
+    }
+
+    /**
+     * @param requestTimeout Milliseconds, after which the response isn't needed, 0 if it is always needed.
+     */
+    public RequestPipeline(MessageStream serverStream, long requestTimeout) {
+        this.serverStream = serverStream;
+        this.requestTimeout = requestTimeout;
+        Thread receiver = new Thread(this::receiveResponses, "response-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Gives request an ID and sends it to the server.
+     *
+     * @param request Request to send.
+     * @return Response to the request, that will come.
+     * @throws IOException When connection is broken.
+     */
+    public PendingResponse send(Request request) throws IOException {
+        long requestId = lastRequestId.incrementAndGet();
+        request.setRequestId(requestId);
+        if (request.getTimeout() == 0) request.setTimeout(requestTimeout);
+        PendingResponse response = new PendingResponse(request);
+        pendingResponses.put(requestId, response);
+        try {
+            if (failure != null) throw failure;
+            serverStream.send(request);
+        } catch (IOException exception) {
+            pendingResponses.remove(requestId);
+            throw exception;
+        }
+        return response;
+    }
+
+    /**
+     * @return Did the server ask to reconnect later, because it stops.
+     */
+    public boolean isReconnectAsked() {
+        return isReconnectAsked;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverStream.close();
+    }
+
+    /**
+     * Receiving cycle. Answers heartbeats. Prints server errors, that don't belong to any request.
+     * Fails all unanswered requests, when connection is broken.
+     */
+    private void receiveResponses() {
+        try {
+            while (true) {
+                Response response = (Response) serverStream.receive();
+                if (response.getResponseCode() == ResponseCode.HEARTBEAT) {
+                    serverStream.trySend(Request.heartbeat());
+                    continue;
+                }
+                if (response.getResponseCode() == ResponseCode.RECONNECT) isReconnectAsked = true;
+                PendingResponse pendingResponse = response.getResponseCode() == ResponseCode.CHUNK ?
+                        pendingResponses.get(response.getRequestId()) :
+                        pendingResponses.remove(response.getRequestId());
+                if (pendingResponse != null) pendingResponse.add(response);
+                else if (response.getRequestId() == 0) Outputer.print(response.getResponseBody());
+            }
+        } catch (IOException exception) {
+            failure = exception;
+        } catch (ClassNotFoundException | ClassCastException exception) {
+            failure = new IOException(exception);
+        }
+        for (Long requestId : pendingResponses.keySet()) {
+            PendingResponse pendingResponse = pendingResponses.remove(requestId);
+            if (pendingResponse != null) pendingResponse.fail(failure);
+        }
+    }
+}
@@ -49,11 +49,7 @@ public class UserHandler {
                     if (fileMode() && (serverResponseCode == ResponseCode.ERROR ||
                             serverResponseCode == ResponseCode.SERVER_EXIT))
                         throw new IncorrectInputInScriptException();
-                    while (fileMode() && !userScanner.hasNextLine()) {
-                        userScanner.close();
-                        userScanner = scannerStack.pop();
-                        scriptStack.pop();
-                    }
+                    closeFinishedScripts();
                     if (fileMode()) {
                         userInput = userScanner.nextLine();
                         if (!userInput.isEmpty()) {
@@ -241,6 +237,31 @@ public class UserHandler {
         );
     }
 
+    /**
+     * Checks if next command will be taken from a script.
+     *
+     * @return Is there one more command in scripts.
+     */
+    public boolean isScriptMode() {
+        try {
+            closeFinishedScripts();
+        } catch (IllegalStateException exception) {
+            return false;
+        }
+        return fileMode();
+    }
+
+    /**
+     * Returns to the calling input from the scripts, that have no more lines.
+     */
+    private void closeFinishedScripts() {
+        while (fileMode() && !userScanner.hasNextLine()) {
+            userScanner.close();
+            userScanner = scannerStack.pop();
+            scriptStack.pop();
+        }
+    }
+
     /**
      * Checks if UserHandler is in file mode now.
      *
@@ -2,13 +2,14 @@ package common.data;
 
 import common.interaction.User;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Main character. Is stored in the collection.
  */
-public class SpaceMarine implements Comparable<SpaceMarine> {
+public class SpaceMarine implements Comparable<SpaceMarine>, Serializable {
     public static final int MAX_Y = 262;
     public static final double MIN_HEALTH = 0;
     public static final long MIN_MARINES = 1;
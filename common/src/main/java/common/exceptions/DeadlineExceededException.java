@@ -0,0 +1,7 @@
+package common.exceptions;
+
+/**
+ * Is throwed when the request isn't finished before its deadline.
+ */
+public class DeadlineExceededException extends Exception {
+}
@@ -0,0 +1,36 @@
+package common.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Is throwed when received message breaks the limits of the stream.
+ */
+public class MessageRejectedException extends IOException {
+    private long requestId;
+    private boolean isStreamBroken;
+
+    /**
+     * @param reason         Which limit is broken.
+     * @param requestId      ID of the rejected request, 0 if it is unknown.
+     * @param isStreamBroken Can't next messages be read after this one.
+     */
+    public MessageRejectedException(String reason, long requestId, boolean isStreamBroken) {
+        super(reason);
+        this.requestId = requestId;
+        this.isStreamBroken = isStreamBroken;
+    }
+
+    /**
+     * @return ID of the rejected request, 0 if it is unknown.
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return Can't next messages be read after this one.
+     */
+    public boolean isStreamBroken() {
+        return isStreamBroken;
+    }
+}
@@ -0,0 +1,9 @@
+package common.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Is throwed when the queue of the executor is full, so the request should be repeated later.
+ */
+public class QueueFullException extends RejectedExecutionException {
+}
@@ -0,0 +1,260 @@
+package common.interaction;
+
+import common.data.AstartesCategory;
+import common.data.Chapter;
+import common.data.Coordinates;
+import common.data.MeleeWeapon;
+import common.data.Weapon;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact codec for requests and responses.
+ * Writes only field values in a fixed order, without class descriptors and reflection.
+ * Numbers of variable size are written by 7 bits per byte, nullable values have a presence mark.
+ * Session ID is written at the end and only if it isn't 0, so messages of clients without sessions don't change.
+ * Retry-after time of the response and timeout of the request follow it the same way.
+ */
+public class BinaryCodec implements MessageCodec {
+    private static final byte REQUEST = 1;
+    private static final byte RESPONSE = 2;
+
+    private static final byte NO_ARGUMENT = 0;
+    private static final byte MARINE_ARGUMENT = 1;
+
+    @Override
+    public byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream outputBuffer = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(outputBuffer);
+        if (message instanceof Request) {
+            output.writeByte(REQUEST);
+            writeRequest(output, (Request) message);
+        } else if (message instanceof Response) {
+            output.writeByte(RESPONSE);
+            writeResponse(output, (Response) message);
+        } else throw new NotSerializableException(message == null ? "null" : message.getClass().getName());
+        output.flush();
+        return outputBuffer.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        Object message;
+        byte messageType = input.readByte();
+        switch (messageType) {
+            case REQUEST:
+                message = readRequest(input);
+                break;
+            case RESPONSE:
+                message = readResponse(input);
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown message type " + messageType);
+        }
+        if (input.available() != 0) throw new StreamCorruptedException("Frame contains more than one message");
+        return message;
+    }
+
+    /**
+     * Request ID goes right after the message type.
+     */
+    @Override
+    public long peekRequestId(byte[] payloadStart) {
+        if (payloadStart.length == 0 || payloadStart[0] != REQUEST) return 0;
+        try {
+            return readVarLong(new DataInputStream(new ByteArrayInputStream(payloadStart, 1,
+                    payloadStart.length - 1)));
+        } catch (IOException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Codec keeps nothing between messages.
+     */
+    @Override
+    public String toString() {
+        return "BinaryCodec[]";
+    }
+
+    private void writeRequest(DataOutputStream output, Request request) throws IOException {
+        writeVarLong(output, request.getRequestId());
+        writeString(output, request.getCommandName());
+        writeString(output, request.getCommandStringArgument());
+        Object objectArgument = request.getCommandObjectArgument();
+        if (objectArgument == null) output.writeByte(NO_ARGUMENT);
+        else if (objectArgument instanceof MarineRaw) {
+            output.writeByte(MARINE_ARGUMENT);
+            writeMarineRaw(output, (MarineRaw) objectArgument);
+        } else throw new NotSerializableException(objectArgument.getClass().getName());
+        writeUser(output, request.getUser());
+        if (request.getSessionId() != 0 || request.getTimeout() != 0) writeVarLong(output, request.getSessionId());
+        if (request.getTimeout() != 0) writeVarLong(output, request.getTimeout());
+    }
+
+    private Request readRequest(DataInputStream input) throws IOException {
+        long requestId = readVarLong(input);
+        String commandName = readRequiredString(input, "command name");
+        String commandStringArgument = readRequiredString(input, "command argument");
+        MarineRaw commandObjectArgument;
+        byte argumentType = input.readByte();
+        switch (argumentType) {
+            case NO_ARGUMENT:
+                commandObjectArgument = null;
+                break;
+            case MARINE_ARGUMENT:
+                commandObjectArgument = readMarineRaw(input);
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown argument type " + argumentType);
+        }
+        Request request = new Request(commandName, commandStringArgument, commandObjectArgument, readUser(input));
+        request.setRequestId(requestId);
+        if (input.available() > 0) request.setSessionId(readVarLong(input));
+        if (input.available() > 0) request.setTimeout(readVarLong(input));
+        return request;
+    }
+
+    private void writeResponse(DataOutputStream output, Response response) throws IOException {
+        writeVarLong(output, response.getRequestId());
+        writeEnum(output, response.getResponseCode());
+        writeString(output, response.getResponseBody());
+        if (response.getSessionId() != 0 || response.getRetryAfter() != 0)
+            writeVarLong(output, response.getSessionId());
+        if (response.getRetryAfter() != 0) writeVarLong(output, response.getRetryAfter());
+    }
+
+    private Response readResponse(DataInputStream input) throws IOException {
+        long requestId = readVarLong(input);
+        ResponseCode responseCode = readEnum(input, ResponseCode.values());
+        Response response = new Response(requestId, responseCode, readString(input));
+        if (input.available() > 0) response.setSessionId(readVarLong(input));
+        if (input.available() > 0) response.setRetryAfter(readVarLong(input));
+        return response;
+    }
+
+    private void writeMarineRaw(DataOutputStream output, MarineRaw marineRaw) throws IOException {
+        writeString(output, marineRaw.getName());
+        Coordinates coordinates = marineRaw.getCoordinates();
+        output.writeBoolean(coordinates != null);
+        if (coordinates != null) {
+            output.writeDouble(coordinates.getX());
+            output.writeBoolean(coordinates.getY() != null);
+            if (coordinates.getY() != null) output.writeFloat(coordinates.getY());
+        }
+        output.writeDouble(marineRaw.getHealth());
+        writeEnum(output, marineRaw.getCategory());
+        writeEnum(output, marineRaw.getWeaponType());
+        writeEnum(output, marineRaw.getMeleeWeapon());
+        Chapter chapter = marineRaw.getChapter();
+        output.writeBoolean(chapter != null);
+        if (chapter != null) {
+            writeString(output, chapter.getName());
+            writeVarLong(output, chapter.getMarinesCount());
+        }
+    }
+
+    private MarineRaw readMarineRaw(DataInputStream input) throws IOException {
+        String name = readString(input);
+        Coordinates coordinates = null;
+        if (input.readBoolean()) {
+            double x = input.readDouble();
+            coordinates = new Coordinates(x, input.readBoolean() ? input.readFloat() : null);
+        }
+        double health = input.readDouble();
+        AstartesCategory category = readEnum(input, AstartesCategory.values());
+        Weapon weaponType = readEnum(input, Weapon.values());
+        MeleeWeapon meleeWeapon = readEnum(input, MeleeWeapon.values());
+        Chapter chapter = null;
+        if (input.readBoolean()) {
+            String chapterName = readString(input);
+            chapter = new Chapter(chapterName, readVarLong(input));
+        }
+        return new MarineRaw(name, coordinates, health, category, weaponType, meleeWeapon, chapter);
+    }
+
+    private void writeUser(DataOutputStream output, User user) throws IOException {
+        output.writeBoolean(user != null);
+        if (user != null) {
+            writeString(output, user.getUsername());
+            writeString(output, user.getPassword());
+        }
+    }
+
+    private User readUser(DataInputStream input) throws IOException {
+        if (!input.readBoolean()) return null;
+        String username = readRequiredString(input, "username");
+        return new User(username, readRequiredString(input, "password"));
+    }
+
+    /**
+     * Writes enum constant as its ordinal plus one, zero means null.
+     */
+    private void writeEnum(DataOutputStream output, Enum<?> constant) throws IOException {
+        writeVarLong(output, constant == null ? 0 : constant.ordinal() + 1);
+    }
+
+    private <T extends Enum<T>> T readEnum(DataInputStream input, T[] constants) throws IOException {
+        long index = readVarLong(input);
+        if (index == 0) return null;
+        if (index < 0 || index > constants.length) throw new StreamCorruptedException("Unknown enum constant " + index);
+        return constants[(int) index - 1];
+    }
+
+    /**
+     * Writes string as its UTF-8 length plus one and bytes, zero length means null.
+     */
+    private void writeString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length + 1L);
+        output.write(bytes);
+    }
+
+    private String readString(DataInputStream input) throws IOException {
+        long length = readVarLong(input);
+        if (length == 0) return null;
+        if (length < 0 || length - 1 > input.available()) throw new StreamCorruptedException("Wrong string length");
+        byte[] bytes = new byte[(int) length - 1];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads string, that the server uses without checks, so it cannot be null.
+     *
+     * @param field Name of the field for the error.
+     */
+    private String readRequiredString(DataInputStream input, String field) throws IOException {
+        String string = readString(input);
+        if (string == null) throw new StreamCorruptedException("Request has no " + field);
+        return string;
+    }
+
+    /**
+     * Writes number by 7 bits per byte, the high bit means that more bytes follow.
+     * Negative numbers always take 10 bytes, they are not expected here.
+     */
+    private void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte nextByte = input.readByte();
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) return value;
+        }
+        throw new StreamCorruptedException("Too long number");
+    }
+}
@@ -0,0 +1,68 @@
+package common.interaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Streams over a connected blocking channel, either TCP or Unix domain socket.
+ * Channels of Unix domain sockets have no Socket, and streams of java.nio.channels.Channels don't let one thread
+ * write while another one reads, so for them streams use the channel directly.
+ */
+public class ChannelStreams {
+    /**
+     * @param channel Connected blocking channel.
+     * @return Stream, that reads from the channel.
+     * @throws IOException When channel is closed.
+     */
+    public static InputStream newInputStream(SocketChannel channel) throws IOException {
+        if (channel.getLocalAddress() instanceof InetSocketAddress) return channel.socket().getInputStream();
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] singleByte = new byte[1];
+                return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) return 0;
+                return channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * @param channel Connected blocking channel.
+     * @return Stream, that writes to the channel.
+     * @throws IOException When channel is closed.
+     */
+    public static OutputStream newOutputStream(SocketChannel channel) throws IOException {
+        if (channel.getLocalAddress() instanceof InetSocketAddress) return channel.socket().getOutputStream();
+        return new OutputStream() {
+            @Override
+            public void write(int singleByte) throws IOException {
+                write(new byte[]{(byte) singleByte}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package common.interaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs, that the server and the client can agree on.
+ */
+public enum CodecType {
+    OBJECT(1),
+    BINARY(2);
+
+    private final byte id;
+
+    CodecType(int id) {
+        this.id = (byte) id;
+    }
+
+    /**
+     * @return ID of the codec in the handshake.
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * @param resetPolicy When to reset the object stream, is used by the object codec.
+     * @return New codec of this type for one connection.
+     */
+    public MessageCodec newCodec(StreamResetPolicy resetPolicy) {
+        return newCodec(resetPolicy, null);
+    }
+
+    /**
+     * @param resetPolicy When to reset the object stream, is used by the object codec.
+     * @param limits      Limits for received objects, null if they are not checked.
+     * @return New codec of this type for one connection.
+     */
+    public MessageCodec newCodec(StreamResetPolicy resetPolicy, MessageLimits limits) {
+        switch (this) {
+            case BINARY:
+                return new BinaryCodec();
+            default:
+                return new ObjectCodec(resetPolicy, limits);
+        }
+    }
+
+    /**
+     * @param id ID of the codec in the handshake.
+     * @return Codec type or null, if it is unknown.
+     */
+    public static CodecType byId(byte id) {
+        for (CodecType codecType : values()) {
+            if (codecType.id == id) return codecType;
+        }
+        return null;
+    }
+
+    /**
+     * Parses list of codecs like 'binary,object'.
+     *
+     * @param codecNames Codec names split by comma.
+     * @return Codecs in the same order.
+     * @throws IllegalArgumentException When some codec is unknown or list is empty.
+     */
+    public static List<CodecType> parseList(String codecNames) {
+        List<CodecType> codecs = new ArrayList<>();
+        for (String codecName : codecNames.split(",")) {
+            CodecType codec = valueOf(codecName.trim().toUpperCase());
+            if (!codecs.contains(codec)) codecs.add(codec);
+        }
+        return codecs;
+    }
+}
@@ -0,0 +1,52 @@
+package common.interaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame compressions, that the server and the client can agree on.
+ */
+public enum CompressionType {
+    NONE(0),
+    DEFLATE(1);
+
+    private final byte id;
+
+    CompressionType(int id) {
+        this.id = (byte) id;
+    }
+
+    /**
+     * @return ID of the compression in the handshake.
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * @param id ID of the compression in the handshake.
+     * @return Compression type or null, if it is unknown.
+     */
+    public static CompressionType byId(byte id) {
+        for (CompressionType compressionType : values()) {
+            if (compressionType.id == id) return compressionType;
+        }
+        return null;
+    }
+
+    /**
+     * Parses list of compressions like 'deflate,none'.
+     *
+     * @param compressionNames Compression names split by comma.
+     * @return Compressions in the same order.
+     * @throws IllegalArgumentException When some compression is unknown or list is empty.
+     */
+    public static List<CompressionType> parseList(String compressionNames) {
+        List<CompressionType> compressions = new ArrayList<>();
+        for (String compressionName : compressionNames.split(",")) {
+            CompressionType compression = valueOf(compressionName.trim().toUpperCase());
+            if (!compressions.contains(compression)) compressions.add(compression);
+        }
+        return compressions;
+    }
+}
@@ -0,0 +1,187 @@
+package common.interaction;
+
+import common.exceptions.MessageRejectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses frame payloads, that are bigger than the threshold.
+ * The high bit of the frame length marks compressed frames. Compressed payload starts with its raw size.
+ * Native state of zlib is created on the first compressed frame and freed by close().
+ */
+public class FrameCompressor {
+    public static final int DEFAULT_THRESHOLD = 4 * 1024;
+
+    private static final int COMPRESSED_FLAG = 0x80000000;
+    private static final int RAW_SIZE_LENGTH = 4;
+
+    private CompressionType compression;
+    private int threshold;
+    private int maxRawLength;
+    private TrafficCounters trafficCounters;
+    private boolean isDeflate;
+    private Lock deflateLock = new ReentrantLock();
+    private Lock inflateLock = new ReentrantLock();
+    // Are guarded by their locks, isClosed is changed under both
+    private Deflater deflater;
+    private Inflater inflater;
+    private boolean isClosed;
+
+    public FrameCompressor(CompressionType compression, int threshold, TrafficCounters trafficCounters) {
+        this(compression, threshold, MessageStream.MAX_FRAME_SIZE, trafficCounters);
+    }
+
+    /**
+     * @param maxRawLength Maximal size of decompressed payload.
+     */
+    public FrameCompressor(CompressionType compression, int threshold, int maxRawLength,
+                           TrafficCounters trafficCounters) {
+        this.compression = compression;
+        this.threshold = threshold;
+        this.maxRawLength = maxRawLength;
+        this.trafficCounters = trafficCounters;
+        this.isDeflate = compression == CompressionType.DEFLATE;
+    }
+
+    /**
+     * @param frameHeader First 4 bytes of the frame.
+     * @return Length of the frame payload.
+     */
+    public static int payloadLength(int frameHeader) {
+        return frameHeader & ~COMPRESSED_FLAG;
+    }
+
+    /**
+     * @param frameHeader First 4 bytes of the frame.
+     * @return Is frame payload compressed.
+     */
+    public static boolean isCompressed(int frameHeader) {
+        return (frameHeader & COMPRESSED_FLAG) != 0;
+    }
+
+    /**
+     * @param payload    Payload to send.
+     * @param compressed Is payload compressed.
+     * @return First 4 bytes of the frame.
+     */
+    public static int frameHeader(byte[] payload, boolean compressed) {
+        return compressed ? payload.length | COMPRESSED_FLAG : payload.length;
+    }
+
+    /**
+     * Compresses payload, if it is big enough and becomes smaller.
+     *
+     * @param rawPayload Encoded message.
+     * @return Payload to send, the same array if it is not compressed.
+     */
+    public byte[] compress(byte[] rawPayload) {
+        byte[] payload = rawPayload;
+        if (isDeflate && rawPayload.length >= threshold) {
+            byte[] compressedPayload = deflate(rawPayload);
+            if (compressedPayload != null && compressedPayload.length < rawPayload.length) payload = compressedPayload;
+        }
+        trafficCounters.countSent(rawPayload.length, payload.length, payload != rawPayload);
+        return payload;
+    }
+
+    /**
+     * @param frameHeader First 4 bytes of the frame.
+     * @param payload     Received payload.
+     * @return Encoded message.
+     * @throws IOException When compressed payload is broken.
+     * @throws MessageRejectedException When decompressed payload would be bigger than the limit.
+     */
+    public byte[] decompress(int frameHeader, byte[] payload) throws IOException {
+        boolean compressed = isCompressed(frameHeader);
+        byte[] rawPayload = compressed ? inflate(payload) : payload;
+        trafficCounters.countReceived(rawPayload.length, payload.length, compressed);
+        return rawPayload;
+    }
+
+    /**
+     * Frees native state of zlib. Frames are sent uncompressed and compressed frames aren't received after it.
+     */
+    public void close() {
+        deflateLock.lock();
+        inflateLock.lock();
+        try {
+            isClosed = true;
+            if (deflater != null) deflater.end();
+            if (inflater != null) inflater.end();
+            deflater = null;
+            inflater = null;
+        } finally {
+            inflateLock.unlock();
+            deflateLock.unlock();
+        }
+    }
+
+    /**
+     * @return Compressed payload, null if the compressor is closed.
+     */
+    private byte[] deflate(byte[] rawPayload) {
+        deflateLock.lock();
+        try {
+            if (isClosed) return null;
+            if (deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+            ByteArrayOutputStream outputBuffer = new ByteArrayOutputStream(rawPayload.length / 4 + RAW_SIZE_LENGTH);
+            outputBuffer.write(ByteBuffer.allocate(RAW_SIZE_LENGTH).putInt(rawPayload.length).array(), 0,
+                    RAW_SIZE_LENGTH);
+            byte[] buffer = new byte[8 * 1024];
+            deflater.reset();
+            deflater.setInput(rawPayload);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                outputBuffer.write(buffer, 0, count);
+            }
+            return outputBuffer.toByteArray();
+        } finally {
+            deflateLock.unlock();
+        }
+    }
+
+    private byte[] inflate(byte[] payload) throws IOException {
+        if (!isDeflate) throw new StreamCorruptedException("Compression wasn't agreed");
+        if (payload.length < RAW_SIZE_LENGTH) throw new StreamCorruptedException("Wrong compressed frame");
+        int rawLength = ByteBuffer.wrap(payload).getInt();
+        if (rawLength < 0) throw new StreamCorruptedException("Wrong raw frame length " + rawLength);
+        if (rawLength > maxRawLength) throw new MessageRejectedException("Message of " + rawLength +
+                " bytes is bigger than the limit of " + maxRawLength + " bytes", 0, true);
+        inflateLock.lock();
+        try {
+            if (isClosed) throw new IOException("Compressor is closed");
+            if (inflater == null) inflater = new Inflater();
+            byte[] rawPayload = new byte[rawLength];
+            inflater.reset();
+            inflater.setInput(payload, RAW_SIZE_LENGTH, payload.length - RAW_SIZE_LENGTH);
+            try {
+                int count = 0;
+                byte[] excess = new byte[1];
+                while (!inflater.finished()) {
+                    int inflated = count < rawLength ? inflater.inflate(rawPayload, count, rawLength - count) :
+                            inflater.inflate(excess);
+                    if (count == rawLength && inflated > 0)
+                        throw new StreamCorruptedException("Compressed frame is bigger than declared");
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    count += inflated;
+                }
+                if (count != rawLength || !inflater.finished())
+                    throw new StreamCorruptedException("Compressed frame has wrong size");
+            } catch (DataFormatException exception) {
+                throw new StreamCorruptedException("Compressed frame is broken");
+            }
+            return rawPayload;
+        } finally {
+            inflateLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package common.interaction;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the connection, that the client and the server agree on in the first frames.
+ * Client offers codecs and compressions in the order of its preference,
+ * server answers with the first ones it supports.
+ * Handshake frames don't depend on any codec: magic number, version and lists of IDs.
+ */
+public class Handshake {
+    public static final int MAGIC = 0x4C374853;
+    public static final byte VERSION = 1;
+
+    private List<CodecType> codecs;
+    private List<CompressionType> compressions;
+    private boolean isLegacy;
+
+    public Handshake(List<CodecType> codecs, List<CompressionType> compressions) {
+        this.codecs = codecs;
+        this.compressions = compressions;
+    }
+
+    /**
+     * Settings of a client, that starts without handshake.
+     *
+     * @return Java serialization without compression.
+     */
+    public static Handshake legacy() {
+        Handshake handshake = new Handshake(Collections.singletonList(CodecType.OBJECT),
+                Collections.singletonList(CompressionType.NONE));
+        handshake.isLegacy = true;
+        return handshake;
+    }
+
+    /**
+     * @return Payload of the handshake frame.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream outputBuffer = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(outputBuffer);
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeByte(codecs.size());
+            for (CodecType codec : codecs) output.writeByte(codec.getId());
+            output.writeByte(compressions.size());
+            for (CompressionType compression : compressions) output.writeByte(compression.getId());
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return outputBuffer.toByteArray();
+    }
+
+    /**
+     * Reads handshake frame. Unknown codecs and compressions are skipped.
+     *
+     * @param payload Payload of the frame.
+     * @return Handshake or null, if frame is not a handshake.
+     */
+    public static Handshake fromBytes(byte[] payload) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) return null;
+            List<CodecType> codecs = new ArrayList<>();
+            int codecCount = input.readUnsignedByte();
+            for (int i = 0; i < codecCount; i++) {
+                CodecType codec = CodecType.byId(input.readByte());
+                if (codec != null) codecs.add(codec);
+            }
+            List<CompressionType> compressions = new ArrayList<>();
+            int compressionCount = input.available() > 0 ? input.readUnsignedByte() : 0;
+            for (int i = 0; i < compressionCount; i++) {
+                CompressionType compression = CompressionType.byId(input.readByte());
+                if (compression != null) compressions.add(compression);
+            }
+            return new Handshake(codecs, compressions);
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Chooses settings of the connection. Is called on the server side.
+     *
+     * @param offer Handshake of the client.
+     * @return First offered codec and compression, that the server supports.
+     * Codec list is empty, if there is no common codec.
+     */
+    public Handshake agree(Handshake offer) {
+        List<CodecType> agreedCodecs = new ArrayList<>();
+        for (CodecType codec : offer.codecs) {
+            if (codecs.contains(codec)) {
+                agreedCodecs.add(codec);
+                break;
+            }
+        }
+        CompressionType agreedCompression = CompressionType.NONE;
+        for (CompressionType compression : offer.compressions) {
+            if (compressions.contains(compression)) {
+                agreedCompression = compression;
+                break;
+            }
+        }
+        return new Handshake(agreedCodecs, Collections.singletonList(agreedCompression));
+    }
+
+    /**
+     * @return Agreed codec or null, if there is no common codec.
+     */
+    public CodecType getCodec() {
+        return codecs.isEmpty() ? null : codecs.get(0);
+    }
+
+    /**
+     * @return Agreed compression.
+     */
+    public CompressionType getCompression() {
+        return compressions.isEmpty() ? CompressionType.NONE : compressions.get(0);
+    }
+
+    /**
+     * Clients without handshake don't know newer features, e.g. responses sent by chunks.
+     *
+     * @return Did the client start without handshake.
+     */
+    public boolean isLegacy() {
+        return isLegacy;
+    }
+
+    @Override
+    public String toString() {
+        return "Handshake[codecs: " + codecs + ", compressions: " + compressions + "]";
+    }
+}
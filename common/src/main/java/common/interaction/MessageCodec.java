@@ -0,0 +1,45 @@
+package common.interaction;
+
+import java.io.IOException;
+
+/**
+ * Converts messages to frame payloads and back.
+ * One codec instance serves one connection.
+ */
+public interface MessageCodec {
+    /**
+     * Converts message into the bytes of one frame.
+     *
+     * @param message Message to encode.
+     * @return Frame payload.
+     * @throws IOException When message cannot be encoded.
+     */
+    byte[] encode(Object message) throws IOException;
+
+    /**
+     * Restores message from the bytes of one frame.
+     *
+     * @param payload Frame payload.
+     * @return Decoded message.
+     * @throws IOException            When payload is broken.
+     * @throws ClassNotFoundException When payload contains unknown class.
+     */
+    Object decode(byte[] payload) throws IOException, ClassNotFoundException;
+
+    /**
+     * Finds request ID without decoding the whole payload, so an oversized request can be answered.
+     *
+     * @param payloadStart First bytes of the frame payload.
+     * @return Request ID or 0, if it cannot be found.
+     */
+    default long peekRequestId(byte[] payloadStart) {
+        return 0;
+    }
+
+    /**
+     * @return Does decoding of a message depend on the previous ones, so a skipped frame breaks the stream.
+     */
+    default boolean keepsState() {
+        return false;
+    }
+}
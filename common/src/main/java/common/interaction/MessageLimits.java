@@ -0,0 +1,109 @@
+package common.interaction;
+
+import common.exceptions.MessageRejectedException;
+
+import java.io.ObjectInputFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits for received messages, that protect the heap from oversized and hostile payloads.
+ * Size is checked before the payload is read, depth, array length and classes are checked while decoding.
+ * Class pattern is a full class name, 'package.*' for classes of the package or 'package.**' for subpackages too.
+ */
+public class MessageLimits {
+    public static final int PEEK_SIZE = 16;
+    public static final String DEFAULT_ALLOWED_CLASSES = "common.interaction.*,common.data.*,java.lang.String," +
+            "java.lang.Enum,java.lang.Number,java.lang.Integer,java.lang.Long,java.lang.Float,java.lang.Double";
+
+    private int maxMessageBytes;
+    private long maxDepth;
+    private long maxArrayLength;
+    private List<String> allowedClasses;
+
+    public MessageLimits(int maxMessageBytes, long maxDepth, long maxArrayLength, List<String> allowedClasses) {
+        this.maxMessageBytes = Math.min(maxMessageBytes, MessageStream.MAX_FRAME_SIZE);
+        this.maxDepth = maxDepth;
+        this.maxArrayLength = maxArrayLength;
+        this.allowedClasses = allowedClasses;
+    }
+
+    /**
+     * @return Maximal size of the decoded message.
+     */
+    public int getMaxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    /**
+     * Rejects oversized frame. Request can be answered only if its ID is found in the first bytes.
+     * Connection is closed after the answer, if the request is unknown or the codec cannot skip frames.
+     *
+     * @param frameHeader  First 4 bytes of the frame.
+     * @param length       Length of the frame payload.
+     * @param payloadStart First bytes of the payload, up to PEEK_SIZE.
+     * @param codec        Codec of the connection.
+     * @return Rejection of the frame.
+     */
+    public MessageRejectedException rejectFrame(int frameHeader, int length, byte[] payloadStart,
+                                                MessageCodec codec) {
+        long requestId = FrameCompressor.isCompressed(frameHeader) ? 0 : codec.peekRequestId(payloadStart);
+        return new MessageRejectedException("Message of " + length + " bytes is bigger than the limit of " +
+                maxMessageBytes + " bytes", requestId, requestId == 0 || codec.keepsState());
+    }
+
+    /**
+     * Finds broken limit of the object, that is being deserialized.
+     *
+     * @param filterInfo Object, that is being deserialized.
+     * @return Broken limit or null, if object is allowed.
+     */
+    public String findViolation(ObjectInputFilter.FilterInfo filterInfo) {
+        if (filterInfo.depth() > maxDepth) return "Object graph is deeper than " + maxDepth;
+        if (filterInfo.arrayLength() > maxArrayLength) return "Array is longer than " + maxArrayLength;
+        Class<?> serialClass = filterInfo.serialClass();
+        if (serialClass == null) return null;
+        while (serialClass.isArray()) serialClass = serialClass.getComponentType();
+        if (serialClass.isPrimitive() || isAllowed(serialClass.getName())) return null;
+        return "Class " + serialClass.getName() + " is not allowed";
+    }
+
+    /**
+     * @param className Full name of the class.
+     * @return Does some pattern allow the class.
+     */
+    private boolean isAllowed(String className) {
+        int packageEnd = className.lastIndexOf('.');
+        String packageName = packageEnd == -1 ? "" : className.substring(0, packageEnd);
+        for (String pattern : allowedClasses) {
+            if (pattern.endsWith(".**")) {
+                if (className.startsWith(pattern.substring(0, pattern.length() - 2))) return true;
+            } else if (pattern.endsWith(".*")) {
+                if (packageName.equals(pattern.substring(0, pattern.length() - 2))) return true;
+            } else if (className.equals(pattern)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses list of class patterns like 'common.data.*,java.lang.String'.
+     *
+     * @param patterns Patterns split by comma.
+     * @return Patterns in the same order.
+     * @throws IllegalArgumentException When list is empty.
+     */
+    public static List<String> parseAllowedClasses(String patterns) {
+        List<String> allowedClasses = new ArrayList<>();
+        for (String pattern : patterns.split(",")) {
+            if (!pattern.trim().isEmpty()) allowedClasses.add(pattern.trim());
+        }
+        if (allowedClasses.isEmpty()) throw new IllegalArgumentException("No allowed classes");
+        return allowedClasses;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageLimits[" + maxMessageBytes + " bytes, depth: " + maxDepth + ", array length: " +
+                maxArrayLength + ", classes: " + allowedClasses + "]";
+    }
+}
@@ -0,0 +1,283 @@
+package common.interaction;
+
+import common.exceptions.MessageRejectedException;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking message exchange over a pair of streams.
+ * Every message is sent as a frame: 4-byte length and then the payload, that may be compressed.
+ * Uses locks instead of monitors, so blocking on the socket doesn't pin virtual threads.
+ * Until the codec is agreed by the handshake, Java serialization is used.
+ * Stream with limits skips oversized frames without reading them into memory.
+ * Payload buffer grows while the bytes arrive, so the declared length alone doesn't reserve memory.
+ */
+public class MessageStream implements Closeable {
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int FIRST_READ_SIZE = 8 * 1024;
+
+    private DataInputStream input;
+    private DataOutputStream output;
+    private StreamResetPolicy resetPolicy;
+    private MessageLimits limits;
+    private int maxMessageBytes;
+    private volatile MessageCodec codec;
+    private TrafficCounters trafficCounters = new TrafficCounters();
+    private volatile FrameCompressor compressor = new FrameCompressor(CompressionType.NONE, 0, trafficCounters);
+    private byte[] pendingPayload;
+    private Lock inputLock = new ReentrantLock();
+    private Lock outputLock = new ReentrantLock();
+
+    public MessageStream(InputStream input, OutputStream output) {
+        this(input, output, StreamResetPolicy.DEFAULT);
+    }
+
+    /**
+     * @param resetPolicy When to reset the object stream, if Java serialization is used.
+     */
+    public MessageStream(InputStream input, OutputStream output, StreamResetPolicy resetPolicy) {
+        this(input, output, resetPolicy, null);
+    }
+
+    /**
+     * @param resetPolicy When to reset the object stream, if Java serialization is used.
+     * @param limits      Limits for received messages, null if only the frame size is checked.
+     */
+    public MessageStream(InputStream input, OutputStream output, StreamResetPolicy resetPolicy,
+                         MessageLimits limits) {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.resetPolicy = resetPolicy;
+        this.limits = limits;
+        this.maxMessageBytes = limits == null ? MAX_FRAME_SIZE : limits.getMaxMessageBytes();
+        this.codec = new ObjectCodec(resetPolicy, limits);
+    }
+
+    /**
+     * Client side of the handshake.
+     *
+     * @param offer Codecs and compressions in the order of preference.
+     * @return Settings chosen by the server. Codec is null, if server supports none of the offered.
+     * @throws IOException When connection is broken or server doesn't know the handshake.
+     */
+    public Handshake offer(Handshake offer) throws IOException {
+        sendFrame(offer.toBytes());
+        Handshake answer = Handshake.fromBytes(receiveFrame());
+        if (answer == null) throw new StreamCorruptedException("Server didn't answer the handshake");
+        if (answer.getCodec() != null) apply(answer, FrameCompressor.DEFAULT_THRESHOLD);
+        return answer;
+    }
+
+    /**
+     * Server side of the handshake.
+     * Client, that starts without handshake, gets Java serialization and its first frame stays for receive().
+     *
+     * @param supported            Codecs and compressions of the server.
+     * @param compressionThreshold Size of payloads, that are worth compressing.
+     * @return Agreed settings. Codec is null, if client supports none of the server codecs.
+     * @throws IOException When connection is broken.
+     */
+    public Handshake accept(Handshake supported, int compressionThreshold) throws IOException {
+        byte[] payload = receiveFrame();
+        Handshake offer = Handshake.fromBytes(payload);
+        if (offer == null) {
+            pendingPayload = payload;
+            return Handshake.legacy();
+        }
+        Handshake answer = supported.agree(offer);
+        sendFrame(answer.toBytes());
+        if (answer.getCodec() != null) apply(answer, compressionThreshold);
+        return answer;
+    }
+
+    /**
+     * @return Payload bytes of this connection.
+     */
+    public TrafficCounters getTrafficCounters() {
+        return trafficCounters;
+    }
+
+    /**
+     * @return Codec of this connection.
+     */
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sends message to the other side.
+     *
+     * @param message Message to send.
+     * @throws IOException When connection is broken.
+     */
+    public void send(Object message) throws IOException {
+        outputLock.lock();
+        try {
+            sendFrame(codec.encode(message));
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    /**
+     * Sends message, if no other message is being sent now.
+     * Is used for service messages, which are not needed while the stream is busy.
+     *
+     * @param message Message to send.
+     * @return Was message sent.
+     * @throws IOException When connection is broken.
+     */
+    public boolean trySend(Object message) throws IOException {
+        if (!outputLock.tryLock()) return false;
+        try {
+            sendFrame(codec.encode(message));
+            return true;
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes message without sending it, so it can be sent later by another thread.
+     * Messages must be sent in the order of encoding, because the codec may keep state between them.
+     *
+     * @param message Message to encode.
+     * @return Encoded message.
+     * @throws IOException When message cannot be encoded.
+     */
+    public byte[] encode(Object message) throws IOException {
+        return codec.encode(message);
+    }
+
+    /**
+     * Sends message, that was encoded by encode().
+     *
+     * @param rawPayload Encoded message.
+     * @throws IOException When connection is broken.
+     */
+    public void sendEncoded(byte[] rawPayload) throws IOException {
+        sendFrame(rawPayload);
+    }
+
+    /**
+     * Waits for the next message.
+     *
+     * @return Received message.
+     * @throws MessageRejectedException When message breaks the limits.
+     * @throws IOException              When connection is broken or frame is incorrect.
+     * @throws ClassNotFoundException   When message has unknown class.
+     */
+    public Object receive() throws IOException, ClassNotFoundException {
+        inputLock.lock();
+        try {
+            byte[] payload = pendingPayload != null ? pendingPayload : receiveFrame();
+            pendingPayload = null;
+            return codec.decode(payload);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    /**
+     * @param handshake            Agreed settings.
+     * @param compressionThreshold Size of payloads, that are worth compressing.
+     */
+    private void apply(Handshake handshake, int compressionThreshold) {
+        codec = handshake.getCodec().newCodec(resetPolicy, limits);
+        compressor = new FrameCompressor(handshake.getCompression(), compressionThreshold, maxMessageBytes,
+                trafficCounters);
+    }
+
+    /**
+     * @param rawPayload Bytes of the message, are compressed if it is worth it.
+     * @throws IOException When connection is broken.
+     */
+    private void sendFrame(byte[] rawPayload) throws IOException {
+        outputLock.lock();
+        try {
+            byte[] payload = compressor.compress(rawPayload);
+            output.writeInt(FrameCompressor.frameHeader(payload, payload != rawPayload));
+            output.write(payload);
+            output.flush();
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    /**
+     * @return Bytes of the next message, decompressed if needed.
+     * @throws IOException When connection is broken or frame is incorrect.
+     */
+    private byte[] receiveFrame() throws IOException {
+        inputLock.lock();
+        try {
+            int frameHeader = input.readInt();
+            int length = FrameCompressor.payloadLength(frameHeader);
+            if (length > MAX_FRAME_SIZE) throw new StreamCorruptedException("Wrong frame length " + length);
+            if (length > maxMessageBytes) throw skipFrame(frameHeader, length);
+            return compressor.decompress(frameHeader, readPayload(length));
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the payload into the buffer, that is doubled, when the received bytes fill it.
+     *
+     * @param length Length of the frame payload.
+     * @return Payload bytes.
+     * @throws IOException When connection is broken before the whole payload.
+     */
+    private byte[] readPayload(int length) throws IOException {
+        byte[] payload = new byte[Math.min(length, FIRST_READ_SIZE)];
+        int received = 0;
+        while (received < length) {
+            if (received == payload.length) payload = Arrays.copyOf(payload, (int) Math.min(length, 2L * received));
+            int count = input.read(payload, received, payload.length - received);
+            if (count == -1) throw new EOFException();
+            received += count;
+        }
+        return payload;
+    }
+
+    /**
+     * Skips oversized frame, only its first bytes are read to find the request ID.
+     *
+     * @param frameHeader First 4 bytes of the frame.
+     * @param length      Length of the frame payload.
+     * @return Rejection of the frame.
+     * @throws IOException When connection is broken.
+     */
+    private MessageRejectedException skipFrame(int frameHeader, int length) throws IOException {
+        byte[] payloadStart = new byte[Math.min(length, MessageLimits.PEEK_SIZE)];
+        input.readFully(payloadStart);
+        int skipped = payloadStart.length;
+        while (skipped < length) {
+            int count = input.skipBytes(length - skipped);
+            if (count == 0) {
+                input.readByte();
+                count = 1;
+            }
+            skipped += count;
+        }
+        return limits.rejectFrame(frameHeader, length, payloadStart, codec);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            output.close();
+        } finally {
+            try {
+                input.close();
+            } finally {
+                compressor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package common.interaction;
+
+import common.exceptions.MessageRejectedException;
+
+import java.io.*;
+
+/**
+ * Converts messages to frame payloads and back using Java serialization.
+ * One object stream per direction lives for the whole connection, so class descriptors are sent only once.
+ * Stream is reset by the policy, then both sides forget the written objects.
+ * Reset mark goes at the start of the next frame, so every frame still contains exactly one message.
+ * If limits are set, received objects are checked by the filter while they are read.
+ */
+public class ObjectCodec implements MessageCodec {
+    private StreamResetPolicy resetPolicy;
+    private ByteArrayOutputStream outputBuffer = new ByteArrayOutputStream();
+    private ObjectOutputStream objectWriter;
+    private PayloadInputStream inputFeed = new PayloadInputStream();
+    private ObjectInputStream objectReader;
+    private MessageLimits limits;
+    // Is guarded by inputFeed. The first broken limit, the stream cannot be read after it
+    private String violation;
+    // Are guarded by outputBuffer
+    private long retainedMessages;
+    private long retainedBytes;
+    private long resets;
+
+    public ObjectCodec() {
+        this(StreamResetPolicy.DEFAULT);
+    }
+
+    /**
+     * @param resetPolicy When to reset the output stream.
+     */
+    public ObjectCodec(StreamResetPolicy resetPolicy) {
+        this(resetPolicy, null);
+    }
+
+    /**
+     * @param resetPolicy When to reset the output stream.
+     * @param limits      Limits for received objects, null if they are not checked.
+     */
+    public ObjectCodec(StreamResetPolicy resetPolicy, MessageLimits limits) {
+        this.resetPolicy = resetPolicy;
+        this.limits = limits;
+    }
+
+    @Override
+    public byte[] encode(Object message) throws IOException {
+        synchronized (outputBuffer) {
+            if (objectWriter == null) objectWriter = new ObjectOutputStream(outputBuffer);
+            else if (resetPolicy.isExceeded(retainedMessages, retainedBytes)) {
+                objectWriter.reset();
+                retainedMessages = 0;
+                retainedBytes = 0;
+                resets++;
+            }
+            objectWriter.writeObject(message);
+            objectWriter.flush();
+            byte[] payload = outputBuffer.toByteArray();
+            outputBuffer.reset();
+            retainedMessages++;
+            retainedBytes += payload.length;
+            return payload;
+        }
+    }
+
+    /**
+     * @return Messages, whose objects are remembered by the output stream since the last reset.
+     */
+    public long getRetainedMessages() {
+        synchronized (outputBuffer) {
+            return retainedMessages;
+        }
+    }
+
+    /**
+     * @return Bytes written since the last reset.
+     */
+    public long getRetainedBytes() {
+        synchronized (outputBuffer) {
+            return retainedBytes;
+        }
+    }
+
+    /**
+     * @return Number of resets of the output stream.
+     */
+    public long getResets() {
+        synchronized (outputBuffer) {
+            return resets;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (outputBuffer) {
+            return "ObjectCodec[resets: " + resets + ", retained messages: " + retainedMessages +
+                    ", retained bytes: " + retainedBytes + ", policy: " + resetPolicy + "]";
+        }
+    }
+
+    /**
+     * @throws MessageRejectedException When object breaks the limits. Stream cannot be read after that.
+     */
+    @Override
+    public Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        synchronized (inputFeed) {
+            inputFeed.feed(payload);
+            if (objectReader == null) {
+                objectReader = new ObjectInputStream(inputFeed);
+                if (limits != null) objectReader.setObjectInputFilter(this::checkInput);
+            }
+            try {
+                Object message = objectReader.readObject();
+                if (inputFeed.available() != 0)
+                    throw new StreamCorruptedException("Frame contains more than one message");
+                return message;
+            } catch (InvalidClassException exception) {
+                if (violation == null) throw exception;
+                throw new MessageRejectedException(violation, 0, true);
+            }
+        }
+    }
+
+    /**
+     * Objects of a frame can refer to the objects of the previous frames.
+     */
+    @Override
+    public boolean keepsState() {
+        return true;
+    }
+
+    /**
+     * @param filterInfo Object, that is being read.
+     * @return Is object allowed by the limits.
+     */
+    private ObjectInputFilter.Status checkInput(ObjectInputFilter.FilterInfo filterInfo) {
+        String objectViolation = limits.findViolation(filterInfo);
+        if (objectViolation == null) return ObjectInputFilter.Status.UNDECIDED;
+        if (violation == null) violation = objectViolation;
+        return ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * Input stream, that gives out the payload of the last received frame.
+     */
+    private static class PayloadInputStream extends InputStream {
+        private byte[] payload = new byte[0];
+        private int position;
+
+        private void feed(byte[] payload) {
+            this.payload = payload;
+            this.position = 0;
+        }
+
+        @Override
+        public int read() {
+            if (position >= payload.length) return -1;
+            return payload[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            if (position >= payload.length) return -1;
+            int count = Math.min(length, payload.length - position);
+            System.arraycopy(payload, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return payload.length - position;
+        }
+    }
+}
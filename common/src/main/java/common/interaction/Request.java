@@ -6,6 +6,16 @@ import java.io.Serializable;
  * Class for get request value.
  */
 public class Request implements Serializable {
+    public static final String HEARTBEAT_COMMAND = "heartbeat";
+
+    // Is kept, so clients, that don't know sessions, still read the requests
+    private static final long serialVersionUID = 3930794324895016759L;
+
+    private long requestId;
+    private long sessionId;
+    private long timeout;
+    // Is counted by the server from the arrival, so clocks of the client and the server don't need to agree
+    private transient long deadline;
     private String commandName;
     private String commandStringArgument;
     private Serializable commandObjectArgument;
@@ -26,6 +36,77 @@ public class Request implements Serializable {
         this("", "", user);
     }
 
+    /**
+     * @return Answer to the heartbeat of the server.
+     */
+    public static Request heartbeat() {
+        return new Request(HEARTBEAT_COMMAND, "", null);
+    }
+
+    /**
+     * @return ID, that the response to this request will have.
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Is set by the client right before sending, so responses can be matched with requests.
+     *
+     * @param requestId ID of the request.
+     */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return Session of the connection, that sent this request. 0 is the session of the connection itself.
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Is set by the client, that serves several users over one connection.
+     *
+     * @param sessionId Session of the user.
+     */
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @return Milliseconds, that the client waits for the response, 0 if it waits without limit.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Is set by the client, that doesn't need the response after some time.
+     *
+     * @param timeout Milliseconds, that the client waits for the response.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return Time of System.nanoTime() on the server, after which the request isn't worth executing, 0 if none.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Is set by the server, when the request arrives.
+     *
+     * @param deadline Time of System.nanoTime(), after which the request isn't worth executing.
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
     /**
      * @return Command name.
      */
@@ -54,6 +135,22 @@ public class Request implements Serializable {
         return user;
     }
 
+    /**
+     * Is set by the server for requests of the authorized session, that come without user.
+     *
+     * @param user User of the session.
+     */
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    /**
+     * @return Is this request an answer to the heartbeat, which is not a command.
+     */
+    public boolean isHeartbeat() {
+        return commandName.equals(HEARTBEAT_COMMAND) && user == null;
+    }
+
     /**
      * @return Is this request empty.
      */
@@ -64,7 +161,7 @@ public class Request implements Serializable {
 
     @Override
     public String toString() {
-        return "Request[" + commandName + ", " + commandStringArgument + ", " + commandObjectArgument + ", " +
+        return "Request[" + requestId + (sessionId == 0 ? "" : "@" + sessionId) + ", " + commandName + ", " + commandStringArgument + ", " + commandObjectArgument + ", " +
                 user + "]";
     }
 }
@@ -6,14 +6,60 @@ import java.io.Serializable;
  * Class for get response value.
  */
 public class Response implements Serializable {
+    // Is kept, so clients, that don't know sessions, still read the responses
+    private static final long serialVersionUID = -2424640875460185167L;
+
+    private long requestId;
+    private long sessionId;
     private ResponseCode responseCode;
     private String responseBody;
+    private long retryAfter;
 
-    public Response(ResponseCode responseCode, String responseBody) {
+    public Response(long requestId, ResponseCode responseCode, String responseBody) {
+        this.requestId = requestId;
         this.responseCode = responseCode;
         this.responseBody = responseBody;
     }
 
+    public Response(ResponseCode responseCode, String responseBody) {
+        this(0, responseCode, responseBody);
+    }
+
+    /**
+     * @return ID of the request, this response is for.
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return Session of the request, this response is for.
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @param sessionId Session of the request, this response is for.
+     */
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @return Milliseconds, after which the rejected request should be repeated, 0 if it isn't rejected.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @param retryAfter Milliseconds, after which the rejected request should be repeated.
+     */
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
     /**
      * @return Response сode.
      */
@@ -30,6 +76,6 @@ public class Response implements Serializable {
 
     @Override
     public String toString() {
-        return "Response[" + responseCode + ", " + responseBody + "]";
+        return "Response[" + requestId + (sessionId == 0 ? "" : "@" + sessionId) + ", " + responseCode + ", " + responseBody + "]";
     }
 }
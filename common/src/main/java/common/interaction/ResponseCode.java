@@ -2,10 +2,18 @@ package common.interaction;
 
 /**
  * Enum of response codes
+ * CHUNK is a part of the response, that comes before the response with the final code.
+ * HEARTBEAT is sent by the server to an idle client, which answers with a heartbeat request.
+ * RECONNECT is sent by the stopping server after the last response, the client should connect again later.
+ * BUSY means the overloaded server didn't run the request, the client should repeat it after the retry-after time.
  */
 public enum ResponseCode {
     OK,
     ERROR,
     CLIENT_EXIT,
-    SERVER_EXIT
+    SERVER_EXIT,
+    CHUNK,
+    HEARTBEAT,
+    RECONNECT,
+    BUSY
 }
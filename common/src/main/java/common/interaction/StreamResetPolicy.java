@@ -0,0 +1,36 @@
+package common.interaction;
+
+/**
+ * When to reset the object stream of the connection.
+ * Object stream remembers every written object until reset, on both sides of the connection,
+ * so without resets memory of long sessions grows with every message.
+ */
+public class StreamResetPolicy {
+    public static final StreamResetPolicy DEFAULT = new StreamResetPolicy(1000, 1024 * 1024);
+
+    private int maxMessages;
+    private long maxBytes;
+
+    /**
+     * @param maxMessages Messages between resets.
+     * @param maxBytes    Bytes between resets.
+     */
+    public StreamResetPolicy(int maxMessages, long maxBytes) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param messages Messages written since the last reset.
+     * @param bytes    Bytes written since the last reset.
+     * @return Should the stream be reset before the next message.
+     */
+    public boolean isExceeded(long messages, long bytes) {
+        return messages >= maxMessages || bytes >= maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "every " + maxMessages + " messages or " + maxBytes + " bytes";
+    }
+}
@@ -0,0 +1,72 @@
+package common.interaction;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Payload bytes of one connection before and after compression.
+ */
+public class TrafficCounters {
+    private AtomicLong rawBytesSent = new AtomicLong();
+    private AtomicLong bytesSent = new AtomicLong();
+    private AtomicLong compressedFramesSent = new AtomicLong();
+    private AtomicLong rawBytesReceived = new AtomicLong();
+    private AtomicLong bytesReceived = new AtomicLong();
+    private AtomicLong compressedFramesReceived = new AtomicLong();
+
+    /**
+     * @param rawBytes   Payload size before compression.
+     * @param bytes      Payload size on the wire.
+     * @param compressed Was the frame compressed.
+     */
+    void countSent(int rawBytes, int bytes, boolean compressed) {
+        rawBytesSent.addAndGet(rawBytes);
+        bytesSent.addAndGet(bytes);
+        if (compressed) compressedFramesSent.incrementAndGet();
+    }
+
+    /**
+     * @param rawBytes   Payload size after decompression.
+     * @param bytes      Payload size on the wire.
+     * @param compressed Was the frame compressed.
+     */
+    void countReceived(int rawBytes, int bytes, boolean compressed) {
+        rawBytesReceived.addAndGet(rawBytes);
+        bytesReceived.addAndGet(bytes);
+        if (compressed) compressedFramesReceived.incrementAndGet();
+    }
+
+    /**
+     * @return Sent payload bytes before compression.
+     */
+    public long getRawBytesSent() {
+        return rawBytesSent.get();
+    }
+
+    /**
+     * @return Sent payload bytes on the wire.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return Received payload bytes after decompression.
+     */
+    public long getRawBytesReceived() {
+        return rawBytesReceived.get();
+    }
+
+    /**
+     * @return Received payload bytes on the wire.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public String toString() {
+        return "sent " + bytesSent + " bytes (raw " + rawBytesSent + ", compressed frames " + compressedFramesSent +
+                "), received " + bytesReceived + " bytes (raw " + rawBytesReceived + ", compressed frames " +
+                compressedFramesReceived + ")";
+    }
+}
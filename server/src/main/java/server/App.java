@@ -20,49 +20,130 @@ public class App {
     private static String databaseHost;
     private static String databasePassword;
     private static String databaseAddress;
+    private static ServerConfig serverConfig;
 
     public static void main(String[] args) {
-        if (!initialize(args)) return;
-        DatabaseHandler databaseHandler = new DatabaseHandler(databaseAddress, databaseUsername, databasePassword);
-        DatabaseUserManager databaseUserManager = new DatabaseUserManager(databaseHandler);
-        DatabaseCollectionManager databaseCollectionManager = new DatabaseCollectionManager(databaseHandler, databaseUserManager);
-        CollectionManager collectionManager = new CollectionManager(databaseCollectionManager);
-        CommandManager commandManager = new CommandManager(
-                new HelpCommand(),
-                new InfoCommand(collectionManager),
-                new ShowCommand(collectionManager),
-                new AddCommand(collectionManager, databaseCollectionManager),
-                new UpdateCommand(collectionManager, databaseCollectionManager),
-                new RemoveByIdCommand(collectionManager, databaseCollectionManager),
-                new ClearCommand(collectionManager, databaseCollectionManager),
-                new ExitCommand(),
-                new ExecuteScriptCommand(),
-                new AddIfMinCommand(collectionManager, databaseCollectionManager),
-                new RemoveGreaterCommand(collectionManager, databaseCollectionManager),
-                new HistoryCommand(),
-                new SumOfHealthCommand(collectionManager),
-                new MaxByMeleeWeaponCommand(collectionManager),
-                new FilterByWeaponTypeCommand(collectionManager),
-                new ServerExitCommand(),
-                new LoginCommand(databaseUserManager),
-                new RegisterCommand(databaseUserManager)
-        );
-        Server server = new Server(port, MAX_CLIENTS, commandManager);
+        if (!initializeConfig() || !initialize(args)) return;
+        DatabaseHandler databaseHandler = null;
+        CollectionStorage collectionStorage;
+        UserStorage userStorage;
+        if (serverConfig.getStorage() == StorageType.MEMORY) {
+            collectionStorage = new MemoryCollectionStorage();
+            userStorage = new MemoryUserStorage();
+        } else {
+            databaseHandler = new DatabaseHandler(databaseAddress, databaseUsername, databasePassword);
+            DatabaseUserManager databaseUserManager = new DatabaseUserManager(databaseHandler);
+            collectionStorage = new DatabaseCollectionManager(databaseHandler, databaseUserManager);
+            userStorage = databaseUserManager;
+        }
+        CollectionManager collectionManager = new CollectionManager(collectionStorage,
+                serverConfig.getSnapshotFile(), serverConfig.getSnapshotMaxAge());
+        CommandManager commandManager = createCommandManager(collectionManager, collectionStorage, userStorage,
+                new CommandHistory(serverConfig.getHistorySize(), serverConfig.getHistoryUsers(),
+                        serverConfig.isGlobalHistory()));
+        if (serverConfig.getHttpPort() != 0 && System.getProperty(HttpGateway.NODELAY_PROPERTY) == null)
+            System.setProperty(HttpGateway.NODELAY_PROPERTY, "true");
+        HttpGateway httpGateway = serverConfig.getHttpPort() == 0 ? null :
+                new HttpGateway(serverConfig, commandManager, collectionManager);
+        Server server = new Server(port, MAX_CLIENTS, serverConfig, commandManager, httpGateway);
+        Thread shutdownHook = createShutdownHook(server, Thread.currentThread());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
         server.run();
-        databaseHandler.closeConnection();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException exception) {
+            App.logger.info("Server is stopped by the signal.");
+        }
+        if (server.isDrained()) collectionManager.saveSnapshot();
+        if (databaseHandler != null) databaseHandler.closeConnection();
+    }
+
+    /**
+     * Creates all commands of the server with the default history of every user.
+     *
+     * @param collectionManager Collection, that commands work with.
+     * @param collectionStorage Storage of the marines.
+     * @param userStorage       Storage of the users.
+     * @return Manager of the commands.
+     */
+    public static CommandManager createCommandManager(CollectionManager collectionManager,
+                                                      CollectionStorage collectionStorage, UserStorage userStorage) {
+        return createCommandManager(collectionManager, collectionStorage, userStorage,
+                new CommandHistory(CommandHistory.DEFAULT_DEPTH, false));
+    }
+
+    /**
+     * Creates all commands of the server.
+     *
+     * @param collectionManager Collection, that commands work with.
+     * @param collectionStorage Storage of the marines.
+     * @param userStorage       Storage of the users.
+     * @param commandHistory    History, where used commands are recorded.
+     * @return Manager of the commands.
+     */
+    public static CommandManager createCommandManager(CollectionManager collectionManager,
+                                                      CollectionStorage collectionStorage, UserStorage userStorage,
+                                                      CommandHistory commandHistory) {
+        CommandManager commandManager = new CommandManager(commandHistory);
+        commandManager.register(new HelpCommand(commandManager));
+        commandManager.register(new InfoCommand(collectionManager));
+        commandManager.register(new ShowCommand(collectionManager));
+        commandManager.register(new AddCommand(collectionManager, collectionStorage));
+        commandManager.register(new UpdateCommand(collectionManager, collectionStorage));
+        commandManager.register(new RemoveByIdCommand(collectionManager, collectionStorage));
+        commandManager.register(new ClearCommand(collectionManager, collectionStorage));
+        commandManager.register(new ExitCommand());
+        commandManager.register(new ExecuteScriptCommand());
+        commandManager.register(new AddIfMinCommand(collectionManager, collectionStorage));
+        commandManager.register(new RemoveGreaterCommand(collectionManager, collectionStorage));
+        commandManager.register(new HistoryCommand(commandManager));
+        commandManager.register(new SumOfHealthCommand(collectionManager));
+        commandManager.register(new MaxByMeleeWeaponCommand(collectionManager));
+        commandManager.register(new FilterByWeaponTypeCommand(collectionManager));
+        commandManager.register(new ServerExitCommand());
+        commandManager.register(new LoginCommand(userStorage));
+        commandManager.register(new RegisterCommand(userStorage));
+        return commandManager;
+    }
+
+    /**
+     * Hook drains the server, when the process is asked to stop, and waits until the main thread finishes.
+     *
+     * @param server     Server to stop.
+     * @param mainThread Thread, that runs the server.
+     * @return Hook thread.
+     */
+    private static Thread createShutdownHook(Server server, Thread mainThread) {
+        return new Thread(() -> {
+            server.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException exception) {
+                App.logger.error("Server cannot finish the work with clients!");
+            }
+        }, "shutdown-hook");
     }
 
     /**
-     * Controls initialization.
+     * Controls initialization. Port can be omitted, when the server doesn't listen on TCP, database host and
+     * password, when the server doesn't use the database. All three arguments are always accepted.
      */
     private static boolean initialize(String[] args) {
         try {
-            if (args.length != 3) throw new WrongAmountOfElementsException();
-            port = Integer.parseInt(args[0]);
-            if (port < 0) throw new NotInDeclaredLimitsException();
-            databaseHost = args[1];
-            databasePassword = args[2];
-            databaseAddress = "jdbc:postgresql://" + databaseHost + ":5432/prog_lab7";
+            boolean isDatabaseUsed = serverConfig.getStorage() == StorageType.DATABASE;
+            boolean isEveryArgumentGiven = args.length == 3;
+            int requiredArguments = (serverConfig.isTcpEnabled() ? 1 : 0) + (isDatabaseUsed ? 2 : 0);
+            if (!isEveryArgumentGiven && args.length != requiredArguments) throw new WrongAmountOfElementsException();
+            int argument = 0;
+            if (isEveryArgumentGiven || serverConfig.isTcpEnabled()) {
+                port = Integer.parseInt(args[argument++]);
+                if (port < 0) throw new NotInDeclaredLimitsException();
+            }
+            if (isEveryArgumentGiven || isDatabaseUsed) {
+                databaseHost = args[argument++];
+                databasePassword = args[argument];
+                databaseAddress = "jdbc:postgresql://" + databaseHost + ":5432/prog_lab7";
+            }
             return true;
         } catch (WrongAmountOfElementsException exception) {
             String jarName = new java.io.File(App.class.getProtectionDomain()
@@ -70,7 +151,9 @@ public class App {
                     .getLocation()
                     .getPath())
                     .getName();
-            Outputer.println("Execute: 'java -jar " + jarName + " <port> <db_host> <db_password>'");
+            Outputer.println("Execute: 'java -jar " + jarName + " <port> <db_host> <db_password>', " +
+                    "the port can be omitted with '-Dserver.tcp=false', the database host and password with " +
+                    "'-Dserver.storage=memory'");
         } catch (NumberFormatException exception) {
             Outputer.printerror("Port should be a number!");
             App.logger.fatal("Port should be a number!");
@@ -81,4 +164,21 @@ public class App {
         App.logger.fatal("Error initializing launch port!");
         return false;
     }
+
+    /**
+     * Controls reading of server settings.
+     */
+    private static boolean initializeConfig() {
+        try {
+            serverConfig = ServerConfig.fromSystemProperties();
+            return true;
+        } catch (NotInDeclaredLimitsException exception) {
+            Outputer.printerror("Server settings must be positive numbers!");
+            App.logger.fatal("Server settings must be positive numbers!");
+        } catch (IllegalArgumentException exception) {
+            Outputer.printerror("Server settings are incorrect!");
+            App.logger.fatal("Server settings are incorrect!");
+        }
+        return false;
+    }
 }
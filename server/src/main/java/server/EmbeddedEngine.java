@@ -0,0 +1,115 @@
+package server;
+
+import common.data.SpaceMarine;
+import common.interaction.MarineRaw;
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+import common.interaction.User;
+import server.utility.CollectionManager;
+import server.utility.CollectionStorage;
+import server.utility.CollectionVersion;
+import server.utility.CommandManager;
+import server.utility.HandleRequestTask;
+import server.utility.MemoryCollectionStorage;
+import server.utility.MemoryUserStorage;
+import server.utility.RequestDeadline;
+import server.utility.UserStorage;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Command engine of the server without sockets, for benchmarks, tests and embedding.
+ * Commands run in the calling thread the same way as requests of the clients, but nothing is serialized.
+ * Storages are pluggable, so with the memory ones the engine works without the database.
+ * Responses of the commands carry the same rendered text as for the clients, typed data is read by getMarines
+ * and read.
+ */
+public class EmbeddedEngine {
+    private CollectionManager collectionManager;
+    private CommandManager commandManager;
+    private AtomicLong lastRequestId = new AtomicLong();
+
+    /**
+     * @param collectionStorage Storage of the marines.
+     * @param userStorage       Storage of the users.
+     */
+    public EmbeddedEngine(CollectionStorage collectionStorage, UserStorage userStorage) {
+        this.collectionManager = new CollectionManager(collectionStorage);
+        this.commandManager = App.createCommandManager(collectionManager, collectionStorage, userStorage);
+    }
+
+    /**
+     * @return Engine, that keeps everything in memory.
+     */
+    public static EmbeddedEngine inMemory() {
+        return new EmbeddedEngine(new MemoryCollectionStorage(), new MemoryUserStorage());
+    }
+
+    /**
+     * Executes the command like a request of a client.
+     *
+     * @param commandName Name of the command.
+     * @param argument    String argument, empty if the command has none.
+     * @param marine      Marine for the command, null if the command has none.
+     * @param user        User with the plain password.
+     * @return Response to the command.
+     */
+    public Response execute(String commandName, String argument, MarineRaw marine, User user) {
+        Request request = new Request(commandName, argument, marine, user);
+        request.setRequestId(lastRequestId.incrementAndGet());
+        return execute(request);
+    }
+
+    /**
+     * @param request Request to execute, its timeout is counted from now.
+     * @return Response to the request.
+     */
+    public Response execute(Request request) {
+        RequestDeadline.startCountdown(request, 0);
+        return new HandleRequestTask(request, commandManager).invoke();
+    }
+
+    /**
+     * @param user User with the plain password.
+     * @return Was user registered.
+     */
+    public boolean register(User user) {
+        return execute("register", "", null, user).getResponseCode() == ResponseCode.OK;
+    }
+
+    /**
+     * @param user User with the plain password.
+     * @return Are the username and password correct.
+     */
+    public boolean login(User user) {
+        return execute("login", "", null, user).getResponseCode() == ResponseCode.OK;
+    }
+
+    /**
+     * @return Copy of the collection.
+     */
+    public NavigableSet<SpaceMarine> getMarines() {
+        return new TreeSet<>(collectionManager.getCollection());
+    }
+
+    /**
+     * Reads the current version of the collection, it doesn't change while it is read and needs no locks.
+     *
+     * @param reader Reads the version.
+     * @return Result of the reader.
+     */
+    public <T> T read(Function<CollectionVersion, T> reader) {
+        return reader.apply(collectionManager.getVersion());
+    }
+
+    /**
+     * @return Manager of the commands, e.g. for the HTTP gateway.
+     */
+    public CommandManager getCommandManager() {
+        return commandManager;
+    }
+}
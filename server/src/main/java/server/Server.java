@@ -4,74 +4,437 @@ import common.exceptions.ClosingSocketException;
 import common.exceptions.ConnectionErrorException;
 import common.exceptions.OpeningServerSocketException;
 import common.utility.Outputer;
+import server.utility.Bulkhead;
+import server.utility.Bulkheads;
 import server.utility.CommandManager;
+import server.utility.ConcurrencyLimiter;
 import server.utility.ConnectionHandler;
+import server.utility.EventLoop;
+import server.utility.HttpGateway;
+import server.utility.IdleMonitor;
+import server.utility.RequestScheduler;
+import server.utility.ServerMetrics;
+import server.utility.VirtualThreads;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Runs the server.
+ * Stopping server drains connections: it stops accepting, answers the requests, that were already read,
+ * and asks clients to reconnect. Connections, that aren't drained in time, are closed.
+ * Local clients can also connect by the Unix domain socket, which has its own acceptor.
+ * Semaphore limits connections, while the adaptive limiter sheds requests, when the server gets slow.
  */
 public class Server {
+    public static final String RECONNECT_MESSAGE = "Server is restarting, reconnect later.\n";
+    private static final long WRITER_KEEP_ALIVE = 60;
+    private static final long MIN_ACCEPT_BACKOFF = 10;
+    private static final long MAX_ACCEPT_BACKOFF = 1000;
+    private static final long ACCEPT_ERROR_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
     private int port;
-    private ServerSocket serverSocket;
+    private ServerConfig config;
+    private List<ServerSocketChannel> serverChannels = new ArrayList<>();
+    private ServerSocketChannel unixServerChannel;
     private CommandManager commandManager;
+    private HttpGateway httpGateway;
     private boolean isStopped;
-    private ExecutorService cachedThreadPool = Executors.newCachedThreadPool();
+    private ExecutorService cachedThreadPool;
+    private boolean virtualThreads;
+    private ExecutorService writerPool;
+    private ExecutorService databasePool;
+    private ExecutorService memoryPool;
+    private Bulkheads scheduler;
+    private List<EventLoop> eventLoops = new ArrayList<>();
+    private AtomicInteger nextEventLoop = new AtomicInteger();
     private Semaphore semaphore;
+    private int maxClients;
+    private ServerMetrics metrics = new ServerMetrics();
+    private ConcurrencyLimiter concurrencyLimiter;
+    private IdleMonitor idleMonitor;
+    private volatile boolean isDrained;
+
+    public Server(int port, int maxClients, ServerConfig config, CommandManager commandManager) {
+        this(port, maxClients, config, commandManager, null);
+    }
 
-    public Server(int port, int maxClients, CommandManager commandManager) {
+    /**
+     * @param httpGateway Gateway, that serves the commands over HTTP, null if it is off.
+     */
+    public Server(int port, int maxClients, ServerConfig config, CommandManager commandManager,
+                  HttpGateway httpGateway) {
         this.port = port;
+        this.httpGateway = httpGateway;
+        this.config = config;
         this.commandManager = commandManager;
         this.semaphore = new Semaphore(maxClients);
+        this.maxClients = maxClients;
+        this.concurrencyLimiter = new ConcurrencyLimiter(config.getMinConcurrency(), config.getMaxConcurrency(),
+                config.getLatencyTolerance());
+        this.idleMonitor = new IdleMonitor(config.getHeartbeatInterval(), config.getIdleTimeout(),
+                config.getWriteTimeout(), metrics);
+        if (config.getMode() == ServerMode.VIRTUAL) createVirtualThreadPool();
+        else cachedThreadPool = Executors.newCachedThreadPool();
     }
 
     /**
      * Begins server operation.
      */
     public void run() {
+        App.logger.info("Server settings: " + config + ".");
+        idleMonitor.start();
+        if (config.getMode() == ServerMode.SELECTOR) runSelectorMode();
+        else runBlockingMode();
+        idleMonitor.stop();
+        App.logger.info("Server metrics: " + metrics + ", " + concurrencyLimiter + ".");
+    }
+
+    /**
+     * @return Counters of the server work.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Limiter of requests, that the server works on at once.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @return Monitor, that closes connections of silent clients.
+     */
+    public IdleMonitor getIdleMonitor() {
+        return idleMonitor;
+    }
+
+    /**
+     * @return Were all connections drained before the deadline, so no request runs after the server stopped.
+     */
+    public boolean isDrained() {
+        return isDrained;
+    }
+
+    /**
+     * @return Schedulers of the bulkheads, that run requests of all connections in a fair order.
+     */
+    public Bulkheads getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return Pool, that writes responses in blocking and virtual modes.
+     */
+    public ExecutorService getWriterPool() {
+        return writerPool;
+    }
+
+    /**
+     * Serves every client in its own thread. In virtual mode these threads are virtual.
+     * Requests are run by the schedulers in the pools of their bulkheads.
+     * Responses of all clients are written by the shared writer pool, one writer at most for a connection.
+     * The pool keeps 'server.writers' threads and grows up to a thread for every connection, so a client, that reads
+     * slowly, holds only its own writer. In virtual mode writers are virtual threads.
+     */
+    private void runBlockingMode() {
         try {
-            openServerSocket();
-            while (!isStopped()) {
-                try {
-                    acquireConnection();
-                    if (isStopped()) throw new ConnectionErrorException();
-                    Socket clientSocket = connectToClient();
-                    cachedThreadPool.submit(new ConnectionHandler(this, clientSocket, commandManager));
-                } catch (ConnectionErrorException exception) {
-                    if (!isStopped()) {
-                        Outputer.printerror("Error occurred while connecting to the client!");
-                        App.logger.error("Error occurred while connecting to the client!");
-                    } else break;
-                }
+            openServerChannels();
+            writerPool = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor() :
+                    new ThreadPoolExecutor(config.getWriterThreads(), Math.max(config.getWriterThreads(), maxClients),
+                            WRITER_KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<>(), namedThreads("writer-"));
+            createBulkheads();
+            startHttpGateway();
+            runAcceptors();
+            if (httpGateway != null) httpGateway.stop(config.getDrainTimeout());
+            long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getDrainTimeout());
+            isDrained = cachedThreadPool.awaitTermination(config.getDrainTimeout(), TimeUnit.SECONDS) &&
+                    awaitBulkheads(drainDeadline);
+            if (!isDrained) {
+                closeUndrainedConnections();
+                cachedThreadPool.shutdownNow();
+                shutdownBulkheadsNow();
+            }
+            writerPool.shutdown();
+            Outputer.println("Server work is complete.");
+        } catch (OpeningServerSocketException exception) {
+            Outputer.printerror("Server cannot be started!");
+            App.logger.fatal("Server cannot be started!");
+        } catch (InterruptedException e) {
+            Outputer.printerror("An error occurred while ending the work with already connected clients!");
+        }
+    }
+
+    /**
+     * Serves clients with a few selector threads, requests are run by the schedulers in the pools of their bulkheads.
+     */
+    private void runSelectorMode() {
+        List<Thread> eventLoopThreads = new ArrayList<>();
+        try {
+            openServerChannels();
+            createBulkheads();
+            for (int i = 0; i < config.getEventLoopThreads(); i++) {
+                EventLoop eventLoop = new EventLoop(this, commandManager, scheduler, config);
+                Thread eventLoopThread = new Thread(eventLoop, "event-loop-" + i);
+                eventLoops.add(eventLoop);
+                eventLoopThreads.add(eventLoopThread);
+                eventLoopThread.start();
             }
-            cachedThreadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            startHttpGateway();
+            runAcceptors();
+            if (httpGateway != null) httpGateway.stop(config.getDrainTimeout());
+            long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getDrainTimeout());
+            for (Thread eventLoopThread : eventLoopThreads)
+                eventLoopThread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(drainDeadline - System.nanoTime())));
+            boolean areClientsServed = eventLoopThreads.stream().noneMatch(Thread::isAlive);
+            if (!areClientsServed) {
+                closeUndrainedConnections();
+                for (Thread eventLoopThread : eventLoopThreads) eventLoopThread.join();
+            }
+            isDrained = awaitBulkheads(drainDeadline) && areClientsServed;
+            if (!isDrained) shutdownBulkheadsNow();
             Outputer.println("Server work is complete.");
         } catch (OpeningServerSocketException exception) {
             Outputer.printerror("Server cannot be started!");
             App.logger.fatal("Server cannot be started!");
+        } catch (IOException exception) {
+            Outputer.printerror("Selector threads cannot be started!");
+            App.logger.fatal("Selector threads cannot be started!");
+            for (EventLoop eventLoop : eventLoops) eventLoop.shutdown();
+            if (scheduler != null) shutdownBulkheadsNow();
         } catch (InterruptedException e) {
             Outputer.printerror("An error occurred while ending the work with already connected clients!");
         }
     }
 
     /**
-     * Acquire connection.
+     * Starts HTTP gateway, if it is on. Server works without it, if its port cannot be used.
      */
-    public void acquireConnection() {
+    private void startHttpGateway() {
+        if (httpGateway == null) return;
         try {
-            semaphore.acquire();
-            App.logger.info("Permission for a new connection received.");
-        } catch (InterruptedException exception) {
-            Outputer.printerror("An error occurred while acquiring permission for a new connection!");
-            App.logger.error("An error occurred while acquiring permission for a new connection!");
+            httpGateway.start(scheduler, concurrencyLimiter, metrics);
+        } catch (IOException exception) {
+            httpGateway = null;
+            Outputer.printerror("HTTP gateway cannot be started!");
+            App.logger.error("HTTP gateway cannot be started!");
+        }
+    }
+
+    /**
+     * Accepts clients by several threads until the server stops.
+     * With SO_REUSEPORT every acceptor has its own channel, otherwise they share one.
+     * Unix domain socket has one more acceptor.
+     *
+     * @throws InterruptedException When waiting for acceptors is interrupted.
+     */
+    private void runAcceptors() throws InterruptedException {
+        List<Thread> acceptorThreads = new ArrayList<>();
+        for (int i = 0; i < config.getAcceptorThreads() && !serverChannels.isEmpty(); i++) {
+            ServerSocketChannel serverChannel = serverChannels.get(i % serverChannels.size());
+            Thread acceptorThread = new Thread(() -> acceptClients(serverChannel), "acceptor-" + i);
+            acceptorThreads.add(acceptorThread);
+            acceptorThread.start();
         }
+        if (!serverChannels.isEmpty()) {
+            Outputer.println("Listening on port '" + port + "'...");
+            App.logger.info("Listening on port '" + port + "' by " + acceptorThreads.size() + " acceptors and " +
+                    serverChannels.size() + " channels...");
+        }
+        if (unixServerChannel != null) {
+            Thread acceptorThread = new Thread(() -> acceptClients(unixServerChannel), "unix-acceptor");
+            acceptorThreads.add(acceptorThread);
+            acceptorThread.start();
+            Outputer.println("Listening on socket '" + config.getUnixSocket() + "'...");
+            App.logger.info("Listening on socket '" + config.getUnixSocket() + "'...");
+        }
+        for (Thread acceptorThread : acceptorThreads) acceptorThread.join();
+    }
+
+    /**
+     * Accepting cycle of one acceptor. Accepts are only counted, nothing is printed until an error.
+     * Acceptor never waits for a free place, client over the limit is accepted and closed at once, so the backlog
+     * doesn't fill up with clients, that nobody reads.
+     * After a failed accept, e.g. when there are no free file descriptors, the acceptor waits from 10 ms up to
+     * a second, doubling the pause while accepts keep failing, and logs the errors at most once in 10 seconds.
+     *
+     * @param serverChannel Channel of the acceptor.
+     */
+    private void acceptClients(ServerSocketChannel serverChannel) {
+        long backoff = 0;
+        long lastErrorLogTime = System.nanoTime() - ACCEPT_ERROR_LOG_INTERVAL;
+        long unloggedErrors = 0;
+        while (!isStopped()) {
+            try {
+                SocketChannel clientChannel = connectToClient(serverChannel);
+                backoff = 0;
+                metrics.countAcceptedConnection();
+                if (!tryAcquireConnection()) {
+                    refuseClient(clientChannel);
+                    continue;
+                }
+                dispatchClient(clientChannel);
+            } catch (ConnectionErrorException exception) {
+                if (isStopped()) break;
+                metrics.countAcceptError();
+                unloggedErrors++;
+                long now = System.nanoTime();
+                if (now - lastErrorLogTime >= ACCEPT_ERROR_LOG_INTERVAL) {
+                    App.logger.error("Error occurred while connecting to the client! Failed accepts since " +
+                            "the last report: " + unloggedErrors + ".");
+                    lastErrorLogTime = now;
+                    unloggedErrors = 0;
+                }
+                backoff = backoff == 0 ? MIN_ACCEPT_BACKOFF : Math.min(backoff * 2, MAX_ACCEPT_BACKOFF);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes accepted client, because the server has too many clients.
+     *
+     * @param clientChannel Accepted channel.
+     */
+    private void refuseClient(SocketChannel clientChannel) {
+        metrics.countRefusedConnection();
+        App.logger.debug("Client was refused, because the server has too many clients.");
+        try {
+            clientChannel.close();
+        } catch (IOException exception) {
+            App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+        }
+    }
+
+    /**
+     * Passes accepted client to its handler by the server mode.
+     *
+     * @param clientChannel Accepted channel.
+     */
+    private void dispatchClient(SocketChannel clientChannel) {
+        try {
+            if (config.getMode() == ServerMode.SELECTOR) {
+                eventLoops.get(Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.size()))
+                        .register(clientChannel);
+            } else {
+                cachedThreadPool.submit(new ConnectionHandler(this, clientChannel, commandManager, config));
+            }
+        } catch (RejectedExecutionException exception) {
+            App.logger.warn("Client was rejected, because the server is stopping.");
+            try {
+                clientChannel.close();
+            } catch (IOException closingException) {
+                App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+            }
+            releaseConnection();
+        }
+    }
+
+    /**
+     * Creates bulkheads: commands, that use the database, and commands, that work only in memory, have their own
+     * threads and queues. In virtual mode threads are virtual, so only the schedulers limit the requests.
+     */
+    private void createBulkheads() {
+        databasePool = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor() :
+                Executors.newFixedThreadPool(config.getWorkerThreads(), namedThreads("database-worker-"));
+        memoryPool = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor() :
+                Executors.newFixedThreadPool(config.getMemoryWorkerThreads(), namedThreads("memory-worker-"));
+        scheduler = new Bulkheads(commandManager,
+                new RequestScheduler(Bulkhead.DATABASE, databasePool, config.getWorkerThreads(),
+                        config.getMaxDatabaseQueue(), metrics),
+                new RequestScheduler(Bulkhead.MEMORY, memoryPool, config.getMemoryWorkerThreads(),
+                        config.getMaxMemoryQueue(), metrics));
+    }
+
+    /**
+     * @param prefix Prefix of the thread names.
+     * @return Factory of threads named by the prefix and their number.
+     */
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + threadNumber.getAndIncrement());
+    }
+
+    /**
+     * Waits for pipelined requests of the closed connections.
+     *
+     * @param drainDeadline Time by System.nanoTime(), until which the requests are waited.
+     * @return Are all requests finished.
+     * @throws InterruptedException When waiting is interrupted.
+     */
+    private boolean awaitBulkheads(long drainDeadline) throws InterruptedException {
+        databasePool.shutdown();
+        memoryPool.shutdown();
+        return databasePool.awaitTermination(Math.max(0, drainDeadline - System.nanoTime()), TimeUnit.NANOSECONDS) &&
+                memoryPool.awaitTermination(Math.max(0, drainDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Interrupts requests, that weren't finished before the deadline.
+     */
+    private void shutdownBulkheadsNow() {
+        databasePool.shutdownNow();
+        memoryPool.shutdownNow();
+    }
+
+    /**
+     * Closes connections, that weren't drained before the deadline.
+     */
+    private void closeUndrainedConnections() {
+        int closedConnections = idleMonitor.closeConnections();
+        metrics.countUndrainedConnectionsClosed(closedConnections);
+        Outputer.printerror("Clients weren't served in " + config.getDrainTimeout() + " s, " + closedConnections +
+                " connections are closed!");
+        App.logger.warn("Clients weren't served in " + config.getDrainTimeout() + " s, " + closedConnections +
+                " connections are closed!");
+    }
+
+    /**
+     * Creates pool of virtual threads or of usual ones, if JVM doesn't support them.
+     */
+    private void createVirtualThreadPool() {
+        try {
+            cachedThreadPool = VirtualThreads.newThreadPerTaskExecutor();
+            virtualThreads = true;
+        } catch (UnsupportedOperationException exception) {
+            Outputer.printerror("Virtual threads need Java 21 or newer, usual threads will be used!");
+            App.logger.warn("Virtual threads need Java 21 or newer, usual threads will be used!");
+            cachedThreadPool = Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Takes a place of the client without waiting.
+     *
+     * @return Was there a free place.
+     */
+    private boolean tryAcquireConnection() {
+        return semaphore.tryAcquire();
     }
 
     /**
@@ -79,19 +442,29 @@ public class Server {
      */
     public void releaseConnection() {
         semaphore.release();
-        App.logger.info("Connection break detected.");
+        App.logger.debug("Connection break detected.");
     }
 
     /**
-     * Finishes server operation.
+     * Finishes server operation. Stops accepting and drains connected clients. Does nothing after the first call.
      */
     public synchronized void stop() {
+        if (isStopped) return;
         try {
             App.logger.info("Stopping the server...");
-            if (serverSocket == null) throw new ClosingSocketException();
             isStopped = true;
+            if (serverChannels.isEmpty() && unixServerChannel == null) throw new ClosingSocketException();
             cachedThreadPool.shutdown();
-            serverSocket.close();
+            for (EventLoop eventLoop : eventLoops) eventLoop.shutdown();
+            try {
+                for (ServerSocketChannel serverChannel : serverChannels) serverChannel.close();
+                if (unixServerChannel != null) {
+                    unixServerChannel.close();
+                    Files.deleteIfExists(config.getUnixSocket());
+                }
+            } finally {
+                idleMonitor.drainConnections();
+            }
             Outputer.println("Ending work with already connected clients...");
             App.logger.info("Server work is complete.");
         } catch (ClosingSocketException exception) {
@@ -109,18 +482,71 @@ public class Server {
      *
      * @return Status of server stop.
      */
-    private synchronized boolean isStopped() {
+    public synchronized boolean isStopped() {
         return isStopped;
     }
 
     /**
-     * Open server socket.
+     * Opens server channels. With SO_REUSEPORT there is a channel for each acceptor.
      */
-    private void openServerSocket() throws OpeningServerSocketException {
+    private void openServerChannels() throws OpeningServerSocketException {
+        App.logger.info("Starting the server...");
+        int channelCount = !config.isTcpEnabled() ? 0 : config.isReusePort() ? config.getAcceptorThreads() : 1;
+        for (int i = 0; i < channelCount; i++) {
+            ServerSocketChannel serverChannel = openServerChannel(channelCount > 1);
+            if (serverChannel == null) break;
+            serverChannels.add(serverChannel);
+        }
+        if (config.getUnixSocket() != null) unixServerChannel = openUnixServerChannel(config.getUnixSocket());
+        App.logger.info("Server is running.");
+    }
+
+    /**
+     * Socket file, that is left by a stopped server, is replaced. File of a running server is not touched.
+     *
+     * @param socketFile File of the Unix domain socket.
+     * @return Opened channel.
+     */
+    private ServerSocketChannel openUnixServerChannel(Path socketFile) throws OpeningServerSocketException {
+        UnixDomainSocketAddress socketAddress = UnixDomainSocketAddress.of(socketFile);
         try {
-            App.logger.info("Starting the server...");
-            serverSocket = new ServerSocket(port);
-            App.logger.info("Server is running.");
+            if (Files.exists(socketFile)) {
+                if (isSocketUsed(socketAddress)) {
+                    Outputer.printerror("The socket '" + socketFile + "' is used by another server!");
+                    App.logger.fatal("The socket '" + socketFile + "' is used by another server!");
+                    throw new OpeningServerSocketException();
+                }
+                Files.delete(socketFile);
+            }
+            ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverChannel.bind(socketAddress, config.getAcceptBacklog());
+            return serverChannel;
+        } catch (UnsupportedOperationException | IOException exception) {
+            Outputer.printerror("An error occurred while trying to use the socket '" + socketFile + "'!");
+            App.logger.fatal("An error occurred while trying to use the socket '" + socketFile + "'!");
+            throw new OpeningServerSocketException();
+        }
+    }
+
+    /**
+     * @param reusePort Should the port be shared with other channels.
+     * @return Opened channel or null, if the port cannot be shared and some channel is already opened.
+     */
+    private ServerSocketChannel openServerChannel(boolean reusePort) throws OpeningServerSocketException {
+        try {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            if (reusePort) {
+                if (!serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    serverChannel.close();
+                    if (serverChannels.isEmpty()) return openServerChannel(false);
+                    Outputer.printerror("SO_REUSEPORT isn't supported, acceptors will share one channel!");
+                    App.logger.warn("SO_REUSEPORT isn't supported, acceptors will share one channel!");
+                    return null;
+                }
+                serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            serverChannel.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+            return serverChannel;
         } catch (IllegalArgumentException exception) {
             Outputer.printerror("The port '" + port + "' is out of possible range!");
             App.logger.fatal("The port '" + port + "' is out of possible range!");
@@ -132,17 +558,33 @@ public class Server {
         }
     }
 
+    /**
+     * @param socketAddress Address of the Unix domain socket.
+     * @return Does some server accept connections on it.
+     */
+    private boolean isSocketUsed(UnixDomainSocketAddress socketAddress) {
+        SocketChannel probeChannel;
+        try {
+            probeChannel = SocketChannel.open(socketAddress);
+        } catch (IOException exception) {
+            return false;
+        }
+        try {
+            probeChannel.close();
+        } catch (IOException exception) {
+            App.logger.warn("An error occurred while closing the probe of the socket!");
+        }
+        return true;
+    }
+
     /**
      * Connecting to client.
+     *
+     * @param serverChannel Channel of the acceptor.
      */
-    private Socket connectToClient() throws ConnectionErrorException {
+    private SocketChannel connectToClient(ServerSocketChannel serverChannel) throws ConnectionErrorException {
         try {
-            Outputer.println("Listening on port '" + port + "'...");
-            App.logger.info("Listening on port '" + port + "'...");
-            Socket clientSocket = serverSocket.accept();
-            Outputer.println("Connection with the client established.");
-            App.logger.info("Connection with the client established.");
-            return clientSocket;
+            return serverChannel.accept();
         } catch (IOException exception) {
             throw new ConnectionErrorException();
         }
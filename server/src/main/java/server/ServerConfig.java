@@ -0,0 +1,702 @@
+package server;
+
+import common.exceptions.NotInDeclaredLimitsException;
+import common.interaction.CodecType;
+import common.interaction.CompressionType;
+import common.interaction.FrameCompressor;
+import common.interaction.Handshake;
+import common.interaction.MessageLimits;
+import common.interaction.StreamResetPolicy;
+import server.utility.CommandHistory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server settings. Are read from system properties, e.g. '-Dserver.mode=selector', or set by the builder.
+ * Names of the properties are listed in fromSystemProperties, default values in the builder. Timeouts and
+ * intervals are in seconds, lists are comma separated in the order of preference, e.g. '-Dserver.codecs=binary,object'.
+ */
+public class ServerConfig {
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private ServerMode mode;
+    private int acceptorThreads;
+    private boolean reusePort;
+    private int acceptBacklog;
+    private int eventLoopThreads;
+    private int workerThreads;
+    private int maxRequestsInFlight;
+    private int writerThreads;
+    private int maxQueuedBytes;
+    private List<CodecType> codecs;
+    private List<CompressionType> compressions;
+    private int compressionThreshold;
+    private int heartbeatInterval;
+    private int idleTimeout;
+    private int writeTimeout;
+    private StreamResetPolicy resetPolicy;
+    private MessageLimits requestLimits;
+    private int drainTimeout;
+    private Path snapshotFile;
+    private int snapshotMaxAge;
+    private int httpPort;
+    private int httpThreads;
+    private Path unixSocket;
+    private boolean tcpEnabled;
+    private StorageType storage;
+    private int maxSessions;
+    private int minConcurrency;
+    private int maxConcurrency;
+    private double latencyTolerance;
+    private int requestTimeout;
+    private int memoryWorkerThreads;
+    private int maxDatabaseQueue;
+    private int maxMemoryQueue;
+    private int historySize;
+    private int historyUsers;
+    private boolean globalHistory;
+
+    private ServerConfig(Builder builder) {
+        this.mode = builder.mode;
+        this.acceptorThreads = builder.acceptorThreads;
+        this.reusePort = builder.reusePort;
+        this.acceptBacklog = builder.acceptBacklog;
+        this.eventLoopThreads = builder.eventLoopThreads;
+        this.workerThreads = builder.workerThreads;
+        this.maxRequestsInFlight = builder.maxRequestsInFlight;
+        this.writerThreads = builder.writerThreads;
+        this.maxQueuedBytes = builder.maxQueuedBytes;
+        this.codecs = builder.codecs;
+        this.compressions = builder.compressions;
+        this.compressionThreshold = builder.compressionThreshold;
+        this.heartbeatInterval = builder.heartbeatInterval;
+        this.idleTimeout = builder.idleTimeout;
+        this.writeTimeout = builder.writeTimeout;
+        this.resetPolicy = builder.resetPolicy;
+        this.requestLimits = builder.requestLimits;
+        this.drainTimeout = builder.drainTimeout;
+        this.snapshotFile = builder.snapshotFile;
+        this.snapshotMaxAge = builder.snapshotMaxAge;
+        this.httpPort = builder.httpPort;
+        this.httpThreads = builder.httpThreads;
+        this.unixSocket = builder.unixSocket;
+        this.tcpEnabled = builder.tcpEnabled;
+        this.storage = builder.storage;
+        this.maxSessions = builder.maxSessions;
+        this.minConcurrency = builder.minConcurrency;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.requestTimeout = builder.requestTimeout;
+        this.memoryWorkerThreads = builder.memoryWorkerThreads;
+        this.maxDatabaseQueue = builder.maxDatabaseQueue;
+        this.maxMemoryQueue = builder.maxMemoryQueue;
+        this.historySize = builder.historySize;
+        this.historyUsers = builder.historyUsers;
+        this.globalHistory = builder.globalHistory;
+    }
+
+    /**
+     * Reads settings from system properties. Settings, whose properties aren't set, keep the defaults of the builder.
+     *
+     * @return Server settings.
+     * @throws NotInDeclaredLimitsException When some number is not positive.
+     * @throws IllegalArgumentException     When some value cannot be parsed or server has nothing to listen on.
+     */
+    public static ServerConfig fromSystemProperties() throws NotInDeclaredLimitsException {
+        Builder builder = new Builder();
+        builder.mode(ServerMode.valueOf(System.getProperty("server.mode", builder.mode.name()).toUpperCase()))
+                .acceptorThreads(positiveProperty("server.acceptors", builder.acceptorThreads))
+                .reusePort(booleanProperty("server.reusePort", builder.reusePort))
+                .acceptBacklog(positiveProperty("server.backlog", builder.acceptBacklog))
+                .eventLoopThreads(positiveProperty("server.eventLoops", builder.eventLoopThreads))
+                .workerThreads(positiveProperty("server.workers", builder.workerThreads))
+                .memoryWorkerThreads(positiveProperty("server.memoryWorkers", builder.memoryWorkerThreads))
+                .maxDatabaseQueue(positiveProperty("server.databaseQueue", builder.maxDatabaseQueue))
+                .maxMemoryQueue(positiveProperty("server.memoryQueue", builder.maxMemoryQueue))
+                .maxRequestsInFlight(positiveProperty("server.maxInFlight", builder.maxRequestsInFlight))
+                .writerThreads(positiveProperty("server.writers", builder.writerThreads))
+                .maxQueuedBytes(positiveProperty("server.maxQueuedBytes", builder.maxQueuedBytes));
+        String codecs = System.getProperty("server.codecs");
+        if (codecs != null) builder.codecs(CodecType.parseList(codecs));
+        String compressions = System.getProperty("server.compressions");
+        if (compressions != null) builder.compressions(CompressionType.parseList(compressions));
+        builder.compressionThreshold(positiveProperty("server.compressionThreshold", builder.compressionThreshold))
+                .heartbeatInterval(positiveProperty("server.heartbeatInterval", builder.heartbeatInterval))
+                .idleTimeout(positiveProperty("server.idleTimeout", builder.idleTimeout))
+                .writeTimeout(positiveProperty("server.writeTimeout", builder.writeTimeout))
+                .resetPolicy(new StreamResetPolicy(positiveProperty("server.resetMessages", 1000),
+                        positiveProperty("server.resetBytes", 1024 * 1024)))
+                .requestLimits(new MessageLimits(positiveProperty("server.maxRequestBytes", 1024 * 1024),
+                        positiveProperty("server.maxDepth", 16), positiveProperty("server.maxArrayLength", 1024),
+                        MessageLimits.parseAllowedClasses(System.getProperty("server.allowedClasses",
+                                MessageLimits.DEFAULT_ALLOWED_CLASSES))))
+                .drainTimeout(positiveProperty("server.drainTimeout", builder.drainTimeout))
+                .snapshotFile(pathProperty("server.snapshot"))
+                .snapshotMaxAge(positiveProperty("server.snapshotMaxAge", builder.snapshotMaxAge))
+                .httpPort(positiveProperty("server.httpPort", builder.httpPort))
+                .httpThreads(positiveProperty("server.httpThreads", builder.httpThreads))
+                .unixSocket(pathProperty("server.unixSocket"))
+                .tcpEnabled(booleanProperty("server.tcp", builder.tcpEnabled))
+                .storage(StorageType.valueOf(System.getProperty("server.storage", builder.storage.name())
+                        .toUpperCase()))
+                .maxSessions(positiveProperty("server.maxSessions", builder.maxSessions))
+                .minConcurrency(positiveProperty("server.minConcurrency", builder.minConcurrency))
+                .maxConcurrency(positiveProperty("server.maxConcurrency", builder.maxConcurrency))
+                .latencyTolerance(Double.parseDouble(System.getProperty("server.latencyTolerance",
+                        String.valueOf(builder.latencyTolerance)).trim()))
+                .requestTimeout(positiveProperty("server.requestTimeout", builder.requestTimeout))
+                .historySize(positiveProperty("server.historySize", builder.historySize))
+                .historyUsers(positiveProperty("server.historyUsers", builder.historyUsers))
+                .globalHistory(booleanProperty("server.globalHistory", builder.globalHistory));
+        return builder.build();
+    }
+
+    /**
+     * @param name         Name of the property.
+     * @param defaultValue Value if property isn't set.
+     * @return Value of the property.
+     * @throws NotInDeclaredLimitsException When value is not positive.
+     */
+    private static int positiveProperty(String name, int defaultValue) throws NotInDeclaredLimitsException {
+        String value = System.getProperty(name);
+        if (value == null) return defaultValue;
+        int number = Integer.parseInt(value.trim());
+        if (number <= 0) throw new NotInDeclaredLimitsException();
+        return number;
+    }
+
+    /**
+     * @param name         Name of the property.
+     * @param defaultValue Value if property isn't set.
+     * @return Value of the property.
+     */
+    private static boolean booleanProperty(String name, boolean defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @param name Name of the property.
+     * @return Path from the property, null if it isn't set.
+     */
+    private static Path pathProperty(String name) {
+        String value = System.getProperty(name);
+        return value == null ? null : Paths.get(value);
+    }
+
+    /**
+     * @return Connection handling mode.
+     */
+    public ServerMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Number of threads, that accept clients.
+     */
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    /**
+     * @return Should every acceptor have its own channel bound with SO_REUSEPORT.
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * @return Length of the queue of clients, that aren't accepted yet.
+     */
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    /**
+     * @return Number of selector threads in selector mode.
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * @return Number of threads, that run commands using the database.
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @return Number of requests of one connection, that can be executed at once.
+     */
+    public int getMaxRequestsInFlight() {
+        return maxRequestsInFlight;
+    }
+
+    /**
+     * @return Number of threads, that the writer pool of blocking mode keeps, when clients don't need more.
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * @return Size of unwritten responses of one connection, from which it stops reading requests.
+     */
+    public int getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * @return Codecs, that clients can choose.
+     */
+    public List<CodecType> getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * @return Compressions, that clients can choose.
+     */
+    public List<CompressionType> getCompressions() {
+        return compressions;
+    }
+
+    /**
+     * @return Size of responses, from which they are compressed.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @return Seconds of client silence, after which the server sends a heartbeat.
+     */
+    public int getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * @return Seconds of client silence, after which the connection is closed.
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @return Seconds of writing one response to a client, after which the connection is closed.
+     */
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * @return When to reset object streams of connections.
+     */
+    public StreamResetPolicy getResetPolicy() {
+        return resetPolicy;
+    }
+
+    /**
+     * @return Limits for requests of clients.
+     */
+    public MessageLimits getRequestLimits() {
+        return requestLimits;
+    }
+
+    /**
+     * @return Seconds of serving connected clients after the stop, after which their connections are closed.
+     */
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * @return File for the collection snapshot, null if snapshots are off.
+     */
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @return Seconds, during which the snapshot can be loaded instead of the database.
+     */
+    public int getSnapshotMaxAge() {
+        return snapshotMaxAge;
+    }
+
+    /**
+     * @return Port of the HTTP gateway, 0 if it is off.
+     */
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    /**
+     * @return Number of threads of the HTTP gateway.
+     */
+    public int getHttpThreads() {
+        return httpThreads;
+    }
+
+    /**
+     * @return File of the Unix domain socket, null if it is off.
+     */
+    public Path getUnixSocket() {
+        return unixSocket;
+    }
+
+    /**
+     * @return Does the server listen on the TCP port.
+     */
+    public boolean isTcpEnabled() {
+        return tcpEnabled;
+    }
+
+    /**
+     * @return Storage of the collection and the users.
+     */
+    public StorageType getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return Number of sessions, that one connection can have at once.
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * @return The lowest and initial limit of requests in work.
+     */
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    /**
+     * @return The highest limit of requests in work.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return How many times requests can be slower than the fastest ones, before the limit is cut.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * @return Milliseconds, that any request can take, 0 if requests are limited only by their clients.
+     */
+    public long getRequestTimeout() {
+        return TimeUnit.SECONDS.toMillis(requestTimeout);
+    }
+
+    /**
+     * @return Number of threads, that run commands working only in memory.
+     */
+    public int getMemoryWorkerThreads() {
+        return memoryWorkerThreads;
+    }
+
+    /**
+     * @return Number of commands using the database, that can wait for their turn.
+     */
+    public int getMaxDatabaseQueue() {
+        return maxDatabaseQueue;
+    }
+
+    /**
+     * @return Number of commands working only in memory, that can wait for their turn.
+     */
+    public int getMaxMemoryQueue() {
+        return maxMemoryQueue;
+    }
+
+    /**
+     * @return Number of commands, that every history keeps.
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * @return Number of users, whose histories are kept.
+     */
+    public int getHistoryUsers() {
+        return historyUsers;
+    }
+
+    /**
+     * @return Are commands of all users also kept together.
+     */
+    public boolean isGlobalHistory() {
+        return globalHistory;
+    }
+
+    /**
+     * @return Codecs and compressions for the handshake with clients.
+     */
+    public Handshake getSupportedSettings() {
+        return new Handshake(codecs, compressions);
+    }
+
+    /**
+     * Builder of the settings. Starts from the defaults, setters are named as the settings.
+     */
+    public static class Builder {
+        private ServerMode mode = ServerMode.BLOCKING;
+        private int acceptorThreads = Math.min(4, Math.max(1, PROCESSORS / 2));
+        private boolean reusePort = false;
+        private int acceptBacklog = 1024;
+        private int eventLoopThreads = Math.max(1, PROCESSORS / 2);
+        private int workerThreads = PROCESSORS * 2;
+        private int maxRequestsInFlight = 16;
+        private int writerThreads = Math.max(2, PROCESSORS / 2);
+        private int maxQueuedBytes = 4 * 1024 * 1024;
+        private List<CodecType> codecs = List.of(CodecType.BINARY, CodecType.OBJECT);
+        private List<CompressionType> compressions = List.of(CompressionType.DEFLATE);
+        private int compressionThreshold = FrameCompressor.DEFAULT_THRESHOLD;
+        private int heartbeatInterval = 30;
+        private int idleTimeout = 90;
+        private int writeTimeout = 30;
+        private StreamResetPolicy resetPolicy = StreamResetPolicy.DEFAULT;
+        private MessageLimits requestLimits = new MessageLimits(1024 * 1024, 16, 1024,
+                MessageLimits.parseAllowedClasses(MessageLimits.DEFAULT_ALLOWED_CLASSES));
+        private int drainTimeout = 30;
+        private Path snapshotFile;
+        private int snapshotMaxAge = 120;
+        private int httpPort = 0;
+        private int httpThreads = PROCESSORS * 2;
+        private Path unixSocket;
+        private boolean tcpEnabled = true;
+        private StorageType storage = StorageType.DATABASE;
+        private int maxSessions = 1024;
+        private int minConcurrency = PROCESSORS * 2;
+        private int maxConcurrency = 1000;
+        private double latencyTolerance = 2;
+        private int requestTimeout = 0;
+        private int memoryWorkerThreads = PROCESSORS;
+        private int maxDatabaseQueue = 1000;
+        private int maxMemoryQueue = 1000;
+        private int historySize = CommandHistory.DEFAULT_DEPTH;
+        private int historyUsers = CommandHistory.DEFAULT_USERS;
+        private boolean globalHistory = false;
+
+        public Builder mode(ServerMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder acceptorThreads(int acceptorThreads) {
+            this.acceptorThreads = acceptorThreads;
+            return this;
+        }
+
+        public Builder reusePort(boolean reusePort) {
+            this.reusePort = reusePort;
+            return this;
+        }
+
+        public Builder acceptBacklog(int acceptBacklog) {
+            this.acceptBacklog = acceptBacklog;
+            return this;
+        }
+
+        public Builder eventLoopThreads(int eventLoopThreads) {
+            this.eventLoopThreads = eventLoopThreads;
+            return this;
+        }
+
+        public Builder workerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        public Builder maxRequestsInFlight(int maxRequestsInFlight) {
+            this.maxRequestsInFlight = maxRequestsInFlight;
+            return this;
+        }
+
+        public Builder writerThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+            return this;
+        }
+
+        public Builder maxQueuedBytes(int maxQueuedBytes) {
+            this.maxQueuedBytes = maxQueuedBytes;
+            return this;
+        }
+
+        public Builder codecs(List<CodecType> codecs) {
+            this.codecs = codecs;
+            return this;
+        }
+
+        public Builder compressions(List<CompressionType> compressions) {
+            this.compressions = compressions;
+            return this;
+        }
+
+        public Builder compressionThreshold(int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        public Builder heartbeatInterval(int heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+            return this;
+        }
+
+        public Builder idleTimeout(int idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder writeTimeout(int writeTimeout) {
+            this.writeTimeout = writeTimeout;
+            return this;
+        }
+
+        public Builder resetPolicy(StreamResetPolicy resetPolicy) {
+            this.resetPolicy = resetPolicy;
+            return this;
+        }
+
+        public Builder requestLimits(MessageLimits requestLimits) {
+            this.requestLimits = requestLimits;
+            return this;
+        }
+
+        public Builder drainTimeout(int drainTimeout) {
+            this.drainTimeout = drainTimeout;
+            return this;
+        }
+
+        public Builder snapshotFile(Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        public Builder snapshotMaxAge(int snapshotMaxAge) {
+            this.snapshotMaxAge = snapshotMaxAge;
+            return this;
+        }
+
+        public Builder httpPort(int httpPort) {
+            this.httpPort = httpPort;
+            return this;
+        }
+
+        public Builder httpThreads(int httpThreads) {
+            this.httpThreads = httpThreads;
+            return this;
+        }
+
+        public Builder unixSocket(Path unixSocket) {
+            this.unixSocket = unixSocket;
+            return this;
+        }
+
+        public Builder tcpEnabled(boolean tcpEnabled) {
+            this.tcpEnabled = tcpEnabled;
+            return this;
+        }
+
+        public Builder storage(StorageType storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        public Builder maxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+            return this;
+        }
+
+        public Builder minConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder latencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        public Builder requestTimeout(int requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public Builder memoryWorkerThreads(int memoryWorkerThreads) {
+            this.memoryWorkerThreads = memoryWorkerThreads;
+            return this;
+        }
+
+        public Builder maxDatabaseQueue(int maxDatabaseQueue) {
+            this.maxDatabaseQueue = maxDatabaseQueue;
+            return this;
+        }
+
+        public Builder maxMemoryQueue(int maxMemoryQueue) {
+            this.maxMemoryQueue = maxMemoryQueue;
+            return this;
+        }
+
+        public Builder historySize(int historySize) {
+            this.historySize = historySize;
+            return this;
+        }
+
+        public Builder historyUsers(int historyUsers) {
+            this.historyUsers = historyUsers;
+            return this;
+        }
+
+        public Builder globalHistory(boolean globalHistory) {
+            this.globalHistory = globalHistory;
+            return this;
+        }
+
+        /**
+         * @return Server settings.
+         * @throws NotInDeclaredLimitsException When latency tolerance is not positive.
+         * @throws IllegalArgumentException     When server has nothing to listen on.
+         */
+        public ServerConfig build() throws NotInDeclaredLimitsException {
+            if (!tcpEnabled && unixSocket == null) throw new IllegalArgumentException("Server has nothing to listen on");
+            if (!(latencyTolerance > 0)) throw new NotInDeclaredLimitsException();
+            return new ServerConfig(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig[" + mode + ", acceptors: " + acceptorThreads + (reusePort ? " with SO_REUSEPORT" : "") +
+                ", backlog: " + acceptBacklog + ", event loops: " + eventLoopThreads + ", workers: " + workerThreads +
+                " for database and " + memoryWorkerThreads + " for memory, queues: " + maxDatabaseQueue + " and " +
+                maxMemoryQueue +
+                ", requests in flight: " + maxRequestsInFlight + ", writers: " + writerThreads +
+                ", max queued bytes: " + maxQueuedBytes + ", codecs: " + codecs + ", compressions: " + compressions +
+                " from " + compressionThreshold + " bytes, heartbeat: " + heartbeatInterval + " s, idle timeout: " +
+                idleTimeout + " s, write timeout: " + writeTimeout + " s, stream reset: " + resetPolicy +
+                ", request limits: " + requestLimits + ", drain timeout: " + drainTimeout + " s, snapshot: " +
+                (snapshotFile == null ? "off" : snapshotFile + " up to " + snapshotMaxAge + " s old") + ", HTTP: " +
+                (httpPort == 0 ? "off" : "port " + httpPort + " with " + httpThreads + " threads") + ", TCP: " +
+                (tcpEnabled ? "on" : "off") + ", Unix socket: " + (unixSocket == null ? "off" : unixSocket) + ", storage: " + storage +
+                ", sessions per connection: " + maxSessions + ", concurrency: " + minConcurrency + ".." +
+                maxConcurrency + " with latency tolerance " + latencyTolerance + ", request timeout: " +
+                (requestTimeout == 0 ? "off" : requestTimeout + " s") + ", history: " + historySize +
+                (globalHistory ? " per user and global" : " per user") + "]";
+    }
+}
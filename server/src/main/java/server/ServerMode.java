@@ -0,0 +1,10 @@
+package server;
+
+/**
+ * Enum of server connection handling modes.
+ */
+public enum ServerMode {
+    BLOCKING,
+    SELECTOR,
+    VIRTUAL
+}
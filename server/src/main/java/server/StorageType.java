@@ -0,0 +1,9 @@
+package server;
+
+/**
+ * Enum of storages of the collection and the users.
+ */
+public enum StorageType {
+    DATABASE,
+    MEMORY
+}
@@ -1,17 +1,22 @@
 package server.commands;
 
+import common.interaction.ResponseCode;
+import server.utility.RequestPriority;
+
 /**
- * Abstract Command class contains Object methods, name and description.
+ * Abstract Command class contains Object methods, name, description and concurrency class.
  */
 public abstract class AbstractCommand implements Command {
     private String name;
     private String usage;
     private String description;
+    private ConcurrencyClass concurrencyClass;
 
-    public AbstractCommand(String name, String usage, String description) {
+    public AbstractCommand(String name, String usage, String description, ConcurrencyClass concurrencyClass) {
         this.name = name;
         this.usage = usage;
         this.description = description;
+        this.concurrencyClass = concurrencyClass;
     }
 
     /**
@@ -38,6 +43,38 @@ public abstract class AbstractCommand implements Command {
         return description;
     }
 
+    /**
+     * @return What the command does with the shared state.
+     */
+    @Override
+    public ConcurrencyClass getConcurrencyClass() {
+        return concurrencyClass;
+    }
+
+    /**
+     * @return Priority class of the command in the scheduler, by default the one of its concurrency class.
+     */
+    @Override
+    public RequestPriority getPriority() {
+        return concurrencyClass.getPriority();
+    }
+
+    /**
+     * @return Code of the response, when the command succeeds.
+     */
+    @Override
+    public ResponseCode getSuccessCode() {
+        return ResponseCode.OK;
+    }
+
+    /**
+     * @return Is the command sent only by the client itself, so it isn't shown in help and history.
+     */
+    @Override
+    public boolean isInternal() {
+        return false;
+    }
+
     @Override
     public String toString() {
         return name + " " + usage + " (" + description + ")";
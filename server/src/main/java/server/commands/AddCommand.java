@@ -5,20 +5,20 @@ import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.MarineRaw;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.ResponseContext;
 
 /**
  * Command 'add'. Adds a new element to collection.
  */
 public class AddCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public AddCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("add", "{element}", "добавить новый элемент в коллекцию");
+    public AddCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("add", "{element}", "добавить новый элемент в коллекцию", ConcurrencyClass.OWNER_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
     }
 
     /**
@@ -27,19 +27,19 @@ public class AddCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument == null) throw new WrongAmountOfElementsException();
             MarineRaw marineRaw = (MarineRaw) objectArgument;
-            collectionManager.addToCollection(databaseCollectionManager.insertMarine(marineRaw, user));
-            ResponseOutputer.appendln("Солдат успешно добавлен!");
+            collectionManager.addToCollection(collectionStorage.insertMarine(marineRaw, user));
+            context.appendln("Солдат успешно добавлен!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("спользование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("спользование: '" + getName() + " " + getUsage() + "'");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         }
         return false;
     }
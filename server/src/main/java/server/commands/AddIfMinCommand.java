@@ -6,20 +6,31 @@ import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.MarineRaw;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.CollectionVersion;
+import server.utility.RequestPriority;
+import server.utility.ResponseContext;
 
 /**
  * Command 'add_if_min'. Adds a new element to collection if it's less than the minimal one.
  */
 public class AddIfMinCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public AddIfMinCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("add_if_min", "{element}", "добавить новый элемент, если его значение меньше, чем у наименьшего");
+    public AddIfMinCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("add_if_min", "{element}", "добавить новый элемент, если его значение меньше, чем у наименьшего",
+                ConcurrencyClass.COLLECTION_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
+    }
+
+    /**
+     * @return Update priority, the command adds a single marine.
+     */
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.UPDATE;
     }
 
     /**
@@ -28,22 +39,23 @@ public class AddIfMinCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument == null) throw new WrongAmountOfElementsException();
             MarineRaw marineRaw = (MarineRaw) objectArgument;
-            SpaceMarine marineToAdd = databaseCollectionManager.insertMarine(marineRaw, user);
-            if (collectionManager.collectionSize() == 0 || marineToAdd.compareTo(collectionManager.getFirst()) < 0) {
+            SpaceMarine marineToAdd = collectionStorage.insertMarine(marineRaw, user);
+            CollectionVersion version = collectionManager.getVersion();
+            if (version.collectionSize() == 0 || marineToAdd.compareTo(version.getFirst()) < 0) {
                 collectionManager.addToCollection(marineToAdd);
-                ResponseOutputer.appendln("Солдат успешно добавлен!");
+                context.appendln("Солдат успешно добавлен!");
                 return true;
-            } else ResponseOutputer.appenderror("Значение солдата больше, чем значение наименьшего из солдат!");
+            } else context.appenderror("Значение солдата больше, чем значение наименьшего из солдат!");
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         }
         return false;
     }
@@ -2,25 +2,27 @@ package server.commands;
 
 import common.data.SpaceMarine;
 import common.exceptions.DatabaseHandlingException;
+import common.exceptions.DeadlineExceededException;
 import common.exceptions.ManualDatabaseEditException;
 import common.exceptions.PermissionDeniedException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.RequestDeadline;
+import server.utility.ResponseContext;
 
 /**
  * Command 'clear'. Clears the collection.
  */
 public class ClearCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public ClearCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("clear", "", "очистить коллекцию");
+    public ClearCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("clear", "", "очистить коллекцию", ConcurrencyClass.COLLECTION_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
     }
 
     /**
@@ -29,27 +31,30 @@ public class ClearCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
             for (SpaceMarine marine : collectionManager.getCollection()) {
+                RequestDeadline.check();
                 if (!marine.getOwner().equals(user)) throw new PermissionDeniedException();
-                if (!databaseCollectionManager.checkMarineUserId(marine.getId(), user)) throw new ManualDatabaseEditException();
+                if (!collectionStorage.checkMarineUserId(marine.getId(), user)) throw new ManualDatabaseEditException();
             }
-            databaseCollectionManager.clearCollection();
+            collectionStorage.clearCollection();
             collectionManager.clearCollection();
-            ResponseOutputer.appendln("Коллекция очищена!");
+            context.appendln("Коллекция очищена!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (PermissionDeniedException exception) {
-            ResponseOutputer.appenderror("Недостаточно прав для выполнения данной команды!");
-            ResponseOutputer.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
+            context.appenderror("Недостаточно прав для выполнения данной команды!");
+            context.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
         } catch (ManualDatabaseEditException exception) {
-            ResponseOutputer.appenderror("Произошло прямое изменение базы данных!");
-            ResponseOutputer.appendln("Перезапустите клиент для избежания возможных ошибок.");
+            context.appenderror("Произошло прямое изменение базы данных!");
+            context.appendln("Перезапустите клиент для избежания возможных ошибок.");
+        } catch (DeadlineExceededException exception) {
+            context.appenderror("Срок запроса истёк, коллекция не очищена!");
         }
         return false;
     }
@@ -1,6 +1,9 @@
 package server.commands;
 
+import common.interaction.ResponseCode;
 import common.interaction.User;
+import server.utility.RequestPriority;
+import server.utility.ResponseContext;
 
 /**
  * Interface for all commands.
@@ -12,5 +15,13 @@ public interface Command {
 
     String getDescription();
 
-    boolean execute(String commandStringArgument, Object commandObjectArgument, User user);
+    ConcurrencyClass getConcurrencyClass();
+
+    RequestPriority getPriority();
+
+    ResponseCode getSuccessCode();
+
+    boolean isInternal();
+
+    boolean execute(String commandStringArgument, Object commandObjectArgument, User user, ResponseContext context);
 }
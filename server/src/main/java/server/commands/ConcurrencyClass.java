@@ -0,0 +1,43 @@
+package server.commands;
+
+import server.utility.Bulkhead;
+import server.utility.RequestPriority;
+
+/**
+ * Enum of what commands do with the shared state. The dispatcher locks and schedules commands by their classes,
+ * so new commands run as concurrently as they can without changes in the dispatcher.
+ * LOCK_FREE commands don't touch the collection, COLLECTION_READ read it, OWNER_WRITE change only marines of the
+ * user and the database, COLLECTION_WRITE change or compare marines of all users, AUTH only check or add users
+ * in the database.
+ * Each class has the default scheduler priority of its commands: reads and changes of the whole collection are
+ * scans, changes of single marines are updates, the others are interactive.
+ */
+public enum ConcurrencyClass {
+    LOCK_FREE(Bulkhead.MEMORY, RequestPriority.INTERACTIVE),
+    COLLECTION_READ(Bulkhead.MEMORY, RequestPriority.SCAN),
+    OWNER_WRITE(Bulkhead.DATABASE, RequestPriority.UPDATE),
+    COLLECTION_WRITE(Bulkhead.DATABASE, RequestPriority.SCAN),
+    AUTH(Bulkhead.DATABASE, RequestPriority.INTERACTIVE);
+
+    private final Bulkhead bulkhead;
+    private final RequestPriority priority;
+
+    ConcurrencyClass(Bulkhead bulkhead, RequestPriority priority) {
+        this.bulkhead = bulkhead;
+        this.priority = priority;
+    }
+
+    /**
+     * @return Bulkhead, whose threads run commands of the class.
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * @return Default scheduler priority of commands of the class.
+     */
+    public RequestPriority getPriority() {
+        return priority;
+    }
+}
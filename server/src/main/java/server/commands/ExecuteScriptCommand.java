@@ -2,14 +2,14 @@ package server.commands;
 
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'execute_script'. Executes scripts from a file. Ectually only checks argument and prints messages.
  */
 public class ExecuteScriptCommand extends AbstractCommand {
     public ExecuteScriptCommand() {
-        super("execute_script", "<file_name>", "исполнить скрипт из указанного файла");
+        super("execute_script", "<file_name>", "исполнить скрипт из указанного файла", ConcurrencyClass.LOCK_FREE);
     }
 
     /**
@@ -18,12 +18,12 @@ public class ExecuteScriptCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
@@ -1,8 +1,9 @@
 package server.commands;
 
 import common.exceptions.WrongAmountOfElementsException;
+import common.interaction.ResponseCode;
 import common.interaction.User;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'exit'. Checks for wrong arguments then do nothing.
@@ -10,7 +11,15 @@ import server.utility.ResponseOutputer;
 public class ExitCommand extends AbstractCommand {
 
     public ExitCommand() {
-        super("exit", "", "завершить работу клиента");
+        super("exit", "", "завершить работу клиента", ConcurrencyClass.LOCK_FREE);
+    }
+
+    /**
+     * @return Code, that ends the session or the connection.
+     */
+    @Override
+    public ResponseCode getSuccessCode() {
+        return ResponseCode.CLIENT_EXIT;
     }
 
     /**
@@ -19,12 +28,12 @@ public class ExitCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
@@ -5,7 +5,8 @@ import common.exceptions.CollectionIsEmptyException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionVersion;
+import server.utility.ResponseContext;
 
 /**
  * Command 'filter_by_weapon_type'. Filters the collection by weapon type.
@@ -15,7 +16,8 @@ public class FilterByWeaponTypeCommand extends AbstractCommand {
 
     public FilterByWeaponTypeCommand(CollectionManager collectionManager) {
         super("filter_by_weapon_type", "<weaponType>",
-                "вывести элементы, значение поля weaponType которых равно заданному");
+                "вывести элементы, значение поля weaponType которых равно заданному",
+                ConcurrencyClass.COLLECTION_READ);
         this.collectionManager = collectionManager;
     }
 
@@ -25,22 +27,22 @@ public class FilterByWeaponTypeCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            if (collectionManager.collectionSize() == 0) throw new CollectionIsEmptyException();
+            CollectionVersion version = collectionManager.getVersion();
+            if (version.collectionSize() == 0) throw new CollectionIsEmptyException();
             Weapon weapon = Weapon.valueOf(stringArgument.toUpperCase());
-            String filteredInfo = collectionManager.weaponFilteredInfo(weapon);
-            if (!filteredInfo.isEmpty()) ResponseOutputer.appendln(filteredInfo);
-            else ResponseOutputer.appendln("В коллекции нет солдат с выбранным типом оружия!");
+            if (!version.weaponFilteredInfo(weapon, context::append))
+                context.appendln("В коллекции нет солдат с выбранным типом оружия!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         } catch (IllegalArgumentException exception) {
-            ResponseOutputer.appenderror("Оружия нет в списке!");
-            ResponseOutputer.appendln("Список оружия дальнего боя - " + Weapon.nameList());
+            context.appenderror("Оружия нет в списке!");
+            context.appendln("Список оружия дальнего боя - " + Weapon.nameList());
         }
         return false;
     }
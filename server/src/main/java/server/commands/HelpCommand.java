@@ -2,15 +2,18 @@ package server.commands;
 
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
-import server.utility.ResponseOutputer;
+import server.utility.CommandManager;
+import server.utility.ResponseContext;
 
 /**
- * Command 'help'. It's here just for logical structure.
+ * Command 'help'. Prints the registered commands.
  */
 public class HelpCommand extends AbstractCommand {
+    private CommandManager commandManager;
 
-    public HelpCommand() {
-        super("help", "", "вывести справку по доступным командам");
+    public HelpCommand(CommandManager commandManager) {
+        super("help", "", "вывести справку по доступным командам", ConcurrencyClass.LOCK_FREE);
+        this.commandManager = commandManager;
     }
 
     /**
@@ -19,12 +22,16 @@ public class HelpCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
+            for (Command command : commandManager.getCommands()) {
+                if (!command.isInternal())
+                    context.appendtable(command.getName() + " " + command.getUsage(), command.getDescription());
+            }
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
@@ -1,16 +1,23 @@
 package server.commands;
 
+import common.exceptions.HistoryIsEmptyException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
-import server.utility.ResponseOutputer;
+import server.utility.CommandHistory;
+import server.utility.CommandManager;
+import server.utility.ResponseContext;
+
+import java.util.List;
 
 /**
- * Command 'history'. It's here just for logical structure.
+ * Command 'history'. Prints the last commands of the user and, if the global history is on, of all users.
  */
 public class HistoryCommand extends AbstractCommand {
+    private CommandManager commandManager;
 
-    public HistoryCommand() {
-        super("history", "", "вывести историю использованных команд");
+    public HistoryCommand(CommandManager commandManager) {
+        super("history", "", "вывести историю использованных команд", ConcurrencyClass.LOCK_FREE);
+        this.commandManager = commandManager;
     }
 
     /**
@@ -19,12 +26,27 @@ public class HistoryCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
+            CommandHistory commandHistory = commandManager.getHistory();
+            List<String> userHistory = commandHistory.getUserHistory(user.getUsername());
+            if (userHistory.isEmpty()) throw new HistoryIsEmptyException();
+            context.appendln("Последние использованные команды:");
+            for (String command : userHistory) {
+                context.appendln(" " + command);
+            }
+            if (commandHistory.isGlobal()) {
+                context.appendln("Последние команды всех пользователей:");
+                for (String command : commandHistory.getGlobalHistory()) {
+                    context.appendln(" " + command);
+                }
+            }
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+        } catch (HistoryIsEmptyException exception) {
+            context.appendln("Ни одной команды еще не было использовано!");
         }
         return false;
     }
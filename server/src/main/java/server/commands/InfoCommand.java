@@ -3,7 +3,9 @@ package server.commands;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionVersion;
+import server.utility.RequestPriority;
+import server.utility.ResponseContext;
 
 import java.time.LocalDateTime;
 
@@ -14,30 +16,39 @@ public class InfoCommand extends AbstractCommand {
     private CollectionManager collectionManager;
 
     public InfoCommand(CollectionManager collectionManager) {
-        super("info", "", "вывести информацию о коллекции");
+        super("info", "", "вывести информацию о коллекции", ConcurrencyClass.COLLECTION_READ);
         this.collectionManager = collectionManager;
     }
 
+    /**
+     * @return Interactive priority, the command reads only the size of the collection.
+     */
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.INTERACTIVE;
+    }
+
     /**
      * Executes the command.
      *
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            LocalDateTime lastInitTime = collectionManager.getLastInitTime();
+            CollectionVersion version = collectionManager.getVersion();
+            LocalDateTime lastInitTime = version.getLastInitTime();
             String lastInitTimeString = (lastInitTime == null) ? "в данной сессии инициализации еще не происходило" :
                     lastInitTime.toLocalDate().toString() + " " + lastInitTime.toLocalTime().toString();
 
-            ResponseOutputer.appendln("Collection information:");
-            ResponseOutputer.appendln(" Type: " + collectionManager.collectionType());
-            ResponseOutputer.appendln(" Number of elements: " + collectionManager.collectionSize());
-            ResponseOutputer.appendln(" Last initialization date: " + lastInitTimeString);
+            context.appendln("Collection information:");
+            context.appendln(" Type: " + version.collectionType());
+            context.appendln(" Number of elements: " + version.collectionSize());
+            context.appendln(" Last initialization date: " + lastInitTimeString);
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
@@ -4,18 +4,26 @@ import common.exceptions.DatabaseHandlingException;
 import common.exceptions.UserIsNotFoundException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
-import server.utility.DatabaseUserManager;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
+import server.utility.UserStorage;
 
 /**
  * Command 'login'. Allows the user to login.
  */
 public class LoginCommand extends AbstractCommand {
-    private DatabaseUserManager databaseUserManager;
+    private UserStorage userStorage;
 
-    public LoginCommand(DatabaseUserManager databaseUserManager) {
-        super("login", "", "внутренняя команда");
-        this.databaseUserManager = databaseUserManager;
+    public LoginCommand(UserStorage userStorage) {
+        super("login", "", "внутренняя команда", ConcurrencyClass.AUTH);
+        this.userStorage = userStorage;
+    }
+
+    /**
+     * @return Command is sent by the client, when the user logs in.
+     */
+    @Override
+    public boolean isInternal() {
+        return true;
     }
 
     /**
@@ -24,21 +32,21 @@ public class LoginCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            if (databaseUserManager.checkUserByUsernameAndPassword(user)) ResponseOutputer.appendln("User " +
+            if (userStorage.checkUserByUsernameAndPassword(user)) context.appendln("User " +
                     user.getUsername() + " login.");
             else throw new UserIsNotFoundException();
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: эммм...эээ.это внутренняя команда...");
+            context.appendln("Использование: эммм...эээ.это внутренняя команда...");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (UserIsNotFoundException exception) {
-            ResponseOutputer.appenderror("incorrect username or password!");
+            context.appenderror("incorrect username or password!");
         }
         return false;
     }
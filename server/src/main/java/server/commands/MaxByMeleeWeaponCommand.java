@@ -4,7 +4,7 @@ import common.exceptions.CollectionIsEmptyException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'max_by_melee_weapon'. Prints the element of the collection with maximum melee weapon.
@@ -13,7 +13,8 @@ public class MaxByMeleeWeaponCommand extends AbstractCommand {
     private CollectionManager collectionManager;
 
     public MaxByMeleeWeaponCommand(CollectionManager collectionManager) {
-        super("max_by_melee_weapon", "", "вывести элемент, значение поля meleeWeapon которого максимально");
+        super("max_by_melee_weapon", "", "вывести элемент, значение поля meleeWeapon которого максимально",
+                ConcurrencyClass.COLLECTION_READ);
         this.collectionManager = collectionManager;
     }
 
@@ -23,15 +24,15 @@ public class MaxByMeleeWeaponCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            ResponseOutputer.appendln(collectionManager.maxByMeleeWeapon());
+            context.appendln(collectionManager.getVersion().maxByMeleeWeapon());
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         }
         return true;
     }
@@ -4,18 +4,26 @@ import common.exceptions.DatabaseHandlingException;
 import common.exceptions.UserAlreadyExists;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
-import server.utility.DatabaseUserManager;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
+import server.utility.UserStorage;
 
 /**
  * Command 'register'. Allows the user to register.
  */
 public class RegisterCommand extends AbstractCommand {
-    private DatabaseUserManager databaseUserManager;
+    private UserStorage userStorage;
 
-    public RegisterCommand(DatabaseUserManager databaseUserManager) {
-        super("register", "", "внутренняя команда");
-        this.databaseUserManager = databaseUserManager;
+    public RegisterCommand(UserStorage userStorage) {
+        super("register", "", "внутренняя команда", ConcurrencyClass.AUTH);
+        this.userStorage = userStorage;
+    }
+
+    /**
+     * @return Command is sent by the client, when the user logs in.
+     */
+    @Override
+    public boolean isInternal() {
+        return true;
     }
 
     /**
@@ -24,21 +32,21 @@ public class RegisterCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            if (databaseUserManager.insertUser(user)) ResponseOutputer.appendln("User " +
+            if (userStorage.insertUser(user)) context.appendln("User " +
                     user.getUsername() + " register.");
             else throw new UserAlreadyExists();
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: эммм...эээ.это внутренняя команда...");
+            context.appendln("Использование: эммм...эээ.это внутренняя команда...");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (UserAlreadyExists exception) {
-            ResponseOutputer.appenderror("User " + user.getUsername() + " already exists!");
+            context.appenderror("User " + user.getUsername() + " already exists!");
         }
         return false;
     }
@@ -4,20 +4,21 @@ import common.data.SpaceMarine;
 import common.exceptions.*;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.CollectionVersion;
+import server.utility.ResponseContext;
 
 /**
  * Command 'remove_by_id'. Removes the element by its ID.
  */
 public class RemoveByIdCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public RemoveByIdCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("remove_by_id", "<ID>", "удалить элемент из коллекции по ID");
+    public RemoveByIdCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("remove_by_id", "<ID>", "удалить элемент из коллекции по ID", ConcurrencyClass.OWNER_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
     }
 
     /**
@@ -26,35 +27,36 @@ public class RemoveByIdCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            if (collectionManager.collectionSize() == 0) throw new CollectionIsEmptyException();
+            CollectionVersion version = collectionManager.getVersion();
+            if (version.collectionSize() == 0) throw new CollectionIsEmptyException();
             long id = Long.parseLong(stringArgument);
-            SpaceMarine marineToRemove = collectionManager.getById(id);
+            SpaceMarine marineToRemove = version.getById(id);
             if (marineToRemove == null) throw new MarineNotFoundException();
             if (!marineToRemove.getOwner().equals(user)) throw new PermissionDeniedException();
-            if (!databaseCollectionManager.checkMarineUserId(marineToRemove.getId(), user)) throw new ManualDatabaseEditException();
-            databaseCollectionManager.deleteMarineById(id);
+            if (!collectionStorage.checkMarineUserId(marineToRemove.getId(), user)) throw new ManualDatabaseEditException();
+            collectionStorage.deleteMarineById(id);
             collectionManager.removeFromCollection(marineToRemove);
-            ResponseOutputer.appendln("Солдат успешно удален!");
+            context.appendln("Солдат успешно удален!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         } catch (NumberFormatException exception) {
-            ResponseOutputer.appenderror("ID должен быть представлен числом!");
+            context.appenderror("ID должен быть представлен числом!");
         } catch (MarineNotFoundException exception) {
-            ResponseOutputer.appenderror("Солдата с таким ID в коллекции нет!");
+            context.appenderror("Солдата с таким ID в коллекции нет!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (PermissionDeniedException exception) {
-            ResponseOutputer.appenderror("Недостаточно прав для выполнения данной команды!");
-            ResponseOutputer.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
+            context.appenderror("Недостаточно прав для выполнения данной команды!");
+            context.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
         } catch (ManualDatabaseEditException exception) {
-            ResponseOutputer.appenderror("Произошло прямое изменение базы данных!");
-            ResponseOutputer.appendln("Перезапустите клиент для избежания возможных ошибок.");
+            context.appenderror("Произошло прямое изменение базы данных!");
+            context.appendln("Перезапустите клиент для избежания возможных ошибок.");
         }
         return false;
     }
@@ -5,22 +5,28 @@ import common.exceptions.*;
 import common.interaction.MarineRaw;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.CollectionVersion;
+import server.utility.RequestDeadline;
+import server.utility.ResponseContext;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
 
 /**
  * Command 'remove_greater'. Removes elements greater than user entered.
  */
 public class RemoveGreaterCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public RemoveGreaterCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("remove_greater", "{element}", "удалить из коллекции все элементы, превышающие заданный");
+    public RemoveGreaterCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("remove_greater", "{element}", "удалить из коллекции все элементы, превышающие заданный",
+                ConcurrencyClass.COLLECTION_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
     }
 
     /**
@@ -29,10 +35,11 @@ public class RemoveGreaterCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument == null) throw new WrongAmountOfElementsException();
-            if (collectionManager.collectionSize() == 0) throw new CollectionIsEmptyException();
+            CollectionVersion version = collectionManager.getVersion();
+            if (version.collectionSize() == 0) throw new CollectionIsEmptyException();
             MarineRaw marineRaw = (MarineRaw) objectArgument;
             SpaceMarine marineToFind = new SpaceMarine(
                     0L,
@@ -46,34 +53,39 @@ public class RemoveGreaterCommand extends AbstractCommand {
                     marineRaw.getChapter(),
                     user
             );
-            SpaceMarine marineFromCollection = collectionManager.getByValue(marineToFind);
+            SpaceMarine marineFromCollection = version.getByValue(marineToFind);
             if (marineFromCollection == null) throw new MarineNotFoundException();
-            for (SpaceMarine marine : collectionManager.getGreater(marineFromCollection)) {
+            NavigableSet<SpaceMarine> greaterMarines = version.getGreater(marineFromCollection);
+            for (SpaceMarine marine : greaterMarines) {
+                RequestDeadline.check();
                 if (!marine.getOwner().equals(user)) throw new PermissionDeniedException();
-                if (!databaseCollectionManager.checkMarineUserId(marine.getId(), user)) throw new ManualDatabaseEditException();
+                if (!collectionStorage.checkMarineUserId(marine.getId(), user)) throw new ManualDatabaseEditException();
             }
-            for (SpaceMarine marine : collectionManager.getGreater(marineFromCollection)) {
-                databaseCollectionManager.deleteMarineById(marine.getId());
-                collectionManager.removeFromCollection(marine);
-            }
-            ResponseOutputer.appendln("Солдаты успешно удалены!");
+            List<Long> greaterIds = new ArrayList<>();
+            for (SpaceMarine marine : greaterMarines) greaterIds.add(marine.getId());
+            // Storage deletes all marines or, if the deadline passes, none, so the collection stays the same as it
+            collectionStorage.deleteMarinesById(greaterIds);
+            collectionManager.removeAllFromCollection(greaterMarines);
+            context.appendln("Солдаты успешно удалены!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         } catch (MarineNotFoundException exception) {
-            ResponseOutputer.appenderror("Солдата с такими характеристиками в коллекции нет!");
+            context.appenderror("Солдата с такими характеристиками в коллекции нет!");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (PermissionDeniedException exception) {
-            ResponseOutputer.appenderror("Недостаточно прав для выполнения данной команды!");
-            ResponseOutputer.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
+            context.appenderror("Недостаточно прав для выполнения данной команды!");
+            context.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
         } catch (ManualDatabaseEditException exception) {
-            ResponseOutputer.appenderror("Произошло прямое изменение базы данных!");
-            ResponseOutputer.appendln("Перезапустите клиент для избежания возможных ошибок.");
+            context.appenderror("Произошло прямое изменение базы данных!");
+            context.appendln("Перезапустите клиент для избежания возможных ошибок.");
+        } catch (DeadlineExceededException exception) {
+            context.appenderror("Срок запроса истёк, солдаты не удалены!");
         }
         return false;
     }
@@ -1,8 +1,9 @@
 package server.commands;
 
 import common.exceptions.WrongAmountOfElementsException;
+import common.interaction.ResponseCode;
 import common.interaction.User;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'server_exit'. Checks for wrong arguments then do nothing.
@@ -10,7 +11,15 @@ import server.utility.ResponseOutputer;
 public class ServerExitCommand extends AbstractCommand {
 
     public ServerExitCommand() {
-        super("server_exit", "", "завершить работу сервера");
+        super("server_exit", "", "завершить работу сервера", ConcurrencyClass.LOCK_FREE);
+    }
+
+    /**
+     * @return Code, that stops the server.
+     */
+    @Override
+    public ResponseCode getSuccessCode() {
+        return ResponseCode.SERVER_EXIT;
     }
 
     /**
@@ -19,13 +28,13 @@ public class ServerExitCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            ResponseOutputer.appendln("Работа сервера успешно завершена!");
+            context.appendln("Работа сервера успешно завершена!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
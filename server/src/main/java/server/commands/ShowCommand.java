@@ -3,7 +3,7 @@ package server.commands;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'show'. Shows information about all elements of the collection.
@@ -12,7 +12,7 @@ public class ShowCommand extends AbstractCommand {
     private CollectionManager collectionManager;
 
     public ShowCommand(CollectionManager collectionManager) {
-        super("show", "", "вывести все элементы коллекции");
+        super("show", "", "вывести все элементы коллекции", ConcurrencyClass.COLLECTION_READ);
         this.collectionManager = collectionManager;
     }
 
@@ -22,13 +22,13 @@ public class ShowCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            ResponseOutputer.appendln(collectionManager.showCollection());
+            collectionManager.getVersion().showCollection(context::append);
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         }
         return false;
     }
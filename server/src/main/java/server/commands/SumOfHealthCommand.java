@@ -4,7 +4,7 @@ import common.exceptions.CollectionIsEmptyException;
 import common.exceptions.WrongAmountOfElementsException;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.ResponseContext;
 
 /**
  * Command 'sum_of_health'. Prints the sum of health of all marines.
@@ -13,7 +13,8 @@ public class SumOfHealthCommand extends AbstractCommand {
     private CollectionManager collectionManager;
 
     public SumOfHealthCommand(CollectionManager collectionManager) {
-        super("sum_of_health", "", "вывести сумму значений поля health для всех элементов коллекции");
+        super("sum_of_health", "", "вывести сумму значений поля health для всех элементов коллекции",
+                ConcurrencyClass.COLLECTION_READ);
         this.collectionManager = collectionManager;
     }
 
@@ -23,17 +24,17 @@ public class SumOfHealthCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (!stringArgument.isEmpty() || objectArgument != null) throw new WrongAmountOfElementsException();
-            double sum_of_health = collectionManager.getSumOfHealth();
+            double sum_of_health = collectionManager.getVersion().getSumOfHealth();
             if (sum_of_health == 0) throw new CollectionIsEmptyException();
-            ResponseOutputer.appendln("Сумма здоровья всех солдат: " + sum_of_health);
+            context.appendln("Сумма здоровья всех солдат: " + sum_of_health);
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         }
         return false;
     }
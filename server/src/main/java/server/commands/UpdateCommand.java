@@ -5,8 +5,9 @@ import common.exceptions.*;
 import common.interaction.MarineRaw;
 import common.interaction.User;
 import server.utility.CollectionManager;
-import server.utility.DatabaseCollectionManager;
-import server.utility.ResponseOutputer;
+import server.utility.CollectionStorage;
+import server.utility.CollectionVersion;
+import server.utility.ResponseContext;
 
 import java.time.LocalDateTime;
 
@@ -15,12 +16,13 @@ import java.time.LocalDateTime;
  */
 public class UpdateCommand extends AbstractCommand {
     private CollectionManager collectionManager;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private CollectionStorage collectionStorage;
 
-    public UpdateCommand(CollectionManager collectionManager, DatabaseCollectionManager databaseCollectionManager) {
-        super("update", "<ID> {element}", "обновить значение элемента коллекции по ID");
+    public UpdateCommand(CollectionManager collectionManager, CollectionStorage collectionStorage) {
+        super("update", "<ID> {element}", "обновить значение элемента коллекции по ID",
+                ConcurrencyClass.OWNER_WRITE);
         this.collectionManager = collectionManager;
-        this.databaseCollectionManager = databaseCollectionManager;
+        this.collectionStorage = collectionStorage;
     }
 
     /**
@@ -29,20 +31,21 @@ public class UpdateCommand extends AbstractCommand {
      * @return Command exit status.
      */
     @Override
-    public boolean execute(String stringArgument, Object objectArgument, User user) {
+    public boolean execute(String stringArgument, Object objectArgument, User user, ResponseContext context) {
         try {
             if (stringArgument.isEmpty() || objectArgument == null) throw new WrongAmountOfElementsException();
-            if (collectionManager.collectionSize() == 0) throw new CollectionIsEmptyException();
+            CollectionVersion version = collectionManager.getVersion();
+            if (version.collectionSize() == 0) throw new CollectionIsEmptyException();
 
             long id = Long.parseLong(stringArgument);
             if (id <= 0) throw new NumberFormatException();
-            SpaceMarine oldMarine = collectionManager.getById(id);
+            SpaceMarine oldMarine = version.getById(id);
             if (oldMarine == null) throw new MarineNotFoundException();
             if (!oldMarine.getOwner().equals(user)) throw new PermissionDeniedException();
-            if (!databaseCollectionManager.checkMarineUserId(oldMarine.getId(), user)) throw new ManualDatabaseEditException();
+            if (!collectionStorage.checkMarineUserId(oldMarine.getId(), user)) throw new ManualDatabaseEditException();
             MarineRaw marineRaw = (MarineRaw) objectArgument;
 
-            databaseCollectionManager.updateMarineById(id, marineRaw);
+            collectionStorage.updateMarineById(id, marineRaw);
 
             String name = marineRaw.getName() == null ? oldMarine.getName() : marineRaw.getName();
             Coordinates coordinates = marineRaw.getCoordinates() == null ? oldMarine.getCoordinates() : marineRaw.getCoordinates();
@@ -53,8 +56,7 @@ public class UpdateCommand extends AbstractCommand {
             MeleeWeapon meleeWeapon = marineRaw.getMeleeWeapon() == null ? oldMarine.getMeleeWeapon() : marineRaw.getMeleeWeapon();
             Chapter chapter = marineRaw.getChapter() == null ? oldMarine.getChapter() : marineRaw.getChapter();
 
-            collectionManager.removeFromCollection(oldMarine);
-            collectionManager.addToCollection(new SpaceMarine(
+            collectionManager.replaceInCollection(oldMarine, new SpaceMarine(
                     id,
                     name,
                     coordinates,
@@ -66,26 +68,26 @@ public class UpdateCommand extends AbstractCommand {
                     chapter,
                     user
             ));
-            ResponseOutputer.appendln("Солдат успешно изменен!");
+            context.appendln("Солдат успешно изменен!");
             return true;
         } catch (WrongAmountOfElementsException exception) {
-            ResponseOutputer.appendln("Использование: '" + getName() + " " + getUsage() + "'");
+            context.appendln("Использование: '" + getName() + " " + getUsage() + "'");
         } catch (CollectionIsEmptyException exception) {
-            ResponseOutputer.appenderror("Коллекция пуста!");
+            context.appenderror("Коллекция пуста!");
         } catch (NumberFormatException exception) {
-            ResponseOutputer.appenderror("ID должен быть представлен положительным числом!");
+            context.appenderror("ID должен быть представлен положительным числом!");
         } catch (MarineNotFoundException exception) {
-            ResponseOutputer.appenderror("Солдата с таким ID в коллекции нет!");
+            context.appenderror("Солдата с таким ID в коллекции нет!");
         } catch (ClassCastException exception) {
-            ResponseOutputer.appenderror("Переданный клиентом объект неверен!");
+            context.appenderror("Переданный клиентом объект неверен!");
         } catch (DatabaseHandlingException exception) {
-            ResponseOutputer.appenderror("Произошла ошибка при обращении к базе данных!");
+            context.appenderror("Произошла ошибка при обращении к базе данных!");
         } catch (PermissionDeniedException exception) {
-            ResponseOutputer.appenderror("Недостаточно прав для выполнения данной команды!");
-            ResponseOutputer.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
+            context.appenderror("Недостаточно прав для выполнения данной команды!");
+            context.appendln("Принадлежащие другим пользователям объекты доступны только для чтения.");
         } catch (ManualDatabaseEditException exception) {
-            ResponseOutputer.appenderror("Произошло прямое изменение базы данных!");
-            ResponseOutputer.appendln("Перезапустите клиент для избежания возможных ошибок.");
+            context.appenderror("Произошло прямое изменение базы данных!");
+            context.appendln("Перезапустите клиент для избежания возможных ошибок.");
         }
         return false;
     }
@@ -0,0 +1,58 @@
+package server.utility;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of text buffers, so every request doesn't grow a new buffer from scratch.
+ * Keeps not more than the limit of buffers and only buffers, that haven't grown over the capacity limit,
+ * so one huge response doesn't stay in memory. Is lock-free, so requests on different cores don't wait for each other.
+ */
+public class BufferPool {
+    private int maxBuffers;
+    private int maxCapacity;
+    private Queue<StringBuilder> buffers = new ConcurrentLinkedQueue<>();
+    private AtomicInteger pooledBuffers = new AtomicInteger();
+
+    /**
+     * @param maxBuffers  Number of buffers, that the pool keeps.
+     * @param maxCapacity Capacity in chars, over which buffers aren't kept.
+     */
+    public BufferPool(int maxBuffers, int maxCapacity) {
+        this.maxBuffers = maxBuffers;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * @return Empty buffer from the pool or a new one, if the pool is empty.
+     */
+    public StringBuilder acquire() {
+        StringBuilder buffer = buffers.poll();
+        if (buffer == null) return new StringBuilder();
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns buffer to the pool. Buffer mustn't be used after it.
+     *
+     * @param buffer Buffer, that was taken from the pool.
+     */
+    public void release(StringBuilder buffer) {
+        if (buffer.capacity() > maxCapacity) return;
+        if (pooledBuffers.incrementAndGet() > maxBuffers) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffer.setLength(0);
+        buffers.add(buffer);
+    }
+
+    /**
+     * @return Capacity in chars, over which buffers aren't kept.
+     */
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+}
@@ -0,0 +1,12 @@
+package server.utility;
+
+/**
+ * Enum of executors, that requests are run in.
+ * DATABASE commands wait for the database, MEMORY commands only read the collection and the history in memory.
+ * Each of them has its own threads and queue, so slow queries don't hold up cheap commands.
+ * Commands get their bulkheads by their concurrency classes.
+ */
+public enum Bulkhead {
+    DATABASE,
+    MEMORY
+}
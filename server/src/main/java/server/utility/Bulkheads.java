@@ -0,0 +1,46 @@
+package server.utility;
+
+import common.exceptions.QueueFullException;
+import common.interaction.Request;
+import server.commands.ConcurrencyClass;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Passes requests to the scheduler of their bulkhead. Commands, that wait for the database, and commands, that
+ * work only in memory, run in different threads, so a few slow queries can't take all threads from cheap commands.
+ * Bulkhead and priority of a command are declared by the command, unknown commands are answered at once in memory.
+ */
+public class Bulkheads {
+    private CommandManager commandManager;
+    private Map<Bulkhead, RequestScheduler> schedulers = new EnumMap<>(Bulkhead.class);
+
+    /**
+     * @param commandManager    Registry, that knows concurrency classes and priorities of the commands.
+     * @param databaseScheduler Runs commands, that wait for the database.
+     * @param memoryScheduler   Runs commands, that work only in memory.
+     */
+    public Bulkheads(CommandManager commandManager, RequestScheduler databaseScheduler,
+                     RequestScheduler memoryScheduler) {
+        this.commandManager = commandManager;
+        schedulers.put(Bulkhead.DATABASE, databaseScheduler);
+        schedulers.put(Bulkhead.MEMORY, memoryScheduler);
+    }
+
+    /**
+     * Queues request in its bulkhead.
+     *
+     * @param request Request, whose command defines its bulkhead and priority.
+     * @param client  Client, whose turn the request takes.
+     * @param job     Execution of the request.
+     * @throws QueueFullException         When too many requests of the bulkhead wait for their turn.
+     * @throws RejectedExecutionException When executor doesn't take requests anymore.
+     */
+    public void execute(Request request, Object client, Runnable job) {
+        ConcurrencyClass concurrencyClass = commandManager.getConcurrencyClass(request.getCommandName());
+        Bulkhead bulkhead = concurrencyClass == null ? Bulkhead.MEMORY : concurrencyClass.getBulkhead();
+        schedulers.get(bulkhead).execute(commandManager.getPriority(request.getCommandName()), client, job);
+    }
+}
@@ -0,0 +1,13 @@
+package server.utility;
+
+import common.interaction.Response;
+
+/**
+ * Sends parts of the response, while the command is still working.
+ */
+public interface ChunkSender {
+    /**
+     * @param chunk Response with code CHUNK.
+     */
+    void sendChunk(Response chunk);
+}
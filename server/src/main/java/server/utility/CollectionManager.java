@@ -1,170 +1,223 @@
 package server.utility;
 
-import common.data.MeleeWeapon;
 import common.data.SpaceMarine;
-import common.data.Weapon;
-import common.exceptions.CollectionIsEmptyException;
 import common.exceptions.DatabaseHandlingException;
 import common.utility.Outputer;
 import server.App;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.NavigableSet;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Operates the collection itself.
+ * Collection can be loaded from the snapshot, that the previous server wrote when it stopped.
+ * Snapshot is used once and only while it is fresh, otherwise the collection is loaded from the storage.
+ * Collection is copied on write: readers take the current version without locks and see it unchanged,
+ * writers change a copy and publish it as the next version. Writers only wait for each other while the copy is
+ * changed, which is short next to the database statements, that every change makes first.
  */
 public class CollectionManager {
-    private NavigableSet<SpaceMarine> marinesCollection;
-    private LocalDateTime lastInitTime;
-    private DatabaseCollectionManager databaseCollectionManager;
+    private static final ObjectInputFilter SNAPSHOT_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;common.data.*;common.interaction.User;java.util.TreeSet;java.time.*;java.lang.*;!*");
 
-    public CollectionManager(DatabaseCollectionManager databaseCollectionManager) {
-        this.databaseCollectionManager = databaseCollectionManager;
+    private volatile CollectionVersion currentVersion;
+    private Lock writeLocker = new ReentrantLock();
+    private CollectionStorage collectionStorage;
+    private Path snapshotFile;
+    private int snapshotMaxAge;
 
-        loadCollection();
+    public CollectionManager(CollectionStorage collectionStorage) {
+        this(collectionStorage, null, 0);
     }
 
     /**
-     * @return Marines collection.
+     * @param snapshotFile   File of the collection snapshot, null if snapshots are off.
+     * @param snapshotMaxAge Seconds, during which the snapshot can be loaded.
      */
-    public NavigableSet<SpaceMarine> getCollection() {
-        return marinesCollection;
-    }
-
-    /**
-     * @return Last initialization time or null if there wasn't initialization.
-     */
-    public LocalDateTime getLastInitTime() {
-        return lastInitTime;
-    }
+    public CollectionManager(CollectionStorage collectionStorage, Path snapshotFile,
+                             int snapshotMaxAge) {
+        this.collectionStorage = collectionStorage;
+        this.snapshotFile = snapshotFile;
+        this.snapshotMaxAge = snapshotMaxAge;
 
-    /**
-     * @return Name of the collection's type.
-     */
-    public String collectionType() {
-        return marinesCollection.getClass().getName();
+        if (!loadSnapshot()) loadCollection();
     }
 
     /**
-     * @return Size of the collection.
+     * @return Current version of the collection, that doesn't change while it is read.
      */
-    public int collectionSize() {
-        return marinesCollection.size();
+    public CollectionVersion getVersion() {
+        return currentVersion;
     }
 
     /**
-     * @return The first element of the collection or null if collection is empty.
+     * @return Marines of the current version.
      */
-    public SpaceMarine getFirst() {
-        return marinesCollection.stream().findFirst().orElse(null);
+    public NavigableSet<SpaceMarine> getCollection() {
+        return currentVersion.getCollection();
     }
 
     /**
-     * @param id ID of the marine.
-     * @return A marine by his ID or null if marine isn't found.
+     * Adds a new marine to collection.
+     *
+     * @param marine A marine to add.
      */
-    public SpaceMarine getById(Long id) {
-        return marinesCollection.stream().filter(marine -> marine.getId().equals(id)).findFirst().orElse(null);
+    public void addToCollection(SpaceMarine marine) {
+        publish(marines -> marines.add(marine));
     }
 
     /**
-     * @param marineToFind A marine who's value will be found.
-     * @return A marine by his value or null if marine isn't found.
+     * Removes a new marine to collection.
+     *
+     * @param marine A marine to remove.
      */
-    public SpaceMarine getByValue(SpaceMarine marineToFind) {
-        return marinesCollection.stream().filter(marine -> marine.equals(marineToFind)).findFirst().orElse(null);
+    public void removeFromCollection(SpaceMarine marine) {
+        publish(marines -> marines.remove(marine));
     }
 
     /**
-     * @return Sum of all marines' health or 0 if collection is empty.
+     * Removes marines in one version, so the collection isn't copied for each of them.
+     *
+     * @param marines Marines to remove.
      */
-    public double getSumOfHealth() {
-        return marinesCollection.stream()
-                .reduce(0.0, (sum, p) -> sum += p.getHealth(), Double::sum);
+    public void removeAllFromCollection(Collection<SpaceMarine> marines) {
+        if (marines.isEmpty()) return;
+        publish(collection -> collection.removeAll(marines));
     }
 
     /**
-     * @return Collection content or corresponding string if collection is empty.
+     * Replaces the marine in one version, so readers never miss it.
+     *
+     * @param oldMarine A marine to remove.
+     * @param newMarine A marine to add instead.
      */
-    public String showCollection() {
-        if (marinesCollection.isEmpty()) return "Коллекция пуста!";
-        return marinesCollection.stream().reduce("", (sum, m) -> sum += m + "\n\n", (sum1, sum2) -> sum1 + sum2).trim();
+    public void replaceInCollection(SpaceMarine oldMarine, SpaceMarine newMarine) {
+        publish(marines -> {
+            marines.remove(oldMarine);
+            marines.add(newMarine);
+        });
     }
 
     /**
-     * @return Marine, who has max melee weapon.
-     * @throws CollectionIsEmptyException If collection is empty.
-     */
-    public String maxByMeleeWeapon() throws CollectionIsEmptyException {
-        if (marinesCollection.isEmpty()) throw new CollectionIsEmptyException();
-
-        MeleeWeapon maxMeleeWeapon = marinesCollection.stream().map(marine -> marine.getMeleeWeapon())
-                .max(Enum::compareTo).get();
-        return marinesCollection.stream()
-                .filter(marine -> marine.getMeleeWeapon().equals(maxMeleeWeapon)).findFirst().get().toString();
-    }
-
-    /**
-     * @param weaponToFilter Weapon to filter by.
-     * @return Information about valid marines or empty string, if there's no such marines.
+     * Clears the collection.
      */
-    public String weaponFilteredInfo(Weapon weaponToFilter) {
-        return marinesCollection.stream().filter(marine -> marine.getWeaponType().equals(weaponToFilter))
-                .reduce("", (sum, m) -> sum += m + "\n\n", (sum1, sum2) -> sum1 + sum2).trim();
+    public void clearCollection() {
+        publish(TreeSet::clear);
     }
 
     /**
-     * Remove marines greater than the selected one.
-     *
-     * @param marineToCompare A marine to compare with.
-     * @return Greater marines list.
+     * Writes the collection to the snapshot file, so the next server can start without loading the database.
+     * Should be called when no request can change the collection. File is replaced at once, so it's never half-written.
      */
-    public NavigableSet<SpaceMarine> getGreater(SpaceMarine marineToCompare) {
-        return marinesCollection.stream().filter(marine -> marine.compareTo(marineToCompare) > 0).collect(
-                TreeSet::new,
-                TreeSet::add,
-                TreeSet::addAll
-        );
+    public void saveSnapshot() {
+        if (snapshotFile == null) return;
+        Path temporaryFile = null;
+        try {
+            Path directory = snapshotFile.toAbsolutePath().getParent();
+            temporaryFile = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+            try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryFile)))) {
+                output.writeLong(System.currentTimeMillis());
+                CollectionVersion version = currentVersion;
+                output.writeObject(version.getMarines());
+                output.writeObject(version.getLastInitTime());
+            }
+            try {
+                Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Outputer.println("The collection snapshot saved.");
+            App.logger.info("Снимок коллекции сохранён в '" + snapshotFile + "'.");
+        } catch (IOException exception) {
+            Outputer.printerror("The collection snapshot cannot be saved!");
+            App.logger.error("Снимок коллекции не может быть сохранён!");
+            try {
+                if (temporaryFile != null) Files.deleteIfExists(temporaryFile);
+            } catch (IOException deletingException) {
+                App.logger.error("Временный файл снимка не может быть удалён!");
+            }
+        }
     }
 
     /**
-     * Adds a new marine to collection.
+     * Loads the collection from the snapshot and deletes it, so an older snapshot is never loaded later.
      *
-     * @param marine A marine to add.
-     */
-    public void addToCollection(SpaceMarine marine) {
-        marinesCollection.add(marine);
+     * @return Was the collection loaded.
+     */
+    private boolean loadSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) return false;
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(
+                Files.newInputStream(snapshotFile)))) {
+            input.setObjectInputFilter(SNAPSHOT_FILTER);
+            long snapshotAge = System.currentTimeMillis() - input.readLong();
+            if (snapshotAge < 0 || snapshotAge > TimeUnit.SECONDS.toMillis(snapshotMaxAge)) {
+                Outputer.println("The collection snapshot is too old, the database will be used.");
+                App.logger.info("Снимок коллекции устарел.");
+                return false;
+            }
+            TreeSet<SpaceMarine> snapshotCollection = new TreeSet<>();
+            for (Object marine : (TreeSet<?>) input.readObject()) snapshotCollection.add((SpaceMarine) marine);
+            currentVersion = new CollectionVersion(snapshotCollection, (LocalDateTime) input.readObject());
+            Outputer.println("The collection loaded from the snapshot.");
+            App.logger.info("Коллекция загружена из снимка.");
+            return true;
+        } catch (IOException | ClassNotFoundException | ClassCastException exception) {
+            Outputer.printerror("The collection snapshot cannot be loaded, the database will be used!");
+            App.logger.error("Снимок коллекции не может быть загружен!");
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException exception) {
+                App.logger.error("Снимок коллекции не может быть удалён!");
+            }
+        }
     }
 
     /**
-     * Removes a new marine to collection.
+     * Changes a copy of the current version and publishes it as the next one.
      *
-     * @param marine A marine to remove.
+     * @param change Change of the copy.
      */
-    public void removeFromCollection(SpaceMarine marine) {
-        marinesCollection.remove(marine);
-    }
-
-    /**
-     * Clears the collection.
-     */
-    public void clearCollection() {
-        marinesCollection.clear();
+    private void publish(Consumer<TreeSet<SpaceMarine>> change) {
+        writeLocker.lock();
+        try {
+            TreeSet<SpaceMarine> marines = new TreeSet<>(currentVersion.getMarines());
+            change.accept(marines);
+            currentVersion = new CollectionVersion(marines, currentVersion.getLastInitTime());
+        } finally {
+            writeLocker.unlock();
+        }
     }
 
     /**
-     * Loads the collection from file.
+     * Loads the collection from the storage.
      */
     private void loadCollection() {
         try {
-            marinesCollection = databaseCollectionManager.getCollection();
-            lastInitTime = LocalDateTime.now();
+            currentVersion = new CollectionVersion(new TreeSet<>(collectionStorage.getCollection()),
+                    LocalDateTime.now());
             Outputer.println("The collection loaded.");
             App.logger.info("Коллекция загружена.");
         } catch (DatabaseHandlingException exception) {
-            marinesCollection = new TreeSet<>();
+            currentVersion = new CollectionVersion(new TreeSet<>(), null);
             Outputer.printerror("The collection cannot be loaded!");
             App.logger.error("Коллекция не может быть загружена!");
         }
@@ -0,0 +1,67 @@
+package server.utility;
+
+import common.data.SpaceMarine;
+import common.exceptions.DatabaseHandlingException;
+import common.exceptions.DeadlineExceededException;
+import common.interaction.MarineRaw;
+import common.interaction.User;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+
+/**
+ * Persistent storage of the marines. Is kept by the database or, in the embedded mode, in memory.
+ */
+public interface CollectionStorage {
+    /**
+     * @return All stored marines.
+     * @throws DatabaseHandlingException When storage cannot be read.
+     */
+    NavigableSet<SpaceMarine> getCollection() throws DatabaseHandlingException;
+
+    /**
+     * @param marineRaw Marine raw.
+     * @param user      Owner of the marine.
+     * @return Stored marine with its ID and creation date.
+     * @throws DatabaseHandlingException When marine cannot be stored.
+     */
+    SpaceMarine insertMarine(MarineRaw marineRaw, User user) throws DatabaseHandlingException;
+
+    /**
+     * @param marineId  Id of Marine.
+     * @param marineRaw New fields of the marine, null fields and health -1 aren't changed.
+     * @throws DatabaseHandlingException When marine cannot be updated.
+     */
+    void updateMarineById(long marineId, MarineRaw marineRaw) throws DatabaseHandlingException;
+
+    /**
+     * @param marineId Id of Marine.
+     * @throws DatabaseHandlingException When marine cannot be deleted.
+     */
+    void deleteMarineById(long marineId) throws DatabaseHandlingException;
+
+    /**
+     * Deletes all the marines or, if it fails or the deadline of the request passes, none of them.
+     *
+     * @param marineIds Ids of Marines.
+     * @throws DatabaseHandlingException When marines cannot be deleted.
+     * @throws DeadlineExceededException When the deadline is passed before all marines are deleted.
+     */
+    void deleteMarinesById(Collection<Long> marineIds) throws DatabaseHandlingException, DeadlineExceededException;
+
+    /**
+     * @param marineId Id of Marine.
+     * @param user     Owner of marine.
+     * @return Does the stored marine belong to the user.
+     * @throws DatabaseHandlingException When storage cannot be read.
+     */
+    boolean checkMarineUserId(long marineId, User user) throws DatabaseHandlingException;
+
+    /**
+     * Deletes all marines or, if it fails or the deadline of the request passes, none of them.
+     *
+     * @throws DatabaseHandlingException When marines cannot be deleted.
+     * @throws DeadlineExceededException When the deadline is passed before all marines are deleted.
+     */
+    void clearCollection() throws DatabaseHandlingException, DeadlineExceededException;
+}
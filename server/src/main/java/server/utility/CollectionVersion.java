@@ -0,0 +1,156 @@
+package server.utility;
+
+import common.data.MeleeWeapon;
+import common.data.SpaceMarine;
+import common.data.Weapon;
+import common.exceptions.CollectionIsEmptyException;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Version of the collection, that is never changed after it is published.
+ * Readers take the current version once and see the collection as it was at that moment,
+ * however long they read it, while writers publish the next versions.
+ */
+public class CollectionVersion {
+    private final TreeSet<SpaceMarine> marines;
+    private final LocalDateTime lastInitTime;
+
+    /**
+     * @param marines      Marines of the version, the set must not be changed later.
+     * @param lastInitTime Last initialization time or null if there wasn't initialization.
+     */
+    CollectionVersion(TreeSet<SpaceMarine> marines, LocalDateTime lastInitTime) {
+        this.marines = marines;
+        this.lastInitTime = lastInitTime;
+    }
+
+    /**
+     * @return Marines of the version, read only.
+     */
+    public NavigableSet<SpaceMarine> getCollection() {
+        return Collections.unmodifiableNavigableSet(marines);
+    }
+
+    /**
+     * @return Last initialization time or null if there wasn't initialization.
+     */
+    public LocalDateTime getLastInitTime() {
+        return lastInitTime;
+    }
+
+    /**
+     * @return Name of the collection's type.
+     */
+    public String collectionType() {
+        return marines.getClass().getName();
+    }
+
+    /**
+     * @return Size of the collection.
+     */
+    public int collectionSize() {
+        return marines.size();
+    }
+
+    /**
+     * @return The first element of the collection or null if collection is empty.
+     */
+    public SpaceMarine getFirst() {
+        return marines.isEmpty() ? null : marines.first();
+    }
+
+    /**
+     * @param id ID of the marine.
+     * @return A marine by his ID or null if marine isn't found.
+     */
+    public SpaceMarine getById(Long id) {
+        return marines.stream().filter(marine -> marine.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    /**
+     * @param marineToFind A marine who's value will be found.
+     * @return A marine by his value or null if marine isn't found.
+     */
+    public SpaceMarine getByValue(SpaceMarine marineToFind) {
+        return marines.stream().filter(marine -> marine.equals(marineToFind)).findFirst().orElse(null);
+    }
+
+    /**
+     * @return Sum of all marines' health or 0 if collection is empty.
+     */
+    public double getSumOfHealth() {
+        return marines.stream()
+                .reduce(0.0, (sum, p) -> sum += p.getHealth(), Double::sum);
+    }
+
+    /**
+     * Writes collection content or corresponding string if collection is empty.
+     *
+     * @param output Receives the content by parts.
+     */
+    public void showCollection(Consumer<String> output) {
+        if (!writeMarines(marines.stream(), output)) output.accept("Коллекция пуста!\n");
+    }
+
+    /**
+     * @return Marine, who has max melee weapon.
+     * @throws CollectionIsEmptyException If collection is empty.
+     */
+    public SpaceMarine maxByMeleeWeapon() throws CollectionIsEmptyException {
+        if (marines.isEmpty()) throw new CollectionIsEmptyException();
+
+        MeleeWeapon maxMeleeWeapon = marines.stream().map(marine -> marine.getMeleeWeapon())
+                .max(Enum::compareTo).get();
+        return marines.stream()
+                .filter(marine -> marine.getMeleeWeapon().equals(maxMeleeWeapon)).findFirst().get();
+    }
+
+    /**
+     * Writes information about valid marines.
+     *
+     * @param weaponToFilter Weapon to filter by.
+     * @param output         Receives the information by parts.
+     * @return Were there such marines.
+     */
+    public boolean weaponFilteredInfo(Weapon weaponToFilter, Consumer<String> output) {
+        return writeMarines(marines.stream().filter(marine -> marine.getWeaponType().equals(weaponToFilter)), output);
+    }
+
+    /**
+     * @param marineToCompare A marine to compare with.
+     * @return Greater marines list.
+     */
+    public NavigableSet<SpaceMarine> getGreater(SpaceMarine marineToCompare) {
+        return new TreeSet<>(marines.tailSet(marineToCompare, false));
+    }
+
+    /**
+     * @return Marines of the version, that mustn't be changed, for the next version or the snapshot file.
+     */
+    TreeSet<SpaceMarine> getMarines() {
+        return marines;
+    }
+
+    /**
+     * Writes marines one by one, separated by empty lines.
+     *
+     * @param marines Marines to write.
+     * @param output  Receives marines.
+     * @return Was there at least one marine.
+     */
+    private boolean writeMarines(Stream<SpaceMarine> marines, Consumer<String> output) {
+        Iterator<SpaceMarine> marineIterator = marines.iterator();
+        if (!marineIterator.hasNext()) return false;
+        output.accept(marineIterator.next().toString());
+        while (marineIterator.hasNext()) output.accept("\n\n" + marineIterator.next());
+        output.accept("\n");
+        return true;
+    }
+}
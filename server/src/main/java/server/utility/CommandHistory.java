@@ -0,0 +1,144 @@
+package server.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Last used commands of every user and, if it is on, of all users together.
+ * Every history is a ring buffer, where a command takes the next slot by an atomic counter, so recording never locks
+ * and users don't contend with each other. Reader gets the commands, that were recorded before it started,
+ * and may miss the ones, that are recorded at the same moment.
+ * History of the user is opened, when the user logs in or registers, commands of other usernames aren't recorded.
+ * When more users have histories than allowed, the history of the user, who used commands the longest time ago,
+ * is forgotten.
+ */
+public class CommandHistory {
+    public static final int DEFAULT_DEPTH = 8;
+    public static final int DEFAULT_USERS = 1000;
+
+    private int depth;
+    private int maxUsers;
+    private Map<String, HistoryRing> userHistories = new ConcurrentHashMap<>();
+    private HistoryRing globalHistory;
+
+    /**
+     * @param depth    Number of commands, that every history keeps.
+     * @param isGlobal Should commands of all users be also kept together.
+     */
+    public CommandHistory(int depth, boolean isGlobal) {
+        this(depth, DEFAULT_USERS, isGlobal);
+    }
+
+    /**
+     * @param depth    Number of commands, that every history keeps.
+     * @param maxUsers Number of users, whose histories are kept.
+     * @param isGlobal Should commands of all users be also kept together.
+     */
+    public CommandHistory(int depth, int maxUsers, boolean isGlobal) {
+        this.depth = depth;
+        this.maxUsers = maxUsers;
+        this.globalHistory = isGlobal ? new HistoryRing(depth) : null;
+    }
+
+    /**
+     * Opens history of the authenticated user, if it isn't open yet.
+     *
+     * @param username Name of the user.
+     */
+    public void open(String username) {
+        HistoryRing userHistory = userHistories.get(username);
+        if (userHistory == null) userHistory = userHistories.computeIfAbsent(username, name -> new HistoryRing(depth));
+        userHistory.touch();
+        while (userHistories.size() > maxUsers) {
+            if (!forgetIdle(username)) break;
+        }
+    }
+
+    /**
+     * Records used command, if the user has history.
+     *
+     * @param commandName Name of the command.
+     * @param username    Name of the user, who used it.
+     */
+    public void add(String commandName, String username) {
+        HistoryRing userHistory = userHistories.get(username);
+        if (userHistory == null) return;
+        userHistory.add(commandName);
+        if (globalHistory != null) globalHistory.add(commandName + " (" + username + ')');
+    }
+
+    /**
+     * Forgets history of the user, who used commands the longest time ago.
+     *
+     * @param keptUsername Name of the user, whose history is kept anyway.
+     * @return Was some history forgotten.
+     */
+    private boolean forgetIdle(String keptUsername) {
+        Map.Entry<String, HistoryRing> idlest = null;
+        for (Map.Entry<String, HistoryRing> entry : userHistories.entrySet()) {
+            if (entry.getKey().equals(keptUsername)) continue;
+            if (idlest == null || entry.getValue().lastUseTime - idlest.getValue().lastUseTime < 0) idlest = entry;
+        }
+        return idlest != null && userHistories.remove(idlest.getKey(), idlest.getValue());
+    }
+
+    /**
+     * @param username Name of the user.
+     * @return Last commands of the user, the latest first.
+     */
+    public List<String> getUserHistory(String username) {
+        HistoryRing userHistory = userHistories.get(username);
+        return userHistory == null ? new ArrayList<>() : userHistory.getLatest();
+    }
+
+    /**
+     * @return Last commands of all users with their names, the latest first. Empty, if the global history is off.
+     */
+    public List<String> getGlobalHistory() {
+        return globalHistory == null ? new ArrayList<>() : globalHistory.getLatest();
+    }
+
+    /**
+     * @return Are commands of all users also kept together.
+     */
+    public boolean isGlobal() {
+        return globalHistory != null;
+    }
+
+    /**
+     * Ring buffer of the last commands.
+     */
+    private static class HistoryRing {
+        private final AtomicReferenceArray<String> slots;
+        private final AtomicLong recordedCommands = new AtomicLong();
+        private volatile long lastUseTime;
+
+        private HistoryRing(int depth) {
+            this.slots = new AtomicReferenceArray<>(depth);
+        }
+
+        private void add(String command) {
+            long index = recordedCommands.getAndIncrement();
+            slots.set((int) (index % slots.length()), command);
+            touch();
+        }
+
+        private void touch() {
+            lastUseTime = System.nanoTime();
+        }
+
+        private List<String> getLatest() {
+            long end = recordedCommands.get();
+            List<String> commands = new ArrayList<>(slots.length());
+            for (long index = end - 1; index >= Math.max(0, end - slots.length()); index--) {
+                String command = slots.get((int) (index % slots.length()));
+                if (command != null) commands.add(command);
+            }
+            return commands;
+        }
+    }
+}
@@ -1,396 +1,158 @@
 package server.utility;
 
-import common.exceptions.HistoryIsEmptyException;
+import common.interaction.ResponseCode;
 import common.interaction.User;
 import server.commands.Command;
+import server.commands.ConcurrencyClass;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Operates the commands.
+ * Registry and dispatcher of the commands.
+ * Every command declares its concurrency class, by which the dispatcher locks the collection and the schedulers
+ * choose the bulkhead, so a new command only has to be registered.
+ * Commands are registered before the server starts, later the registry is only read.
+ * Readers don't lock, they read a version of the collection, that never changes.
+ * Commands, that change only marines of the user, share the collection with each other and lock just the stripe
+ * of the owner, so owners don't wait for each other. Commands, that see marines of all owners, lock the whole
+ * collection.
  */
 public class CommandManager {
-    private final int COMMAND_HISTORY_SIZE = 8;
+    private static final int OWNER_STRIPES = 64;
 
-    private String[] commandHistory = new String[COMMAND_HISTORY_SIZE];
-    private List<Command> commands = new ArrayList<>();
-    private Command helpCommand;
-    private Command infoCommand;
-    private Command showCommand;
-    private Command addCommand;
-    private Command updateCommand;
-    private Command removeByIdCommand;
-    private Command clearCommand;
-    private Command exitCommand;
-    private Command executeScriptCommand;
-    private Command addIfMinCommand;
-    private Command removeGreaterCommand;
-    private Command historyCommand;
-    private Command sumOfHealthCommand;
-    private Command maxByMeleeWeaponCommand;
-    private Command filterByWeaponTypeCommand;
-    private Command serverExitCommand;
-    private Command loginCommand;
-    private Command registerCommand;
+    private Map<String, Command> commands = new LinkedHashMap<>();
+    private CommandHistory commandHistory;
 
-    private ReadWriteLock historyLocker = new ReentrantReadWriteLock();
     private ReadWriteLock collectionLocker = new ReentrantReadWriteLock();
+    private Lock[] ownerLockers = new Lock[OWNER_STRIPES];
 
-    public CommandManager(Command helpCommand, Command infoCommand, Command showCommand, Command addCommand, Command updateCommand,
-                          Command removeByIdCommand, Command clearCommand, Command exitCommand, Command executeScriptCommand,
-                          Command addIfMinCommand, Command removeGreaterCommand, Command historyCommand, Command sumOfHealthCommand,
-                          Command maxByMeleeWeaponCommand, Command filterByWeaponTypeCommand, Command serverExitCommand,
-                          Command loginCommand, Command registerCommand) {
-        this.helpCommand = helpCommand;
-        this.infoCommand = infoCommand;
-        this.showCommand = showCommand;
-        this.addCommand = addCommand;
-        this.updateCommand = updateCommand;
-        this.removeByIdCommand = removeByIdCommand;
-        this.clearCommand = clearCommand;
-        this.exitCommand = exitCommand;
-        this.executeScriptCommand = executeScriptCommand;
-        this.addIfMinCommand = addIfMinCommand;
-        this.removeGreaterCommand = removeGreaterCommand;
-        this.historyCommand = historyCommand;
-        this.sumOfHealthCommand = sumOfHealthCommand;
-        this.maxByMeleeWeaponCommand = maxByMeleeWeaponCommand;
-        this.filterByWeaponTypeCommand = filterByWeaponTypeCommand;
-        this.serverExitCommand = serverExitCommand;
-        this.loginCommand = loginCommand;
-        this.registerCommand = registerCommand;
-
-        commands.add(helpCommand);
-        commands.add(infoCommand);
-        commands.add(showCommand);
-        commands.add(addCommand);
-        commands.add(updateCommand);
-        commands.add(removeByIdCommand);
-        commands.add(clearCommand);
-        commands.add(exitCommand);
-        commands.add(executeScriptCommand);
-        commands.add(addIfMinCommand);
-        commands.add(removeGreaterCommand);
-        commands.add(historyCommand);
-        commands.add(sumOfHealthCommand);
-        commands.add(maxByMeleeWeaponCommand);
-        commands.add(filterByWeaponTypeCommand);
-        commands.add(serverExitCommand);
-    }
-
-    /**
-     * Adds command to command history.
-     *
-     * @param commandToStore Command to add.
-     * @param user           User object.
-     */
-    public void addToHistory(String commandToStore, User user) {
-        historyLocker.writeLock().lock();
-        try {
-            for (Command command : commands) {
-                if (command.getName().equals(commandToStore)) {
-                    for (int i = COMMAND_HISTORY_SIZE - 1; i > 0; i--) {
-                        commandHistory[i] = commandHistory[i - 1];
-                    }
-                    commandHistory[0] = commandToStore + " (" + user.getUsername() + ')';
-                }
-            }
-        } finally {
-            historyLocker.writeLock().unlock();
-        }
-    }
-
-    /**
-     * Prints info about the all commands.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean help(String stringArgument, Object objectArgument, User user) {
-        if (helpCommand.execute(stringArgument, objectArgument, user)) {
-            for (Command command : commands) {
-                ResponseOutputer.appendtable(command.getName() + " " + command.getUsage(), command.getDescription());
-            }
-            return true;
-        } else return false;
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean info(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.readLock().lock();
-        try {
-            return infoCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.readLock().unlock();
-        }
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean show(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.readLock().lock();
-        try {
-            return showCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.readLock().unlock();
-        }
+    public CommandManager() {
+        this(new CommandHistory(CommandHistory.DEFAULT_DEPTH, false));
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param commandHistory History, where used commands are recorded.
      */
-    public boolean add(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return addCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean update(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return updateCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean removeById(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return removeByIdCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
+    public CommandManager(CommandHistory commandHistory) {
+        this.commandHistory = commandHistory;
+        for (int i = 0; i < ownerLockers.length; i++) ownerLockers[i] = new ReentrantLock();
     }
 
     /**
-     * Executes needed command.
+     * Adds command to the registry.
      *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param command Command to add.
+     * @throws IllegalArgumentException When a command with the same name is already registered.
      */
-    public boolean clear(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return clearCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
+    public void register(Command command) {
+        if (commands.containsKey(command.getName()))
+            throw new IllegalArgumentException("Command '" + command.getName() + "' is already registered");
+        commands.put(command.getName(), command);
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @return Registered commands in the order of registration.
      */
-    public boolean exit(String stringArgument, Object objectArgument, User user) {
-        return exitCommand.execute(stringArgument, objectArgument, user);
+    public Collection<Command> getCommands() {
+        return Collections.unmodifiableCollection(commands.values());
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param commandName Name of the command.
+     * @return Concurrency class of the command, null if there is no such command.
      */
-    public boolean executeScript(String stringArgument, Object objectArgument, User user) {
-        return executeScriptCommand.execute(stringArgument, objectArgument, user);
+    public ConcurrencyClass getConcurrencyClass(String commandName) {
+        Command command = commands.get(commandName);
+        return command == null ? null : command.getConcurrencyClass();
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param commandName Name of the command.
+     * @return Priority class of the command. Unknown commands are answered at once, so they are interactive.
      */
-    public boolean addIfMin(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return addIfMinCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
+    public RequestPriority getPriority(String commandName) {
+        Command command = commands.get(commandName);
+        return command == null ? RequestPriority.INTERACTIVE : command.getPriority();
     }
 
     /**
-     * Executes needed command.
+     * Adds command to command history, if the user has logged in or registered before.
      *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
+     * @param commandToStore Command to add.
      * @param user           User object.
-     * @return Command exit status.
      */
-    public boolean removeGreater(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.writeLock().lock();
-        try {
-            return removeGreaterCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.writeLock().unlock();
-        }
+    public void addToHistory(String commandToStore, User user) {
+        Command command = commands.get(commandToStore);
+        if (command == null || command.isInternal()) return;
+        commandHistory.add(commandToStore, user.getUsername());
     }
 
     /**
-     * Prints the history of used commands.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @return History of the used commands.
      */
-    public boolean history(String stringArgument, Object objectArgument, User user) {
-        if (historyCommand.execute(stringArgument, objectArgument, user)) {
-            historyLocker.readLock().lock();
-            try {
-                if (commandHistory.length == 0) throw new HistoryIsEmptyException();
-                ResponseOutputer.appendln("Последние использованные команды:");
-                for (String command : commandHistory) {
-                    if (command != null) ResponseOutputer.appendln(" " + command);
-                }
-                return true;
-            } catch (HistoryIsEmptyException exception) {
-                ResponseOutputer.appendln("Ни одной команды еще не было использовано!");
-            } finally {
-                historyLocker.readLock().unlock();
-            }
-        }
-        return false;
+    public CommandHistory getHistory() {
+        return commandHistory;
     }
 
     /**
-     * Executes needed command.
+     * Executes the command with the locking of its concurrency class.
      *
+     * @param commandName    Name of the command.
      * @param stringArgument Its string argument.
      * @param objectArgument Its object argument.
      * @param user           User object.
-     * @return Command exit status.
+     * @param context        Output of the request.
+     * @return Code of the response, ERROR if the command failed or there is no such command.
      */
-    public boolean sumOfHealth(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.readLock().lock();
-        try {
-            return sumOfHealthCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.readLock().unlock();
+    public ResponseCode execute(String commandName, String stringArgument, Object objectArgument, User user,
+                                ResponseContext context) {
+        Command command = commands.get(commandName);
+        if (command == null) {
+            context.appendln("Command '" + commandName + "' not found. Type 'help' for assistance.");
+            return ResponseCode.ERROR;
         }
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean maxByMeleeWeapon(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.readLock().lock();
+        Lock collectionLock = getLock(command.getConcurrencyClass());
+        Lock ownerLock = command.getConcurrencyClass() == ConcurrencyClass.OWNER_WRITE ? getOwnerLock(user) : null;
+        if (collectionLock != null) collectionLock.lock();
+        if (ownerLock != null) ownerLock.lock();
         try {
-            return maxByMeleeWeaponCommand.execute(stringArgument, objectArgument, user);
+            if (!command.execute(stringArgument, objectArgument, user, context)) return ResponseCode.ERROR;
+            if (command.getConcurrencyClass() == ConcurrencyClass.AUTH) commandHistory.open(user.getUsername());
+            return command.getSuccessCode();
         } finally {
-            collectionLocker.readLock().unlock();
+            if (ownerLock != null) ownerLock.unlock();
+            if (collectionLock != null) collectionLock.unlock();
         }
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param concurrencyClass Concurrency class of the command.
+     * @return Lock of the collection, that the command needs, null if it needs none.
      */
-    public boolean filterByWeaponType(String stringArgument, Object objectArgument, User user) {
-        collectionLocker.readLock().lock();
-        try {
-            return filterByWeaponTypeCommand.execute(stringArgument, objectArgument, user);
-        } finally {
-            collectionLocker.readLock().lock();
+    private Lock getLock(ConcurrencyClass concurrencyClass) {
+        switch (concurrencyClass) {
+            case OWNER_WRITE:
+                return collectionLocker.readLock();
+            case COLLECTION_WRITE:
+                return collectionLocker.writeLock();
+            default:
+                return null;
         }
     }
 
     /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean serverExit(String stringArgument, Object objectArgument, User user) {
-        return serverExitCommand.execute(stringArgument, objectArgument, user);
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
-     */
-    public boolean login(String stringArgument, Object objectArgument, User user) {
-        return loginCommand.execute(stringArgument, objectArgument, user);
-    }
-
-    /**
-     * Executes needed command.
-     *
-     * @param stringArgument Its string argument.
-     * @param objectArgument Its object argument.
-     * @param user           User object.
-     * @return Command exit status.
+     * @param user User, whose marines the command changes.
+     * @return Lock of the stripe, that the owner falls into.
      */
-    public boolean register(String stringArgument, Object objectArgument, User user) {
-        return registerCommand.execute(stringArgument, objectArgument, user);
+    private Lock getOwnerLock(User user) {
+        int hash = user == null ? 0 : user.getUsername().hashCode();
+        return ownerLockers[Math.floorMod(hash ^ (hash >>> 16), ownerLockers.length)];
     }
 }
@@ -0,0 +1,147 @@
+package server.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit of requests, that the server works on at once, AIMD by the latency.
+ * The lowest latency of the recent requests is the latency of the free server. While requests are answered not much
+ * slower, the limit grows by one with every answer, that came while the limit was half used. When the latency grows
+ * more than tolerated, e.g. because the database slows down, the limit is cut by a tenth, not more often than once
+ * per average latency, so the requests, that are already queued, don't cut it again.
+ * Requests over the limit are rejected at once, instead of waiting in the queues.
+ * Uses a lock instead of a monitor, so virtual threads are never pinned.
+ */
+public class ConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_LATENCY_WINDOW = 1000;
+    private static final double SMOOTHING = 0.1;
+    // Latency can always be this much higher, otherwise a pause of the garbage collector cuts the limit
+    private static final long LATENCY_SLACK = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MIN_RETRY_AFTER = 10;
+    private static final long MAX_RETRY_AFTER = TimeUnit.SECONDS.toMillis(10);
+
+    private int minLimit;
+    private int maxLimit;
+    private double latencyTolerance;
+    private Lock lock = new ReentrantLock();
+    // Are guarded by lock
+    private double limit;
+    private int requestsInFlight;
+    private long minLatency;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowSamples;
+    private double averageLatency;
+    private long lastDecreaseTime;
+
+    /**
+     * @param minLimit         The limit never goes lower, it is also the initial limit.
+     * @param maxLimit         The limit never goes higher.
+     * @param latencyTolerance How many times the latency can be higher than the lowest one, before the limit is cut.
+     */
+    public ConcurrencyLimiter(int minLimit, int maxLimit, double latencyTolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.limit = minLimit;
+    }
+
+    /**
+     * Takes a place for the request, if the limit isn't reached.
+     *
+     * @return Is request admitted, if so the place must be released by release(...).
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (requestsInFlight >= (int) limit) return false;
+            requestsInFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the place of the answered request and adjusts the limit by its latency.
+     *
+     * @param admissionTime Time of System.nanoTime(), when the request was admitted.
+     */
+    public void release(long admissionTime) {
+        long now = System.nanoTime();
+        long latency = now - admissionTime;
+        lock.lock();
+        try {
+            boolean wasHalfUsed = requestsInFlight * 2 >= limit;
+            requestsInFlight--;
+            averageLatency = averageLatency == 0 ? latency : averageLatency + (latency - averageLatency) * SMOOTHING;
+            windowMinLatency = Math.min(windowMinLatency, latency);
+            if (minLatency == 0 || latency < minLatency) minLatency = latency;
+            if (++windowSamples >= MIN_LATENCY_WINDOW) {
+                // Lowest latency is found anew from time to time, so it follows the size of the collection
+                minLatency = windowMinLatency;
+                windowMinLatency = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            if (latency > Math.max(minLatency * latencyTolerance, minLatency + LATENCY_SLACK)) {
+                if (now - lastDecreaseTime >= averageLatency) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastDecreaseTime = now;
+                }
+            } else if (wasHalfUsed) limit = Math.min(maxLimit, limit + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the place of the request, that wasn't run, so its latency says nothing about the server.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            requestsInFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Current limit.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Milliseconds, after which the rejected request is worth repeating, about the average latency.
+     */
+    public long getRetryAfter() {
+        lock.lock();
+        try {
+            long retryAfter = (long) Math.ceil(averageLatency / TimeUnit.MILLISECONDS.toNanos(1));
+            return Math.min(MAX_RETRY_AFTER, Math.max(MIN_RETRY_AFTER, retryAfter));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "ConcurrencyLimiter[limit: " + (int) limit + " of " + minLimit + ".." + maxLimit +
+                    String.format(", lowest latency: %.2f ms, average latency: %.2f ms]",
+                            minLatency / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                            averageLatency / TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
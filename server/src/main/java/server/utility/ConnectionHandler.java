@@ -1,33 +1,63 @@
 package server.utility;
 
+import common.exceptions.MessageRejectedException;
+import common.exceptions.QueueFullException;
+import common.interaction.ChannelStreams;
+import common.interaction.Handshake;
+import common.interaction.MessageStream;
 import common.interaction.Request;
 import common.interaction.Response;
 import common.interaction.ResponseCode;
 import common.utility.Outputer;
 import server.App;
 import server.Server;
+import server.ServerConfig;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.*;
 
 /**
  * Handles user connection.
+ * Several requests of the connection can be executed at once, their responses are sent as soon as they are ready.
+ * Responses go to the outbound queue and are written by the shared writer pool, so workers don't wait for the socket.
+ * While the queue is too big, the next requests aren't read and parts of the running responses wait.
+ * Drained connection stops reading, answers the requests it has already read and asks the client to reconnect.
+ * Requests of one session of the connection run in order, sessions run in parallel.
+ * When the server works on too many requests or the queue of their bulkhead is full, the next ones are answered
+ * as busy at once.
  */
-public class ConnectionHandler implements Runnable {
+public class ConnectionHandler implements Runnable, MonitoredConnection {
     private Server server;
-    private Socket clientSocket;
+    private SocketChannel clientChannel;
     private CommandManager commandManager;
-    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
-    private ExecutorService cachedThreadPool = Executors.newCachedThreadPool();
+    private ServerConfig config;
+    private int maxRequestsInFlight;
+    private Semaphore requestsInFlight;
+    private Bulkheads scheduler;
+    private SessionTable sessionTable;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private ChunkSender chunkSender;
+    private volatile MessageStream clientStream;
+    private volatile OutboundQueue outboundQueue;
+    private volatile boolean canReceiveHeartbeats;
+    private volatile long lastReadTime = System.nanoTime();
+    private volatile boolean isClosedAsIdle;
+    private volatile boolean isDraining;
 
-
-    public ConnectionHandler(Server server, Socket clientSocket, CommandManager commandManager) {
+    /**
+     * Pipelined requests are run by the schedulers of the bulkheads, final ones in the thread of the connection.
+     */
+    public ConnectionHandler(Server server, SocketChannel clientChannel, CommandManager commandManager, ServerConfig config) {
         this.server = server;
-        this.clientSocket = clientSocket;
+        this.clientChannel = clientChannel;
         this.commandManager = commandManager;
+        this.config = config;
+        this.maxRequestsInFlight = config.getMaxRequestsInFlight();
+        this.requestsInFlight = new Semaphore(maxRequestsInFlight);
+        this.scheduler = server.getScheduler();
+        this.sessionTable = new SessionTable(config.getMaxSessions());
+        this.concurrencyLimiter = server.getConcurrencyLimiter();
     }
 
     /**
@@ -36,45 +66,116 @@ public class ConnectionHandler implements Runnable {
     @Override
     public void run() {
         Request userRequest;
-        Response responseToUser;
+        Response responseToUser = null;
         boolean stopFlag = false;
-        try (ObjectInputStream clientReader = new ObjectInputStream(clientSocket.getInputStream());
-             ObjectOutputStream clientWriter = new ObjectOutputStream(clientSocket.getOutputStream())) {
+        boolean isDrained = false;
+        try (MessageStream clientStream = new MessageStream(ChannelStreams.newInputStream(clientChannel),
+                ChannelStreams.newOutputStream(clientChannel), config.getResetPolicy(), config.getRequestLimits())) {
+            OutboundQueue outboundQueue = new OutboundQueue(clientStream, server.getWriterPool(), server.getMetrics(),
+                    config.getMaxQueuedBytes());
+            this.clientStream = clientStream;
+            this.outboundQueue = outboundQueue;
+            server.getIdleMonitor().register(this);
+            if (server.isStopped()) drain();
+            try {
+                if (!acceptHandshake(clientStream)) return;
+            } catch (MessageRejectedException exception) {
+                rejectRequest(exception);
+                outboundQueue.awaitEmpty();
+                return;
+            }
             do {
-                userRequest = (Request) clientReader.readObject();
-                responseToUser = forkJoinPool.invoke(new HandleRequestTask(userRequest, commandManager));
-                App.logger.info("Запрос '" + userRequest.getCommandName() + "' обработан.");
-                Response finalResponseToUser = responseToUser;
-                if (!cachedThreadPool.submit(() -> {
+                outboundQueue.awaitBelowLimit();
+                try {
+                    userRequest = (Request) clientStream.receive();
+                } catch (MessageRejectedException exception) {
+                    lastReadTime = System.nanoTime();
+                    if (rejectRequest(exception)) continue;
+                    break;
+                } catch (IOException exception) {
+                    if (!isDraining) throw exception;
+                    isDrained = true;
+                    break;
+                }
+                lastReadTime = System.nanoTime();
+                if (userRequest.isHeartbeat()) continue;
+                RequestDeadline.startCountdown(userRequest, config.getRequestTimeout());
+                if (isFinalRequest(userRequest)) {
+                    requestsInFlight.acquire(maxRequestsInFlight);
                     try {
-                        clientWriter.writeObject(finalResponseToUser);
-                        clientWriter.flush();
-                        return true;
-                    } catch (IOException exception) {
-                        Outputer.printerror("An error occurred while sending data to the client!");
-                        App.logger.error("An error occurred while sending data to the client!");
+                        responseToUser = executeRequest(userRequest);
+                        if (!outboundQueue.add(responseToUser)) break;
+                    } finally {
+                        requestsInFlight.release(maxRequestsInFlight);
+                    }
+                } else {
+                    requestsInFlight.acquire();
+                    if (!concurrencyLimiter.tryAcquire()) {
+                        requestsInFlight.release();
+                        if (!outboundQueue.add(rejectBusy(userRequest, server))) break;
+                        continue;
+                    }
+                    long admissionTime = System.nanoTime();
+                    Request finalUserRequest = userRequest;
+                    boolean isSubmitted = false;
+                    try {
+                        isSubmitted = sessionTable.submit(finalUserRequest, sessionRequest -> {
+                            try {
+                                Response response = executeRequest(sessionRequest);
+                                outboundQueue.add(response);
+                                return response;
+                            } finally {
+                                concurrencyLimiter.release(admissionTime);
+                                requestsInFlight.release();
+                            }
+                        }, (client, job) -> scheduler.execute(finalUserRequest, client, job));
+                    } catch (QueueFullException exception) {
+                        requestsInFlight.release();
+                        if (!outboundQueue.add(rejectBusy(finalUserRequest, server))) break;
+                        continue;
+                    } finally {
+                        if (!isSubmitted) concurrencyLimiter.cancel();
+                    }
+                    if (!isSubmitted) {
+                        outboundQueue.add(rejectSession(finalUserRequest));
+                        requestsInFlight.release();
                     }
-                    return false;
-                }).get()) break;
-            } while (responseToUser.getResponseCode() != ResponseCode.SERVER_EXIT &&
-                    responseToUser.getResponseCode() != ResponseCode.CLIENT_EXIT);
-            if (responseToUser.getResponseCode() == ResponseCode.SERVER_EXIT)
+                }
+            } while (responseToUser == null || (responseToUser.getResponseCode() != ResponseCode.SERVER_EXIT &&
+                    responseToUser.getResponseCode() != ResponseCode.CLIENT_EXIT));
+            requestsInFlight.acquire(maxRequestsInFlight);
+            if (isDrained) askToReconnect();
+            outboundQueue.awaitEmpty();
+            if (responseToUser != null && responseToUser.getResponseCode() == ResponseCode.SERVER_EXIT)
                 stopFlag = true;
         } catch (ClassNotFoundException exception) {
             Outputer.printerror("An error occurred while reading received data!");
             App.logger.error("An error occurred while reading received data!");
-        } catch (CancellationException | ExecutionException | InterruptedException exception) {
+        } catch (RejectedExecutionException | InterruptedException exception) {
             Outputer.println("A multi-threading error occurred while processing the request!");
             App.logger.warn("A multi-threading error occurred while processing the request!");
         } catch (IOException exception) {
-            Outputer.printerror("Unexpected connection termination with the client!");
-            App.logger.warn("Unexpected connection termination with the client!");
+            if (isDraining) {
+                Outputer.println("Connection is closed, because the server is stopping.");
+            } else if (isClosedAsIdle) {
+                Outputer.println("Client was silent too long, the connection is closed.");
+            } else {
+                Outputer.printerror("Unexpected connection termination with the client!");
+                App.logger.warn("Unexpected connection termination with the client!");
+            }
         } finally {
+            server.getIdleMonitor().unregister(this);
             try {
-                cachedThreadPool.shutdown();
-                clientSocket.close();
+                clientChannel.close();
                 Outputer.println("Client disconnected from the server.");
                 App.logger.info("Client disconnected from the server.");
+                if (clientStream != null) {
+                    App.logger.info("Traffic of the connection: " + clientStream.getTrafficCounters() + ", " +
+                            clientStream.getCodec() + ", peak queued bytes: " + outboundQueue.getPeakQueuedBytes() +
+                            ".");
+                    server.getMetrics().countCodec(clientStream.getCodec());
+                    server.getMetrics().countConnectionQueue(outboundQueue.getPeakQueuedBytes());
+                }
             } catch (IOException exception) {
                 Outputer.printerror("An error occurred while attempting to terminate the connection with the client!");
                 App.logger.error("An error occurred while attempting to terminate the connection with the client!");
@@ -83,4 +184,178 @@ public class ConnectionHandler implements Runnable {
             server.releaseConnection();
         }
     }
+
+    /**
+     * Agrees on the codec and compression with the client.
+     *
+     * @param clientStream Stream of the client.
+     * @return Is there a common codec.
+     * @throws IOException When connection is broken.
+     */
+    private boolean acceptHandshake(MessageStream clientStream) throws IOException {
+        Handshake settings = clientStream.accept(config.getSupportedSettings(), config.getCompressionThreshold());
+        lastReadTime = System.nanoTime();
+        if (settings.getCodec() == null) {
+            Outputer.printerror("Client doesn't support any codec of the server!");
+            App.logger.warn("Client doesn't support any codec of the server!");
+            return false;
+        }
+        App.logger.info("Settings of the connection: " + settings.getCodec() + ", " + settings.getCompression() + ".");
+        if (!settings.isLegacy()) {
+            chunkSender = outboundQueue::addChunk;
+            canReceiveHeartbeats = true;
+        }
+        return true;
+    }
+
+    @Override
+    public long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    @Override
+    public long getWriteStartTime() {
+        return outboundQueue.getWriteStartTime();
+    }
+
+    /**
+     * Final request takes all places, so it counts as all of them.
+     */
+    @Override
+    public int getRequestsInFlight() {
+        return Math.max(0, maxRequestsInFlight - requestsInFlight.availablePermits());
+    }
+
+    @Override
+    public boolean canReceiveHeartbeats() {
+        return canReceiveHeartbeats;
+    }
+
+    /**
+     * Heartbeat is skipped, if some response is being written now.
+     */
+    @Override
+    public void sendHeartbeat() {
+        outboundQueue.addIfIdle(new Response(ResponseCode.HEARTBEAT, ""));
+    }
+
+    /**
+     * Closes the socket, so the handling cycle ends with an exception.
+     */
+    @Override
+    public void closeIdle() {
+        isClosedAsIdle = true;
+        try {
+            clientChannel.close();
+        } catch (IOException exception) {
+            App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+        }
+    }
+
+    /**
+     * Shuts down the input of the socket, so the handling cycle stops reading and finishes the read requests.
+     */
+    @Override
+    public void drain() {
+        if (isDraining) return;
+        isDraining = true;
+        try {
+            clientChannel.shutdownInput();
+        } catch (IOException exception) {
+            App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+        }
+    }
+
+    /**
+     * Checks if request ends the connection. Such requests wait until all previous ones are answered.
+     *
+     * @param userRequest Request of the client.
+     * @return Is it 'server_exit' or 'exit' of the connection itself, not of its session.
+     */
+    static boolean isFinalRequest(Request userRequest) {
+        return (userRequest.getCommandName().equals("exit") && userRequest.getSessionId() == 0) ||
+                userRequest.getCommandName().equals("server_exit");
+    }
+
+    /**
+     * @param userRequest Request, that opens one more session.
+     * @return Error response to it.
+     */
+    static Response rejectSession(Request userRequest) {
+        App.logger.warn("Session is rejected, because the connection has too many sessions.");
+        Response response = new Response(userRequest.getRequestId(), ResponseCode.ERROR,
+                SessionTable.TOO_MANY_SESSIONS_MESSAGE);
+        response.setSessionId(userRequest.getSessionId());
+        return response;
+    }
+
+    /**
+     * @param userRequest Request, whose execution failed.
+     * @param exception   Error of the execution.
+     * @return Error response, so the client doesn't wait for the request forever.
+     */
+    static Response failRequest(Request userRequest, RuntimeException exception) {
+        App.logger.error("An error occurred while processing the request '" + userRequest.getCommandName() + "': " +
+                exception);
+        Response response = new Response(userRequest.getRequestId(), ResponseCode.ERROR,
+                "error: An error occurred while processing the request.\n");
+        response.setSessionId(userRequest.getSessionId());
+        return response;
+    }
+
+    /**
+     * @param userRequest Request, that came while the server works on too many requests.
+     * @param server      Server, whose limiter rejected the request.
+     * @return Busy response with the time, after which the request is worth repeating.
+     */
+    static Response rejectBusy(Request userRequest, Server server) {
+        server.getMetrics().countShedRequest();
+        long retryAfter = server.getConcurrencyLimiter().getRetryAfter();
+        Response response = new Response(userRequest.getRequestId(), ResponseCode.BUSY,
+                "Server is busy, retry after " + retryAfter + " ms.\n");
+        response.setSessionId(userRequest.getSessionId());
+        response.setRetryAfter(retryAfter);
+        return response;
+    }
+
+    /**
+     * Executes request in the current thread.
+     *
+     * @param userRequest Request of the client.
+     * @return Response to the client.
+     */
+    private Response executeRequest(Request userRequest) {
+        HandleRequestTask task = new HandleRequestTask(userRequest, commandManager, chunkSender, server.getMetrics());
+        Response responseToUser;
+        try {
+            responseToUser = task.invoke();
+        } catch (RuntimeException exception) {
+            return failRequest(userRequest, exception);
+        }
+        App.logger.info("Запрос '" + userRequest.getCommandName() + "' обработан.");
+        return responseToUser;
+    }
+
+    /**
+     * Asks the client of the drained connection to connect again later. Legacy clients are just disconnected.
+     */
+    private void askToReconnect() {
+        server.getMetrics().countDrainedConnection();
+        if (canReceiveHeartbeats) outboundQueue.add(new Response(ResponseCode.RECONNECT, Server.RECONNECT_MESSAGE));
+    }
+
+    /**
+     * Answers the request, that breaks the limits, with an error.
+     *
+     * @param exception Rejection of the request.
+     * @return Can next requests be read.
+     */
+    private boolean rejectRequest(MessageRejectedException exception) {
+        server.getMetrics().countRejectedRequest();
+        Outputer.printerror("Request of the client is rejected: " + exception.getMessage());
+        App.logger.warn("Request of the client is rejected: " + exception.getMessage());
+        outboundQueue.add(new Response(exception.getRequestId(), ResponseCode.ERROR,
+                "error: Request is rejected by the server: " + exception.getMessage() + "\n"));
+        return !exception.isStreamBroken();
+    }
 }
@@ -2,6 +2,7 @@ package server.utility;
 
 import common.data.*;
 import common.exceptions.DatabaseHandlingException;
+import common.exceptions.DeadlineExceededException;
 import common.interaction.MarineRaw;
 import common.interaction.User;
 import common.utility.Outputer;
@@ -12,13 +13,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.TreeSet;
 
 /**
  * Operates the database collection itself.
  */
-public class DatabaseCollectionManager {
+public class DatabaseCollectionManager implements CollectionStorage {
     // MARINE_TABLE
     private final String SELECT_ALL_MARINES = "SELECT * FROM " + DatabaseHandler.MARINE_TABLE;
     private final String SELECT_MARINE_BY_ID = SELECT_ALL_MARINES + " WHERE " +
@@ -124,6 +128,7 @@ public class DatabaseCollectionManager {
      * @return List of Marines.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public NavigableSet<SpaceMarine> getCollection() throws DatabaseHandlingException {
         NavigableSet<SpaceMarine> marineList = new TreeSet<>();
         PreparedStatement preparedSelectAllStatement = null;
@@ -230,6 +235,7 @@ public class DatabaseCollectionManager {
      * @return Marine.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public SpaceMarine insertMarine(MarineRaw marineRaw, User user) throws DatabaseHandlingException {
 
         SpaceMarine marine;
@@ -315,6 +321,7 @@ public class DatabaseCollectionManager {
      * @param marineId  Id of Marine.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public void updateMarineById(long marineId, MarineRaw marineRaw) throws DatabaseHandlingException {
         PreparedStatement preparedUpdateMarineNameByIdStatement = null;
         PreparedStatement preparedUpdateMarineHealthByIdStatement = null;
@@ -403,21 +410,70 @@ public class DatabaseCollectionManager {
      * @param marineId Id of Marine.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public void deleteMarineById(long marineId) throws DatabaseHandlingException {
+        try {
+            databaseHandler.setCommitMode();
+            deleteChapterByMarineId(marineId);
+            databaseHandler.commit();
+        } catch (SQLException exception) {
+            databaseHandler.rollback();
+            throw new DatabaseHandlingException();
+        } finally {
+            databaseHandler.setNormalMode();
+        }
+    }
+
+    /**
+     * Delete Marines by ids in one transaction, which is rolled back, if the deadline of the request passes.
+     *
+     * @param marineIds Ids of Marines.
+     * @throws DatabaseHandlingException When there's exception inside.
+     * @throws DeadlineExceededException When the deadline is passed before all marines are deleted.
+     */
+    @Override
+    public void deleteMarinesById(Collection<Long> marineIds)
+            throws DatabaseHandlingException, DeadlineExceededException {
+        try {
+            databaseHandler.setCommitMode();
+            for (long marineId : marineIds) {
+                RequestDeadline.check();
+                deleteChapterByMarineId(marineId);
+            }
+            databaseHandler.commit();
+        } catch (DeadlineExceededException exception) {
+            App.logger.warn("Удаление солдат отменено, так как срок запроса истёк.");
+            databaseHandler.rollback();
+            throw exception;
+        } catch (SQLException exception) {
+            databaseHandler.rollback();
+            // Statement is also stopped by the deadline
+            if (RequestDeadline.getRemainingNanos() == 0) throw new DeadlineExceededException();
+            throw new DatabaseHandlingException();
+        } finally {
+            databaseHandler.setNormalMode();
+        }
+    }
+
+    /**
+     * Deletes the marine by its chapter. Is called inside the transaction.
+     *
+     * @param marineId Id of Marine.
+     * @throws SQLException When there's exception inside.
+     */
+    private void deleteChapterByMarineId(long marineId) throws SQLException {
         PreparedStatement preparedDeleteChapterByIdStatement = null;
         try {
 //            delete FROM coordinates WHERE id = 1
 //            delete from space_marine where id = 6
 //            delete from chapter where id = 38
-            preparedDeleteChapterByIdStatement = databaseHandler.getPreparedStatement(DELETE_CHAPTER_BY_ID, false);
-            preparedDeleteChapterByIdStatement = databaseHandler.getPreparedStatement(DELETE_CHAPTER_BY_ID, false);
             preparedDeleteChapterByIdStatement = databaseHandler.getPreparedStatement(DELETE_CHAPTER_BY_ID, false);
             preparedDeleteChapterByIdStatement.setLong(1, getChapterIdByMarineId(marineId));
             if (preparedDeleteChapterByIdStatement.executeUpdate() == 0) Outputer.println(3);
             App.logger.info("Выполнен запрос DELETE_CHAPTER_BY_ID.");
         } catch (SQLException exception) {
             App.logger.error("Произошла ошибка при выполнении запроса DELETE_CHAPTER_BY_ID!");
-            throw new DatabaseHandlingException();
+            throw exception;
         } finally {
             databaseHandler.closePreparedStatement(preparedDeleteChapterByIdStatement);
         }
@@ -431,6 +487,7 @@ public class DatabaseCollectionManager {
      * @throws DatabaseHandlingException When there's exception inside.
      * @return Is everything ok.
      */
+    @Override
     public boolean checkMarineUserId(long marineId, User user) throws DatabaseHandlingException {
         PreparedStatement preparedSelectMarineByIdAndUserIdStatement = null;
         try {
@@ -449,14 +506,15 @@ public class DatabaseCollectionManager {
     }
 
     /**
-     * Clear the collection.
+     * Clear the collection in one transaction, which is rolled back, if the deadline of the request passes.
      *
      * @throws DatabaseHandlingException When there's exception inside.
+     * @throws DeadlineExceededException When the deadline is passed before all marines are deleted.
      */
-    public void clearCollection() throws DatabaseHandlingException {
-        NavigableSet<SpaceMarine> marineList = getCollection();
-        for (SpaceMarine marine : marineList) {
-            deleteMarineById(marine.getId());
-        }
+    @Override
+    public void clearCollection() throws DatabaseHandlingException, DeadlineExceededException {
+        List<Long> marineIds = new ArrayList<>();
+        for (SpaceMarine marine : getCollection()) marineIds.add(marine.getId());
+        deleteMarinesById(marineIds);
     }
 }
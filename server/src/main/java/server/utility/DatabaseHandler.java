@@ -4,9 +4,21 @@ import common.utility.Outputer;
 import server.App;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A class for handle database.
+ * Statements of the request with a deadline get the query timeout and are cancelled right at the deadline,
+ * because the query timeout of JDBC counts whole seconds.
+ * The connection is shared by all workers, so a thread holds it from preparing a statement till closing it,
+ * and a transaction holds it from the commit mode till the normal mode. Otherwise statements of another
+ * command would run inside the transaction and would be committed or rolled back with it.
  */
 public class DatabaseHandler {
     // Table names
@@ -44,6 +56,13 @@ public class DatabaseHandler {
     private String user;
     private String password;
     private Connection connection;
+    private ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "statement-canceller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<Statement, ScheduledFuture<?>> cancellations = new ConcurrentHashMap<>();
+    private ReentrantLock connectionLocker = new ReentrantLock();
 
     public DatabaseHandler(String url, String user, String password) {
         this.url = url;
@@ -72,6 +91,8 @@ public class DatabaseHandler {
     }
 
     /**
+     * Holds the connection for the current thread, till the statement is closed by closePreparedStatement(...).
+     *
      * @param sqlStatement SQL statement to be prepared.
      * @param generateKeys Is keys needed to be generated.
      * @return Pprepared statement.
@@ -79,19 +100,67 @@ public class DatabaseHandler {
      */
     public PreparedStatement getPreparedStatement(String sqlStatement, boolean generateKeys) throws SQLException {
         PreparedStatement preparedStatement;
+        long remainingNanos = RequestDeadline.getRemainingNanos();
+        if (remainingNanos == 0) throw new SQLTimeoutException("Deadline of the request is passed");
+        holdConnection(remainingNanos);
+        remainingNanos = RequestDeadline.getRemainingNanos();
         try {
             if (connection == null) throw new SQLException();
             int autoGeneratedKeys = generateKeys ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS;
             preparedStatement = connection.prepareStatement(sqlStatement, autoGeneratedKeys);
+            if (remainingNanos != Long.MAX_VALUE) limitByDeadline(preparedStatement, remainingNanos);
             //App.logger.info("Подготовлен SQL запрос '" + sqlStatement + "'.");
             return preparedStatement;
         } catch (SQLException exception) {
             //App.logger.error("Произошла ошибка при подготовке SQL запроса '" + sqlStatement + "'.");
             if (connection == null) App.logger.error("Соединение с базой данных не установлено!");
+            connectionLocker.unlock();
             throw new SQLException(exception);
         }
     }
 
+    /**
+     * Waits till no other thread uses the connection.
+     *
+     * @param remainingNanos Nanoseconds till the deadline of the request, Long.MAX_VALUE if it has none.
+     * @throws SQLException When the deadline passes or the thread is interrupted first.
+     */
+    private void holdConnection(long remainingNanos) throws SQLException {
+        if (remainingNanos == Long.MAX_VALUE) {
+            connectionLocker.lock();
+            return;
+        }
+        try {
+            if (!connectionLocker.tryLock(remainingNanos, TimeUnit.NANOSECONDS))
+                throw new SQLTimeoutException("Deadline of the request is passed");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(exception);
+        }
+    }
+
+    /**
+     * Sets query timeout of the statement and schedules its cancellation at the deadline.
+     *
+     * @param statement      Statement of the request with a deadline.
+     * @param remainingNanos Nanoseconds till the deadline.
+     * @throws SQLException When timeout cannot be set.
+     */
+    private void limitByDeadline(Statement statement, long remainingNanos) throws SQLException {
+        // Query timeout has whole seconds, so it is rounded up
+        long timeoutSeconds = TimeUnit.NANOSECONDS.toSeconds(remainingNanos - 1) + 1;
+        statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, timeoutSeconds));
+        cancellations.put(statement, canceller.schedule(() -> {
+            cancellations.remove(statement);
+            try {
+                statement.cancel();
+                App.logger.warn("SQL запрос отменён, так как срок запроса клиента истёк.");
+            } catch (SQLException exception) {
+                App.logger.error("Произошла ошибка при отмене SQL запроса!");
+            }
+        }, remainingNanos, TimeUnit.NANOSECONDS));
+    }
+
     /**
      * Close prepared statement.
      *
@@ -99,11 +168,15 @@ public class DatabaseHandler {
      */
     public void closePreparedStatement(PreparedStatement sqlStatement) {
         if (sqlStatement == null) return;
+        ScheduledFuture<?> cancellation = cancellations.remove(sqlStatement);
+        if (cancellation != null) cancellation.cancel(false);
         try {
             sqlStatement.close();
             //App.logger.info("Закрыт SQL запрос '" + sqlStatement + "'.");
         } catch (SQLException exception) {
             //App.logger.error("Произошла ошибка при закрытии SQL запроса '" + sqlStatement + "'.");
+        } finally {
+            if (connectionLocker.isHeldByCurrentThread()) connectionLocker.unlock();
         }
     }
 
@@ -111,6 +184,7 @@ public class DatabaseHandler {
      * Close connection to database.
      */
     public void closeConnection() {
+        canceller.shutdownNow();
         if (connection == null) return;
         try {
             connection.close();
@@ -123,9 +197,11 @@ public class DatabaseHandler {
     }
 
     /**
-     * Set commit mode of database.
+     * Set commit mode of database, waits till no other thread uses the connection.
+     * Must be followed by setNormalMode() in finally.
      */
     public void setCommitMode() {
+        connectionLocker.lock();
         try {
             if (connection == null) throw new SQLException();
             connection.setAutoCommit(false);
@@ -143,6 +219,8 @@ public class DatabaseHandler {
             connection.setAutoCommit(true);
         } catch (SQLException exception) {
             App.logger.error("Произошла ошибка при установлении нормального режима базы данных!");
+        } finally {
+            if (connectionLocker.isHeldByCurrentThread()) connectionLocker.unlock();
         }
     }
 
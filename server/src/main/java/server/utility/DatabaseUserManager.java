@@ -11,7 +11,7 @@ import java.sql.SQLException;
 /**
  * A manager of user database.
  */
-public class DatabaseUserManager {
+public class DatabaseUserManager implements UserStorage {
     // USER_TABLE
     private final String SELECT_USER_BY_ID = "SELECT * FROM " + DatabaseHandler.USER_TABLE +
             " WHERE " + DatabaseHandler.USER_TABLE_ID_COLUMN + " = ?";
@@ -66,6 +66,7 @@ public class DatabaseUserManager {
      * @return Result set.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public boolean checkUserByUsernameAndPassword(User user) throws DatabaseHandlingException {
         PreparedStatement preparedSelectUserByUsernameAndPasswordStatement = null;
         try {
@@ -119,6 +120,7 @@ public class DatabaseUserManager {
      * @return Status of insert.
      * @throws DatabaseHandlingException When there's exception inside.
      */
+    @Override
     public boolean insertUser(User user) throws DatabaseHandlingException {
         PreparedStatement preparedInsertUserStatement = null;
         try {
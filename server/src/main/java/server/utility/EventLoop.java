@@ -0,0 +1,135 @@
+package server.utility;
+
+import common.utility.Outputer;
+import server.App;
+import server.Server;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Selector thread, that serves many client connections at once.
+ */
+public class EventLoop implements Runnable {
+    // Keys of closed connections leave the selector only on the next select, so it mustn't block after shutdown
+    private static final long SHUTDOWN_SELECT_TIMEOUT = 100;
+
+    private Server server;
+    private CommandManager commandManager;
+    private Bulkheads scheduler;
+    private ServerConfig config;
+    private Selector selector;
+    private Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private Queue<SelectorConnection> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private volatile boolean isShutdown;
+
+    public EventLoop(Server server, CommandManager commandManager, Bulkheads scheduler,
+                     ServerConfig config) throws IOException {
+        this.server = server;
+        this.commandManager = commandManager;
+        this.scheduler = scheduler;
+        this.config = config;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Passes new client channel to this loop.
+     *
+     * @param clientChannel Accepted channel.
+     */
+    public void register(SocketChannel clientChannel) {
+        pendingChannels.add(clientChannel);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks loop to update interests of the connection, e.g. to start writing its new responses.
+     *
+     * @param connection Connection with changed state.
+     */
+    void requestUpdate(SelectorConnection connection) {
+        pendingUpdates.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops taking new connections. Loop ends when all its clients disconnect.
+     * Connections, that were accepted before the shutdown, are drained as soon as they are registered.
+     */
+    public void shutdown() {
+        isShutdown = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Main selecting cycle.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!isShutdown || !selector.keys().isEmpty() || !pendingChannels.isEmpty()) {
+                if (isShutdown) selector.select(SHUTDOWN_SELECT_TIMEOUT);
+                else selector.select();
+                registerPendingChannels();
+                updatePendingConnections();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    SelectorConnection connection = (SelectorConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) connection.onReadable();
+                    if (key.isValid() && key.isWritable()) connection.onWritable();
+                }
+            }
+        } catch (IOException exception) {
+            Outputer.printerror("An error occurred in the selector thread!");
+            App.logger.error("An error occurred in the selector thread!");
+        } finally {
+            for (SelectionKey key : selector.keys()) ((SelectorConnection) key.attachment()).close();
+            try {
+                selector.close();
+            } catch (IOException exception) {
+                App.logger.error("An error occurred while closing the selector!");
+            }
+        }
+    }
+
+    /**
+     * Registers channels, that were accepted since last select.
+     */
+    private void registerPendingChannels() {
+        SocketChannel clientChannel;
+        while ((clientChannel = pendingChannels.poll()) != null) {
+            try {
+                clientChannel.configureBlocking(false);
+                SelectorConnection connection = new SelectorConnection(this, server, clientChannel, commandManager,
+                        scheduler, config);
+                connection.setKey(clientChannel.register(selector, SelectionKey.OP_READ, connection));
+                server.getIdleMonitor().register(connection);
+                if (isShutdown) connection.drain();
+            } catch (IOException | RuntimeException exception) {
+                App.logger.error("An error occurred while registering the client channel!");
+                try {
+                    clientChannel.close();
+                } catch (IOException closingException) {
+                    App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+                }
+                server.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * Updates interests of connections, whose state was changed by workers.
+     */
+    private void updatePendingConnections() {
+        SelectorConnection connection;
+        while ((connection = pendingUpdates.poll()) != null) connection.updateInterest();
+    }
+}
@@ -9,118 +9,76 @@ import java.util.concurrent.RecursiveTask;
 
 /**
  * A class for handle request task.
+ * Request, whose deadline passed while it waited for its turn, isn't executed.
  */
 public class HandleRequestTask extends RecursiveTask<Response> {
+    public static final String EXPIRED_MESSAGE = "error: Request isn't executed, because its deadline is passed.\n";
 
     private Request request;
     private CommandManager commandManager;
+    private ChunkSender chunkSender;
+    private ServerMetrics metrics;
 
     public HandleRequestTask(Request request, CommandManager commandManager) {
+        this(request, commandManager, null);
+    }
+
+    public HandleRequestTask(Request request, CommandManager commandManager, ChunkSender chunkSender) {
+        this(request, commandManager, chunkSender, null);
+    }
+
+    /**
+     * @param chunkSender Where to send parts of big responses or null, if client can't receive them.
+     * @param metrics     Metrics, that count expired requests, null if they aren't counted.
+     */
+    public HandleRequestTask(Request request, CommandManager commandManager, ChunkSender chunkSender,
+                             ServerMetrics metrics) {
         this.request = request;
         this.commandManager = commandManager;
+        this.metrics = metrics;
+        this.chunkSender = chunkSender == null || request.getSessionId() == 0 ? chunkSender : chunk -> {
+            chunk.setSessionId(request.getSessionId());
+            chunkSender.sendChunk(chunk);
+        };
     }
 
-
+    /**
+     * Responses are marked by the session of the request.
+     */
     protected Response compute() {
+        Response response;
+        if (request.getUser() == null) {
+            response = new Response(request.getRequestId(), ResponseCode.ERROR,
+                    "error: User is unknown, login first.\n");
+        } else if (RequestDeadline.isExpired(request)) {
+            if (metrics != null) metrics.countExpiredRequest(false);
+            response = new Response(request.getRequestId(), ResponseCode.ERROR, EXPIRED_MESSAGE);
+        } else {
+            response = executeRequest();
+            if (response.getResponseCode() == ResponseCode.ERROR && RequestDeadline.isExpired(request) &&
+                    metrics != null) metrics.countExpiredRequest(true);
+        }
+        response.setSessionId(request.getSessionId());
+        return response;
+    }
+
+    /**
+     * @return Response to the request of the known user.
+     */
+    private Response executeRequest() {
         User hashedUser = new User(
                 request.getUser().getUsername(),
                 PasswordHasher.hashPassword(request.getUser().getPassword())
         );
         commandManager.addToHistory(request.getCommandName(), request.getUser());
-        ResponseCode responseCode = executeCommand(request.getCommandName(), request.getCommandStringArgument(),
-                request.getCommandObjectArgument(), hashedUser);
-        return new Response(responseCode, ResponseOutputer.getAndClear());
-    }
-
-    /**
-     * Executes a command from a request.
-     *
-     * @param command               Name of command.
-     * @param commandStringArgument String argument for command.
-     * @param commandObjectArgument Object argument for command.
-     * @return Command execute status.
-     */
-    private synchronized ResponseCode executeCommand(String command, String commandStringArgument,
-                                                     Object commandObjectArgument, User user) {
-        switch (command) {
-            case "":
-                break;
-            case "help":
-                if (!commandManager.help(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "info":
-                if (!commandManager.info(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "show":
-                if (!commandManager.show(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "add":
-                if (!commandManager.add(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "update":
-                if (!commandManager.update(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "remove_by_id":
-                if (!commandManager.removeById(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "clear":
-                if (!commandManager.clear(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "execute_script":
-                if (!commandManager.executeScript(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "exit":
-                if (!commandManager.exit(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                return ResponseCode.CLIENT_EXIT;
-            case "add_if_min":
-                if (!commandManager.addIfMin(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "remove_greater":
-                if (!commandManager.removeGreater(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "history":
-                if (!commandManager.history(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "sum_of_health":
-                if (!commandManager.sumOfHealth(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "max_by_melee_weapon":
-                if (!commandManager.maxByMeleeWeapon(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "filter_by_weapon_type":
-                if (!commandManager.filterByWeaponType(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "server_exit":
-                if (!commandManager.serverExit(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                return ResponseCode.SERVER_EXIT;
-            case "login":
-                if (!commandManager.login(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            case "register":
-                if (!commandManager.register(commandStringArgument, commandObjectArgument, user))
-                    return ResponseCode.ERROR;
-                break;
-            default:
-                ResponseOutputer.appendln("Command '" + command + "' not found. Type 'help' for assistance.");
-                return ResponseCode.ERROR;
+        RequestDeadline.start(request);
+        try (ResponseContext context = new ResponseContext(request.getRequestId(), chunkSender)) {
+            ResponseCode responseCode = request.getCommandName().isEmpty() ? ResponseCode.OK :
+                    commandManager.execute(request.getCommandName(), request.getCommandStringArgument(),
+                            request.getCommandObjectArgument(), hashedUser, context);
+            return new Response(request.getRequestId(), responseCode, context.getAndClear());
+        } finally {
+            RequestDeadline.finish();
         }
-        return ResponseCode.OK;
     }
 }
@@ -0,0 +1,535 @@
+package server.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.data.AstartesCategory;
+import common.data.Chapter;
+import common.data.Coordinates;
+import common.data.MeleeWeapon;
+import common.data.SpaceMarine;
+import common.data.Weapon;
+import common.exceptions.CollectionIsEmptyException;
+import common.exceptions.DeadlineExceededException;
+import common.exceptions.QueueFullException;
+import common.interaction.MarineRaw;
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+import common.interaction.User;
+import common.utility.Outputer;
+import server.App;
+import server.ServerConfig;
+import server.ServerMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP listener, that gives the commands to load tools and dashboards as JSON.
+ * Connections are persistent, requests are run by the scheduler like requests of the usual clients.
+ * 'GET /marines' returns the collection, 'GET /marines?weaponType=...' only marines with the weapon,
+ * 'GET /info' returns information about the collection.
+ * 'POST /commands/<name>' executes the command with the body '{"argument": "...", "marine": {...}}',
+ * user is given by the basic authorization. Answer is '{"code": "...", "message": "..."}', the message is the text,
+ * that the usual client prints. Commands 'sum_of_health', 'max_by_melee_weapon' and 'history' also answer with
+ * their result in 'data', which is read right after the command.
+ * Requests over the limit of the server are answered with 503 and 'Retry-After'.
+ * Header 'X-Request-Timeout' gives milliseconds, after which the client doesn't need the answer.
+ * Headers and body of the answer are written apart, so without 'sun.net.httpserver.nodelay' every answer waits
+ * for the delayed ACK of the client. The property is read once by the JDK, so the application sets it before
+ * any HTTP server is created.
+ */
+public class HttpGateway {
+    private static final String COMMANDS_PATH = "/commands/";
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private int port;
+    private ServerConfig config;
+    private CommandManager commandManager;
+    private CollectionManager collectionManager;
+    private Bulkheads scheduler;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private ServerMetrics metrics;
+    private HttpServer httpServer;
+    private ExecutorService handlerPool;
+    private Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    public HttpGateway(ServerConfig config, CommandManager commandManager, CollectionManager collectionManager) {
+        this.port = config.getHttpPort();
+        this.config = config;
+        this.commandManager = commandManager;
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @param scheduler          Runs the requests.
+     * @param concurrencyLimiter Sheds the requests, when the server is busy.
+     * @param metrics            Metrics of the server.
+     * @throws IOException When the port cannot be used.
+     */
+    public void start(Bulkheads scheduler, ConcurrencyLimiter concurrencyLimiter, ServerMetrics metrics)
+            throws IOException {
+        this.scheduler = scheduler;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.metrics = metrics;
+        httpServer = HttpServer.create(new InetSocketAddress(port), config.getAcceptBacklog());
+        httpServer.createContext("/marines", exchange -> handle(exchange, this::handleMarines));
+        httpServer.createContext("/info", exchange -> handle(exchange, this::handleInfo));
+        httpServer.createContext(COMMANDS_PATH, exchange -> handle(exchange, this::handleCommand));
+        httpServer.createContext("/", exchange -> handle(exchange, unknownExchange -> {
+            throw new HttpException(404, "Path '" + unknownExchange.getRequestURI().getPath() + "' isn't found.");
+        }));
+        handlerPool = createHandlerPool();
+        httpServer.setExecutor(handlerPool);
+        httpServer.start();
+        Outputer.println("HTTP gateway is listening on port '" + port + "'...");
+        App.logger.info("HTTP gateway is listening on port '" + port + "'...");
+    }
+
+    /**
+     * Stops listening and waits for the running requests.
+     *
+     * @param delay Seconds to wait for the running requests.
+     */
+    public void stop(int delay) {
+        if (httpServer == null) return;
+        httpServer.stop(delay);
+        handlerPool.shutdown();
+        App.logger.info("HTTP gateway is stopped.");
+    }
+
+    /**
+     * @return Pool of virtual threads in virtual mode, fixed pool otherwise.
+     */
+    private ExecutorService createHandlerPool() {
+        if (config.getMode() == ServerMode.VIRTUAL) {
+            try {
+                return VirtualThreads.newThreadPerTaskExecutor();
+            } catch (UnsupportedOperationException exception) {
+                App.logger.warn("Virtual threads need Java 21 or newer, usual threads will be used!");
+            }
+        }
+        return Executors.newFixedThreadPool(config.getHttpThreads());
+    }
+
+    /**
+     * Answers the exchange by the handler, errors of the handler become error answers.
+     *
+     * @param exchange HTTP exchange.
+     * @param handler  Handler of the path.
+     */
+    private void handle(HttpExchange exchange, ExchangeHandler handler) throws IOException {
+        metrics.countHttpRequest();
+        try {
+            handler.handle(exchange);
+        } catch (HttpException exception) {
+            sendError(exchange, exception);
+        } catch (RuntimeException exception) {
+            App.logger.error("An error occurred while processing the HTTP request!");
+            sendError(exchange, new HttpException(500, "An error occurred while processing the request."));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers with the error, if the answer isn't sent yet.
+     */
+    private void sendError(HttpExchange exchange, HttpException exception) throws IOException {
+        if (exchange.getResponseCode() != -1) return;
+        JsonObject answer = new JsonObject();
+        answer.addProperty("code", ResponseCode.ERROR.toString());
+        answer.addProperty("message", exception.getMessage());
+        if (exception.status == 401) exchange.getResponseHeaders().set("WWW-Authenticate", "Basic");
+        sendJson(exchange, exception.status, answer);
+    }
+
+    /**
+     * Returns all marines or marines with the weapon type.
+     */
+    private void handleMarines(HttpExchange exchange) throws IOException, HttpException {
+        requireMethod(exchange, "GET");
+        String weaponName = queryParameter(exchange, "weaponType");
+        Weapon weaponType = weaponName == null ? null : parseEnum(Weapon.class, weaponName, "weaponType");
+        String commandName = weaponType == null ? "show" : "filter_by_weapon_type";
+        JsonArray marines = schedule(exchange, new Request(commandName, "", authorizedUser(exchange, false)),
+                () -> {
+                    NavigableSet<SpaceMarine> collection = collectionManager.getCollection();
+                    return marinesToJson(weaponType == null ? collection : collection.stream()
+                            .filter(marine -> marine.getWeaponType() == weaponType).collect(Collectors.toList()));
+                });
+        sendJson(exchange, 200, marines);
+    }
+
+    /**
+     * Returns information about the collection.
+     */
+    private void handleInfo(HttpExchange exchange) throws IOException, HttpException {
+        requireMethod(exchange, "GET");
+        JsonObject info = schedule(exchange, new Request("info", "", authorizedUser(exchange, false)),
+                () -> {
+                    CollectionVersion version = collectionManager.getVersion();
+                    JsonObject collectionInfo = new JsonObject();
+                    LocalDateTime lastInitTime = version.getLastInitTime();
+                    collectionInfo.addProperty("type", version.collectionType());
+                    collectionInfo.addProperty("size", version.collectionSize());
+                    collectionInfo.addProperty("lastInitTime", lastInitTime == null ? null : lastInitTime.toString());
+                    collectionInfo.addProperty("sumOfHealth", version.getSumOfHealth());
+                    return collectionInfo;
+                });
+        sendJson(exchange, 200, info);
+    }
+
+    /**
+     * Executes the command like the usual client does.
+     */
+    private void handleCommand(HttpExchange exchange) throws IOException, HttpException {
+        requireMethod(exchange, "POST");
+        String commandName = exchange.getRequestURI().getPath().substring(COMMANDS_PATH.length());
+        if (commandName.equals("exit") || commandName.equals("server_exit") || commandName.equals("execute_script"))
+            throw new HttpException(404, "Command '" + commandName + "' isn't available over HTTP.");
+        User user = authorizedUser(exchange, true);
+        JsonObject body = readBody(exchange);
+        JsonElement argumentJson = body.has("argument") ? body.get("argument") : JsonNull.INSTANCE;
+        if (!argumentJson.isJsonNull() && !argumentJson.isJsonPrimitive())
+            throw new HttpException(400, "Argument should be a string or a number.");
+        String argument = argumentJson.isJsonNull() ? "" : argumentJson.getAsString();
+        JsonElement marineJson = body.has("marine") ? body.get("marine") : JsonNull.INSTANCE;
+        if (!marineJson.isJsonNull() && !marineJson.isJsonObject())
+            throw new HttpException(400, "Marine should be a JSON object.");
+        MarineRaw marine = marineJson.isJsonNull() ? null :
+                readMarine(marineJson.getAsJsonObject(), commandName.equals("update"));
+        Request request = new Request(commandName, argument, marine, user);
+        JsonObject answer = schedule(exchange, request, () -> {
+            Response response = new HandleRequestTask(request, commandManager, null, metrics).invoke();
+            JsonObject commandAnswer = new JsonObject();
+            commandAnswer.addProperty("code", response.getResponseCode().toString());
+            commandAnswer.addProperty("message", response.getResponseBody());
+            JsonElement data = response.getResponseCode() == ResponseCode.OK ? commandData(commandName, user) : null;
+            if (data != null) commandAnswer.add("data", data);
+            return commandAnswer;
+        });
+        sendJson(exchange, answer.get("code").getAsString().equals(ResponseCode.OK.toString()) ? 200 : 400, answer);
+    }
+
+    /**
+     * @param commandName Name of the executed command.
+     * @param user        User, who executed it.
+     * @return Result of the command in JSON, null if the command has only the message.
+     */
+    private JsonElement commandData(String commandName, User user) {
+        switch (commandName) {
+            case "sum_of_health":
+                JsonObject sum = new JsonObject();
+                sum.addProperty("sumOfHealth", collectionManager.getVersion().getSumOfHealth());
+                return sum;
+            case "max_by_melee_weapon":
+                try {
+                    return marineToJson(collectionManager.getVersion().maxByMeleeWeapon());
+                } catch (CollectionIsEmptyException exception) {
+                    return null;
+                }
+            case "history":
+                CommandHistory commandHistory = commandManager.getHistory();
+                JsonObject history = new JsonObject();
+                history.add("user", gson.toJsonTree(commandHistory.getUserHistory(user.getUsername())));
+                if (commandHistory.isGlobal())
+                    history.add("global", gson.toJsonTree(commandHistory.getGlobalHistory()));
+                return history;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Runs the work by the scheduler and waits for it.
+     * When the server works on too many requests or the queue of the bulkhead is full, answers at once with
+     * 'Retry-After'.
+     * Work, whose deadline passes in the queue, isn't done.
+     *
+     * @param exchange HTTP exchange.
+     * @param request  Request, that defines the bulkhead of the work.
+     *                 The work takes the turn of the client address, since credentials aren't verified yet.
+     * @param work     Work to run.
+     * @return Result of the work.
+     * @throws HttpException When the server is busy or stopping, or the deadline is passed.
+     */
+    private <T> T schedule(HttpExchange exchange, Request request, Supplier<T> work) throws HttpException {
+        String timeout = exchange.getRequestHeaders().getFirst(TIMEOUT_HEADER);
+        if (timeout != null) {
+            try {
+                request.setTimeout(Math.max(0, Long.parseLong(timeout.trim())));
+            } catch (NumberFormatException exception) {
+                throw new HttpException(400, "Header '" + TIMEOUT_HEADER + "' should be milliseconds.");
+            }
+        }
+        RequestDeadline.startCountdown(request, config.getRequestTimeout());
+        if (!concurrencyLimiter.tryAcquire()) throw rejectBusy(exchange);
+        long admissionTime = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        boolean isQueued = false;
+        try {
+            scheduler.execute(request, exchange.getRemoteAddress().getAddress(), () -> {
+                if (RequestDeadline.isExpired(request)) {
+                    metrics.countExpiredRequest(false);
+                    result.completeExceptionally(new DeadlineExceededException());
+                    return;
+                }
+                try {
+                    result.complete(work.get());
+                } catch (RuntimeException exception) {
+                    result.completeExceptionally(exception);
+                }
+            });
+            isQueued = true;
+            return result.get();
+        } catch (QueueFullException exception) {
+            throw rejectBusy(exchange);
+        } catch (RejectedExecutionException exception) {
+            throw new HttpException(503, "Server is stopping.");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new HttpException(503, "Server is stopping.");
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof DeadlineExceededException)
+                throw new HttpException(504, "Request isn't executed, because its deadline is passed.");
+            App.logger.error("An error occurred while processing the HTTP request!");
+            throw new HttpException(500, "An error occurred while processing the request.");
+        } finally {
+            if (isQueued) concurrencyLimiter.release(admissionTime);
+            else concurrencyLimiter.cancel();
+        }
+    }
+
+    /**
+     * @param exchange HTTP exchange, that gets 'Retry-After'.
+     * @return Error for the request, that came while the server or the bulkhead of the request is busy.
+     */
+    private HttpException rejectBusy(HttpExchange exchange) {
+        metrics.countShedRequest();
+        long retryAfter = concurrencyLimiter.getRetryAfter();
+        // Header has whole seconds
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf((retryAfter + 999) / 1000));
+        return new HttpException(503, "Server is busy, retry after " + retryAfter + " ms.");
+    }
+
+    /**
+     * @param exchange HTTP exchange.
+     * @param required Must the request have the user.
+     * @return User of the basic authorization, null if there is none.
+     * @throws HttpException When the required user isn't given.
+     */
+    private User authorizedUser(HttpExchange exchange, boolean required) throws HttpException {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Basic ")) {
+            if (required) throw new HttpException(401, "Basic authorization is required.");
+            return null;
+        }
+        try {
+            String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+                    StandardCharsets.UTF_8);
+            int separator = credentials.indexOf(':');
+            if (separator <= 0) throw new IllegalArgumentException();
+            return new User(credentials.substring(0, separator), credentials.substring(separator + 1));
+        } catch (IllegalArgumentException exception) {
+            throw new HttpException(401, "Basic authorization is incorrect.");
+        }
+    }
+
+    /**
+     * @param exchange HTTP exchange.
+     * @param method   Allowed method.
+     * @throws HttpException When the request has another method.
+     */
+    private void requireMethod(HttpExchange exchange, String method) throws HttpException {
+        if (!exchange.getRequestMethod().equals(method)) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new HttpException(405, "Method " + exchange.getRequestMethod() + " isn't allowed.");
+        }
+    }
+
+    /**
+     * @param exchange HTTP exchange.
+     * @param name     Name of the parameter.
+     * @return Value of the query parameter, null if there is none.
+     */
+    private String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) return parameter.substring(name.length() + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Reads JSON body, which is limited like the requests of the usual clients.
+     *
+     * @param exchange HTTP exchange.
+     * @return Body, empty object if there is no body.
+     * @throws HttpException When body is too big or isn't a JSON object.
+     */
+    private JsonObject readBody(HttpExchange exchange) throws IOException, HttpException {
+        int maxBodyBytes = config.getRequestLimits().getMaxMessageBytes();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        try (InputStream input = exchange.getRequestBody()) {
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                if (body.size() + count > maxBodyBytes)
+                    throw new HttpException(413, "Request is bigger than " + maxBodyBytes + " bytes.");
+                body.write(buffer, 0, count);
+            }
+        }
+        if (body.size() == 0) return new JsonObject();
+        try {
+            JsonElement json = JsonParser.parseString(body.toString(StandardCharsets.UTF_8.name()));
+            if (!json.isJsonObject()) throw new HttpException(400, "Request body should be a JSON object.");
+            return json.getAsJsonObject();
+        } catch (JsonParseException exception) {
+            throw new HttpException(400, "Request body isn't a correct JSON.");
+        }
+    }
+
+    /**
+     * Reads the marine and checks it by the same limits as the client does.
+     * Fields of the updated marine can be omitted, then they aren't changed.
+     *
+     * @param json     Marine in JSON.
+     * @param isUpdate Is it a marine for update.
+     * @return Marine for the command.
+     * @throws HttpException When some field is missing or incorrect.
+     */
+    private MarineRaw readMarine(JsonObject json, boolean isUpdate) throws HttpException {
+        try {
+            String name = json.has("name") ? json.get("name").getAsString() : null;
+            if (name != null && name.isEmpty()) throw new HttpException(400, "Marine name cannot be empty.");
+            Coordinates coordinates = json.has("coordinates") ?
+                    gson.fromJson(json.get("coordinates"), Coordinates.class) : null;
+            if (coordinates != null && (coordinates.getY() == null || coordinates.getY() > SpaceMarine.MAX_Y))
+                throw new HttpException(400, "Coordinate Y should be set and not exceed " + SpaceMarine.MAX_Y + ".");
+            double health = json.has("health") ? json.get("health").getAsDouble() : -1;
+            if (json.has("health") && health <= SpaceMarine.MIN_HEALTH)
+                throw new HttpException(400, "Health should be greater than " + SpaceMarine.MIN_HEALTH + ".");
+            AstartesCategory category = json.has("category") ?
+                    parseEnum(AstartesCategory.class, json.get("category").getAsString(), "category") : null;
+            Weapon weaponType = json.has("weaponType") ?
+                    parseEnum(Weapon.class, json.get("weaponType").getAsString(), "weaponType") : null;
+            MeleeWeapon meleeWeapon = json.has("meleeWeapon") ?
+                    parseEnum(MeleeWeapon.class, json.get("meleeWeapon").getAsString(), "meleeWeapon") : null;
+            Chapter chapter = json.has("chapter") ? gson.fromJson(json.get("chapter"), Chapter.class) : null;
+            if (chapter != null && (chapter.getName() == null || chapter.getName().isEmpty() ||
+                    chapter.getMarinesCount() < SpaceMarine.MIN_MARINES ||
+                    chapter.getMarinesCount() > SpaceMarine.MAX_MARINES))
+                throw new HttpException(400, "Chapter should have a name and from " + SpaceMarine.MIN_MARINES +
+                        " to " + SpaceMarine.MAX_MARINES + " marines.");
+            if (!isUpdate && (name == null || coordinates == null || health == -1 || category == null ||
+                    weaponType == null || meleeWeapon == null || chapter == null))
+                throw new HttpException(400, "All fields of the marine should be set.");
+            return new MarineRaw(name, coordinates, health, category, weaponType, meleeWeapon, chapter);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException |
+                 NumberFormatException exception) {
+            throw new HttpException(400, "Marine isn't correct.");
+        }
+    }
+
+    /**
+     * @return Constant of the enum by its name in any case.
+     * @throws HttpException When there is no such constant.
+     */
+    private <E extends Enum<E>> E parseEnum(Class<E> enumClass, String name, String field) throws HttpException {
+        try {
+            return Enum.valueOf(enumClass, name.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw new HttpException(400, "Value '" + name + "' of '" + field + "' isn't in the list.");
+        }
+    }
+
+    /**
+     * @param marines Marines to convert.
+     * @return Marines in JSON, owners are given only by names.
+     */
+    private JsonArray marinesToJson(Collection<SpaceMarine> marines) {
+        JsonArray array = new JsonArray();
+        for (SpaceMarine marine : marines) {
+            array.add(marineToJson(marine));
+        }
+        return array;
+    }
+
+    /**
+     * @param marine Marine to convert.
+     * @return Marine in JSON, owner is given only by name.
+     */
+    private JsonObject marineToJson(SpaceMarine marine) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", marine.getId());
+        json.addProperty("name", marine.getName());
+        json.add("coordinates", gson.toJsonTree(marine.getCoordinates()));
+        json.addProperty("creationDate", marine.getCreationDate().toString());
+        json.addProperty("health", marine.getHealth());
+        json.addProperty("category", String.valueOf(marine.getCategory()));
+        json.addProperty("weaponType", String.valueOf(marine.getWeaponType()));
+        json.addProperty("meleeWeapon", String.valueOf(marine.getMeleeWeapon()));
+        json.add("chapter", gson.toJsonTree(marine.getChapter()));
+        json.addProperty("owner", marine.getOwner().getUsername());
+        return json;
+    }
+
+    /**
+     * Sends JSON with its length, so the connection stays open for the next request.
+     */
+    private void sendJson(HttpExchange exchange, int status, JsonElement json) throws IOException {
+        byte[] body = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Handler of one path.
+     */
+    private interface ExchangeHandler {
+        void handle(HttpExchange exchange) throws IOException, HttpException;
+    }
+
+    /**
+     * Error, that is answered with the HTTP status.
+     */
+    private static class HttpException extends Exception {
+        private final int status;
+
+        private HttpException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package server.utility;
+
+import server.App;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches for connections, whose clients are silent.
+ * Sends heartbeats after the heartbeat interval and closes connection after the idle timeout.
+ * Connection isn't idle while its requests run or wait, the timeout is counted from the end of the last one.
+ * Also closes connections, whose clients don't read responses, so they don't hold a writer thread.
+ * When the server stops, all registered connections are drained and the late ones are closed.
+ */
+public class IdleMonitor {
+    private long heartbeatIntervalNanos;
+    private long idleTimeoutNanos;
+    private long writeTimeoutNanos;
+    private ServerMetrics metrics;
+    private Map<MonitoredConnection, ConnectionTimes> connectionTimes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param heartbeatInterval Seconds of silence before heartbeat.
+     * @param idleTimeout       Seconds of silence before closing.
+     * @param writeTimeout      Seconds of writing one response before closing.
+     * @param metrics           Metrics of the server.
+     */
+    public IdleMonitor(int heartbeatInterval, int idleTimeout, int writeTimeout, ServerMetrics metrics) {
+        this.heartbeatIntervalNanos = TimeUnit.SECONDS.toNanos(heartbeatInterval);
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeout);
+        this.writeTimeoutNanos = TimeUnit.SECONDS.toNanos(writeTimeout);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts checking connections.
+     */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idle-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkPeriod = Math.max(TimeUnit.MILLISECONDS.toNanos(100),
+                Math.min(Math.min(heartbeatIntervalNanos, idleTimeoutNanos), writeTimeoutNanos) / 4);
+        scheduler.scheduleAtFixedRate(this::checkConnections, checkPeriod, checkPeriod, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops checking connections.
+     */
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    /**
+     * @param connection New connection.
+     */
+    void register(MonitoredConnection connection) {
+        connectionTimes.put(connection, new ConnectionTimes(connection.getLastReadTime()));
+    }
+
+    /**
+     * @param connection Closed connection.
+     */
+    void unregister(MonitoredConnection connection) {
+        connectionTimes.remove(connection);
+    }
+
+    /**
+     * Asks all connections to finish their requests and to send their clients away.
+     */
+    public void drainConnections() {
+        for (MonitoredConnection connection : connectionTimes.keySet()) connection.drain();
+    }
+
+    /**
+     * Closes connections, that weren't drained in time.
+     *
+     * @return Number of closed connections.
+     */
+    public int closeConnections() {
+        int closedConnections = 0;
+        for (MonitoredConnection connection : connectionTimes.keySet()) {
+            if (connectionTimes.remove(connection) == null) continue;
+            connection.closeIdle();
+            closedConnections++;
+        }
+        return closedConnections;
+    }
+
+    /**
+     * Checks all connections once.
+     */
+    private void checkConnections() {
+        long now = System.nanoTime();
+        for (Map.Entry<MonitoredConnection, ConnectionTimes> entry : connectionTimes.entrySet()) {
+            MonitoredConnection connection = entry.getKey();
+            ConnectionTimes times = entry.getValue();
+            long lastReadTime = connection.getLastReadTime();
+            long writeStartTime = connection.getWriteStartTime();
+            try {
+                boolean isBusy = connection.getRequestsInFlight() > 0;
+                if (isBusy) times.lastBusyTime = now;
+                if (writeStartTime != 0 && now - writeStartTime >= writeTimeoutNanos) {
+                    connectionTimes.remove(connection);
+                    metrics.countStalledConnectionClosed();
+                    App.logger.warn("Client doesn't read responses too long, the connection is closed.");
+                    connection.closeIdle();
+                } else if (!isBusy && now - Math.max(lastReadTime, times.lastBusyTime) >= idleTimeoutNanos) {
+                    connectionTimes.remove(connection);
+                    metrics.countIdleConnectionClosed();
+                    App.logger.warn("Client was silent too long, the connection is closed.");
+                    connection.closeIdle();
+                } else if (connection.canReceiveHeartbeats() && now - lastReadTime >= heartbeatIntervalNanos &&
+                        now - Math.max(times.lastHeartbeatTime, lastReadTime) >= heartbeatIntervalNanos) {
+                    times.lastHeartbeatTime = now;
+                    metrics.countHeartbeat();
+                    connection.sendHeartbeat();
+                }
+            } catch (RuntimeException exception) {
+                App.logger.error("An error occurred while checking the idle connection!");
+            }
+        }
+    }
+
+    /**
+     * Times of one connection, that only the monitor thread changes.
+     */
+    private static class ConnectionTimes {
+        private long lastHeartbeatTime;
+        private long lastBusyTime;
+
+        private ConnectionTimes(long registrationTime) {
+            this.lastHeartbeatTime = registrationTime;
+            this.lastBusyTime = registrationTime;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package server.utility;
+
+import common.data.SpaceMarine;
+import common.exceptions.DatabaseHandlingException;
+import common.interaction.MarineRaw;
+import common.interaction.User;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage of the marines in memory. Is used by the embedded mode and the server without database,
+ * the marines are lost when the process stops.
+ */
+public class MemoryCollectionStorage implements CollectionStorage {
+    private Map<Long, SpaceMarine> marines = new ConcurrentHashMap<>();
+    private AtomicLong lastId = new AtomicLong();
+
+    /**
+     * @return Copy of the stored marines.
+     */
+    @Override
+    public NavigableSet<SpaceMarine> getCollection() {
+        return new TreeSet<>(marines.values());
+    }
+
+    /**
+     * @param marineRaw Marine raw.
+     * @param user      Owner of the marine.
+     * @return Stored marine with the next ID.
+     */
+    @Override
+    public SpaceMarine insertMarine(MarineRaw marineRaw, User user) {
+        SpaceMarine marine = new SpaceMarine(
+                lastId.incrementAndGet(),
+                marineRaw.getName(),
+                marineRaw.getCoordinates(),
+                LocalDateTime.now(),
+                marineRaw.getHealth(),
+                marineRaw.getCategory(),
+                marineRaw.getWeaponType(),
+                marineRaw.getMeleeWeapon(),
+                marineRaw.getChapter(),
+                user
+        );
+        marines.put(marine.getId(), marine);
+        return marine;
+    }
+
+    /**
+     * @param marineId  Id of Marine.
+     * @param marineRaw New fields of the marine, null fields and health -1 aren't changed.
+     * @throws DatabaseHandlingException When there is no such marine.
+     */
+    @Override
+    public void updateMarineById(long marineId, MarineRaw marineRaw) throws DatabaseHandlingException {
+        SpaceMarine oldMarine = marines.get(marineId);
+        if (oldMarine == null) throw new DatabaseHandlingException();
+        marines.put(marineId, new SpaceMarine(
+                marineId,
+                marineRaw.getName() == null ? oldMarine.getName() : marineRaw.getName(),
+                marineRaw.getCoordinates() == null ? oldMarine.getCoordinates() : marineRaw.getCoordinates(),
+                oldMarine.getCreationDate(),
+                marineRaw.getHealth() == -1 ? oldMarine.getHealth() : marineRaw.getHealth(),
+                marineRaw.getCategory() == null ? oldMarine.getCategory() : marineRaw.getCategory(),
+                marineRaw.getWeaponType() == null ? oldMarine.getWeaponType() : marineRaw.getWeaponType(),
+                marineRaw.getMeleeWeapon() == null ? oldMarine.getMeleeWeapon() : marineRaw.getMeleeWeapon(),
+                marineRaw.getChapter() == null ? oldMarine.getChapter() : marineRaw.getChapter(),
+                oldMarine.getOwner()
+        ));
+    }
+
+    /**
+     * @param marineId Id of Marine.
+     * @throws DatabaseHandlingException When there is no such marine.
+     */
+    @Override
+    public void deleteMarineById(long marineId) throws DatabaseHandlingException {
+        if (marines.remove(marineId) == null) throw new DatabaseHandlingException();
+    }
+
+    /**
+     * Marines are checked before deleting, so either all of them are deleted or none.
+     *
+     * @param marineIds Ids of Marines.
+     * @throws DatabaseHandlingException When some marine isn't stored.
+     */
+    @Override
+    public void deleteMarinesById(Collection<Long> marineIds) throws DatabaseHandlingException {
+        if (!marines.keySet().containsAll(marineIds)) throw new DatabaseHandlingException();
+        marines.keySet().removeAll(marineIds);
+    }
+
+    /**
+     * @param marineId Id of Marine.
+     * @param user     Owner of marine.
+     * @return Does the stored marine belong to the user.
+     */
+    @Override
+    public boolean checkMarineUserId(long marineId, User user) {
+        SpaceMarine marine = marines.get(marineId);
+        return marine != null && marine.getOwner().getUsername().equals(user.getUsername());
+    }
+
+    /**
+     * Deletes all marines.
+     */
+    @Override
+    public void clearCollection() {
+        marines.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package server.utility;
+
+import common.interaction.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Storage of the users in memory. Is used by the embedded mode and the server without database.
+ */
+public class MemoryUserStorage implements UserStorage {
+    // Hashed passwords by usernames
+    private Map<String, String> passwords = new ConcurrentHashMap<>();
+
+    /**
+     * @param user User with the hashed password.
+     * @return Is there such user with such password.
+     */
+    @Override
+    public boolean checkUserByUsernameAndPassword(User user) {
+        return user.getPassword().equals(passwords.get(user.getUsername()));
+    }
+
+    /**
+     * @param user User with the hashed password.
+     * @return Was user added, false if the username is taken.
+     */
+    @Override
+    public boolean insertUser(User user) {
+        return passwords.putIfAbsent(user.getUsername(), user.getPassword()) == null;
+    }
+}
@@ -0,0 +1,43 @@
+package server.utility;
+
+/**
+ * Connection, that is closed by the idle monitor when the client is silent too long.
+ * Is drained through the monitor when the server stops.
+ */
+interface MonitoredConnection {
+    /**
+     * @return Time of the last data from the client by System.nanoTime().
+     */
+    long getLastReadTime();
+
+    /**
+     * @return Time, when writing of the current response began, by System.nanoTime(). 0 if nothing is written.
+     */
+    long getWriteStartTime();
+
+    /**
+     * @return Number of requests of the connection, that are running or wait for their turn.
+     */
+    int getRequestsInFlight();
+
+    /**
+     * @return Does the client answer heartbeats.
+     */
+    boolean canReceiveHeartbeats();
+
+    /**
+     * Sends heartbeat without blocking the caller.
+     */
+    void sendHeartbeat();
+
+    /**
+     * Closes connection without blocking the caller.
+     */
+    void closeIdle();
+
+    /**
+     * Stops reading requests. When the running ones are answered, asks the client to reconnect and closes.
+     * Doesn't block the caller.
+     */
+    void drain();
+}
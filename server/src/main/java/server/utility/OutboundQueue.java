@@ -0,0 +1,256 @@
+package server.utility;
+
+import common.interaction.MessageStream;
+import common.interaction.Response;
+import server.App;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Responses of one connection, that wait for the shared writer pool.
+ * Responses are encoded by the adding thread, so the order of the codec stream is kept and workers never block
+ * on the socket. Only one writer drains the queue at a time, it gives the thread back after a few frames.
+ * Uses a lock instead of a monitor, so virtual threads are never pinned.
+ */
+public class OutboundQueue {
+    private static final int FRAMES_PER_TURN = 16;
+
+    private MessageStream stream;
+    private ExecutorService writerPool;
+    private ServerMetrics metrics;
+    private long maxQueuedBytes;
+    private volatile long writeStartTime;
+    private Lock lock = new ReentrantLock();
+    private Condition queueChanged = lock.newCondition();
+    // Are guarded by lock
+    private Queue<byte[]> frames = new ArrayDeque<>();
+    private long queuedBytes;
+    private long peakQueuedBytes;
+    private boolean isWriting;
+    private boolean isBroken;
+
+    /**
+     * @param maxQueuedBytes Size of queued responses, from which the connection stops reading requests.
+     */
+    public OutboundQueue(MessageStream stream, ExecutorService writerPool, ServerMetrics metrics,
+                         long maxQueuedBytes) {
+        this.stream = stream;
+        this.writerPool = writerPool;
+        this.metrics = metrics;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Encodes response and queues it for writing.
+     *
+     * @param response Response to the client.
+     * @return Is response queued.
+     */
+    public boolean add(Response response) {
+        lock.lock();
+        try {
+            if (isBroken) return false;
+            try {
+                byte[] payload = stream.encode(response);
+                frames.add(payload);
+                queuedBytes += payload.length;
+                peakQueuedBytes = Math.max(peakQueuedBytes, queuedBytes);
+                metrics.addQueuedBytes(payload.length);
+            } catch (IOException exception) {
+                App.logger.error("An error occurred while sending data to the client!");
+                return false;
+            }
+            if (!isWriting) {
+                isWriting = true;
+                scheduleWriting();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until queued responses are smaller than the limit and queues the part of the response,
+     * so the worker renders the next part only when the client reads the previous ones.
+     * Doesn't wait longer than the deadline of the current request.
+     *
+     * @param chunk Part of the response.
+     * @return Is part queued.
+     */
+    public boolean addChunk(Response chunk) {
+        lock.lock();
+        try {
+            long remainingNanos = RequestDeadline.getRemainingNanos();
+            while (queuedBytes > maxQueuedBytes && !isBroken && remainingNanos > 0) {
+                if (remainingNanos == Long.MAX_VALUE) queueChanged.await();
+                else remainingNanos = queueChanged.awaitNanos(remainingNanos);
+            }
+            return add(chunk);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues service response, if nothing is being written now.
+     *
+     * @param response Response to the client.
+     * @return Is response queued.
+     */
+    public boolean addIfIdle(Response response) {
+        lock.lock();
+        try {
+            return !isWriting && add(response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until queued responses are smaller than the limit. Connection doesn't read requests meanwhile.
+     *
+     * @throws InterruptedException When thread is interrupted.
+     */
+    public void awaitBelowLimit() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queuedBytes > maxQueuedBytes && !isBroken) queueChanged.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all queued responses are written.
+     *
+     * @throws InterruptedException When thread is interrupted.
+     */
+    public void awaitEmpty() throws InterruptedException {
+        lock.lock();
+        try {
+            while (isWriting && !isBroken) queueChanged.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Bytes of responses, that are not written yet.
+     */
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The biggest size of the queue.
+     */
+    public long getPeakQueuedBytes() {
+        lock.lock();
+        try {
+            return peakQueuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Time, when writing of the current frame began, by System.nanoTime(). 0 if nothing is written.
+     */
+    public long getWriteStartTime() {
+        return writeStartTime;
+    }
+
+    /**
+     * Writes a few frames and schedules itself again, if the queue isn't empty.
+     */
+    private void writeFrames() {
+        for (int i = 0; i < FRAMES_PER_TURN; i++) {
+            byte[] payload;
+            lock.lock();
+            try {
+                payload = frames.poll();
+                if (payload == null) {
+                    isWriting = false;
+                    queueChanged.signalAll();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            writeStartTime = System.nanoTime();
+            try {
+                stream.sendEncoded(payload);
+            } catch (IOException exception) {
+                App.logger.error("An error occurred while sending data to the client!");
+                breakQueue();
+                return;
+            } finally {
+                writeStartTime = 0;
+            }
+            lock.lock();
+            try {
+                queuedBytes -= payload.length;
+                metrics.addQueuedBytes(-payload.length);
+                queueChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        lock.lock();
+        try {
+            scheduleWriting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the queue to the writer pool.
+     */
+    private void scheduleWriting() {
+        try {
+            writerPool.execute(this::writeFrames);
+        } catch (RejectedExecutionException exception) {
+            App.logger.error("Responses cannot be written, because the server is stopping.");
+            breakQueue();
+        }
+    }
+
+    /**
+     * Drops the queue after the writing error and closes the stream, so the reading thread stops too.
+     */
+    private void breakQueue() {
+        lock.lock();
+        try {
+            isBroken = true;
+            isWriting = false;
+            frames.clear();
+            metrics.addQueuedBytes(-queuedBytes);
+            queuedBytes = 0;
+            queueChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            stream.close();
+        } catch (IOException exception) {
+            App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+        }
+    }
+}
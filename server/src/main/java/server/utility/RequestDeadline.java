@@ -0,0 +1,71 @@
+package server.utility;
+
+import common.exceptions.DeadlineExceededException;
+import common.interaction.Request;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the request, that the current thread executes.
+ * Long commands check it between their steps, and database statements are cancelled by it,
+ * so the server doesn't work for the client, that doesn't wait for the answer anymore.
+ */
+public class RequestDeadline {
+    private static ThreadLocal<Long> currentDeadline = new ThreadLocal<>();
+
+    /**
+     * Sets the deadline of the arrived request by its timeout and the timeout of the server.
+     * Exits have no deadline, so the session and the connection always end.
+     *
+     * @param request       Arrived request.
+     * @param serverTimeout Milliseconds, that the server gives to any request, 0 if it doesn't limit them.
+     */
+    public static void startCountdown(Request request, long serverTimeout) {
+        if (request.getCommandName().equals("exit") || request.getCommandName().equals("server_exit")) return;
+        long timeout = request.getTimeout();
+        if (serverTimeout != 0 && (timeout == 0 || timeout > serverTimeout)) timeout = serverTimeout;
+        if (timeout != 0) request.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    /**
+     * Starts the deadline of the request in the current thread.
+     *
+     * @param request Request, that the thread executes.
+     */
+    public static void start(Request request) {
+        if (request.getDeadline() != 0) currentDeadline.set(request.getDeadline());
+    }
+
+    /**
+     * Ends the deadline of the request in the current thread.
+     */
+    public static void finish() {
+        currentDeadline.remove();
+    }
+
+    /**
+     * @param request Request, which may wait for its turn.
+     * @return Is its deadline passed.
+     */
+    public static boolean isExpired(Request request) {
+        return request.getDeadline() != 0 && System.nanoTime() - request.getDeadline() >= 0;
+    }
+
+    /**
+     * @return Nanoseconds till the deadline of the current request, Long.MAX_VALUE if it has none.
+     */
+    public static long getRemainingNanos() {
+        Long deadline = currentDeadline.get();
+        if (deadline == null) return Long.MAX_VALUE;
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Is called between steps of long commands.
+     *
+     * @throws DeadlineExceededException When the deadline of the current request is passed.
+     */
+    public static void check() throws DeadlineExceededException {
+        if (getRemainingNanos() == 0) throw new DeadlineExceededException();
+    }
+}
@@ -0,0 +1,26 @@
+package server.utility;
+
+/**
+ * Enum of request priority classes of the scheduler. Commands declare their classes.
+ * INTERACTIVE are cheap commands, that don't read the whole collection.
+ * UPDATE change single marines, SCAN read or change the whole collection.
+ * Weight is the share of the scheduler turns, that the class gets while all classes have requests.
+ */
+public enum RequestPriority {
+    INTERACTIVE(8),
+    UPDATE(4),
+    SCAN(1);
+
+    private final int weight;
+
+    RequestPriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return Share of the scheduler turns.
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,211 @@
+package server.utility;
+
+import common.exceptions.QueueFullException;
+import server.App;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs requests of all connections in a fair order, so one user with a heavy script doesn't starve the others.
+ * Every priority class has a queue for each client. Classes take turns by their weights, clients of a class take
+ * turns one request at a time. Client is the authenticated user or, while there is none, the connection or the
+ * address, from which the request came, never a username, that the client only names.
+ * Not more than the limit of requests run at once, each of them in a thread of the executor.
+ * Every bulkhead has its own scheduler, whose queue is limited, so requests over it are answered as busy at once.
+ * Uses a lock instead of a monitor, so submitting virtual threads are never pinned.
+ */
+public class RequestScheduler {
+    private static final long STRIDE = 1 << 20;
+
+    private Bulkhead bulkhead;
+    private Executor executor;
+    private int maxRunningRequests;
+    private int maxQueuedRequests;
+    private ServerMetrics metrics;
+    private Lock lock = new ReentrantLock();
+    // Are guarded by lock
+    private Map<RequestPriority, PriorityQueues> queues = new EnumMap<>(RequestPriority.class);
+    private long virtualTime;
+    private int runningRequests;
+    private int queuedRequests;
+
+    /**
+     * @param bulkhead           Bulkhead, whose requests are run.
+     * @param executor           Executes requests.
+     * @param maxRunningRequests Number of requests, that can run at once.
+     * @param maxQueuedRequests  Number of requests, that can wait for their turn.
+     * @param metrics            Metrics of the server.
+     */
+    public RequestScheduler(Bulkhead bulkhead, Executor executor, int maxRunningRequests, int maxQueuedRequests,
+                            ServerMetrics metrics) {
+        this.bulkhead = bulkhead;
+        this.executor = executor;
+        this.maxRunningRequests = maxRunningRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.metrics = metrics;
+        for (RequestPriority priority : RequestPriority.values()) queues.put(priority, new PriorityQueues(priority));
+    }
+
+    /**
+     * Queues request. It runs as soon as it's its turn and some place is free.
+     *
+     * @param priority Priority class of the request.
+     * @param client   Client, whose turn the request takes.
+     * @param job      Execution of the request.
+     * @throws QueueFullException         When too many requests wait for their turn.
+     * @throws RejectedExecutionException When executor doesn't take requests anymore.
+     */
+    public void execute(RequestPriority priority, Object client, Runnable job) {
+        ScheduledJob scheduledJob = new ScheduledJob(priority, client, job);
+        boolean isWorkerNeeded;
+        lock.lock();
+        try {
+            if (queuedRequests >= maxQueuedRequests) {
+                metrics.countRejectedBulkheadRequest(bulkhead);
+                throw new QueueFullException();
+            }
+            PriorityQueues priorityQueues = queues.get(scheduledJob.priority);
+            if (priorityQueues.isEmpty()) priorityQueues.pass = Math.max(priorityQueues.pass, virtualTime);
+            priorityQueues.add(scheduledJob);
+            metrics.addQueuedRequests(scheduledJob.priority, 1);
+            queuedRequests++;
+            isWorkerNeeded = runningRequests < maxRunningRequests;
+            if (isWorkerNeeded) runningRequests++;
+            metrics.countBulkheadRequest(bulkhead, runningRequests, queuedRequests);
+        } finally {
+            lock.unlock();
+        }
+        if (!isWorkerNeeded) return;
+        try {
+            executor.execute(this::runJobs);
+        } catch (RejectedExecutionException exception) {
+            lock.lock();
+            try {
+                runningRequests--;
+                if (queues.get(scheduledJob.priority).remove(scheduledJob)) {
+                    metrics.addQueuedRequests(scheduledJob.priority, -1);
+                    queuedRequests--;
+                }
+            } finally {
+                lock.unlock();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Worker cycle. Runs requests by their turns, while there are some.
+     */
+    private void runJobs() {
+        ScheduledJob scheduledJob;
+        while ((scheduledJob = takeNext()) != null) {
+            metrics.addQueuedRequests(scheduledJob.priority, -1);
+            long startTime = System.nanoTime();
+            metrics.countRequestWait(scheduledJob.priority, startTime - scheduledJob.queueTime);
+            try {
+                scheduledJob.job.run();
+            } catch (RuntimeException exception) {
+                App.logger.error("An error occurred while processing the request!");
+            } finally {
+                metrics.addBulkheadBusyTime(bulkhead, System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Chooses the class, that is the most behind its share, and the next user of it.
+     *
+     * @return Next request or null, if there are no requests and the worker should stop.
+     */
+    private ScheduledJob takeNext() {
+        lock.lock();
+        try {
+            PriorityQueues nextQueues = null;
+            for (PriorityQueues priorityQueues : queues.values()) {
+                if (!priorityQueues.isEmpty() && (nextQueues == null || priorityQueues.pass < nextQueues.pass))
+                    nextQueues = priorityQueues;
+            }
+            if (nextQueues == null) {
+                runningRequests--;
+                return null;
+            }
+            virtualTime = nextQueues.pass;
+            nextQueues.pass += STRIDE / nextQueues.priority.getWeight();
+            queuedRequests--;
+            return nextQueues.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request waiting for its turn.
+     */
+    private static class ScheduledJob {
+        private final RequestPriority priority;
+        private final Object client;
+        private final Runnable job;
+        private final long queueTime = System.nanoTime();
+
+        private ScheduledJob(RequestPriority priority, Object client, Runnable job) {
+            this.priority = priority;
+            this.client = client;
+            this.job = job;
+        }
+    }
+
+    /**
+     * Queues of the clients of one priority class. Clients, who have requests, take turns.
+     */
+    private static class PriorityQueues {
+        private final RequestPriority priority;
+        private Map<Object, Queue<ScheduledJob>> clientQueues = new HashMap<>();
+        private Queue<Object> clientTurns = new ArrayDeque<>();
+        private long pass;
+
+        private PriorityQueues(RequestPriority priority) {
+            this.priority = priority;
+        }
+
+        private boolean isEmpty() {
+            return clientTurns.isEmpty();
+        }
+
+        private void add(ScheduledJob scheduledJob) {
+            Queue<ScheduledJob> clientQueue = clientQueues.get(scheduledJob.client);
+            if (clientQueue == null) {
+                clientQueue = new ArrayDeque<>();
+                clientQueues.put(scheduledJob.client, clientQueue);
+                clientTurns.add(scheduledJob.client);
+            }
+            clientQueue.add(scheduledJob);
+        }
+
+        private ScheduledJob poll() {
+            Object client = clientTurns.poll();
+            Queue<ScheduledJob> clientQueue = clientQueues.get(client);
+            ScheduledJob scheduledJob = clientQueue.poll();
+            if (clientQueue.isEmpty()) clientQueues.remove(client);
+            else clientTurns.add(client);
+            return scheduledJob;
+        }
+
+        private boolean remove(ScheduledJob scheduledJob) {
+            Queue<ScheduledJob> clientQueue = clientQueues.get(scheduledJob.client);
+            if (clientQueue == null || !clientQueue.remove(scheduledJob)) return false;
+            if (clientQueue.isEmpty()) {
+                clientQueues.remove(scheduledJob.client);
+                clientTurns.remove(scheduledJob.client);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package server.utility;
+
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+
+/**
+ * Output of one request, that is passed to its command, so requests running at once never mix their texts.
+ * When the text reaches the chunk size, it is sent to the client at once,
+ * so big results don't stay in memory and the client gets them before the command ends.
+ * Buffers are taken from the shared pool and returned to it, when the response is done.
+ */
+public class ResponseContext implements AutoCloseable {
+    public static final int CHUNK_SIZE = 16 * 1024;
+    private static final BufferPool BUFFER_POOL = new BufferPool(256, 2 * CHUNK_SIZE);
+
+    private long requestId;
+    private ChunkSender chunkSender;
+    private StringBuilder stringBuilder = BUFFER_POOL.acquire();
+
+    /**
+     * @param requestId   ID of the request.
+     * @param chunkSender Where to send full chunks or null, if response can't be sent by parts.
+     */
+    public ResponseContext(long requestId, ChunkSender chunkSender) {
+        this.requestId = requestId;
+        this.chunkSender = chunkSender;
+    }
+
+    /**
+     * Append object to out to the end of string.
+     *
+     * @param toOut Object to Out.
+     */
+    public void append(Object toOut) {
+        stringBuilder.append(toOut);
+        if (chunkSender != null && stringBuilder.length() >= CHUNK_SIZE) {
+            chunkSender.sendChunk(new Response(requestId, ResponseCode.CHUNK, stringBuilder.toString()));
+            clear();
+        }
+    }
+
+    /**
+     * Append line break to the end of string.
+     */
+    public void appendln() {
+        append("\n");
+    }
+
+    /**
+     * Append object to out and line break to the end of string.
+     *
+     * @param toOut Object to Out.
+     */
+    public void appendln(Object toOut) {
+        append(toOut + "\n");
+    }
+
+    /**
+     * Append error description and line break to the end of string.
+     *
+     * @param toOut Error description.
+     */
+    public void appenderror(Object toOut) {
+        append("error: " + toOut + "\n");
+    }
+
+    /**
+     * Append a table with two elements to the end of the line.
+     *
+     * @param element1 First element for the table.
+     * @param element2 Second element for the table.
+     */
+    public void appendtable(Object element1, Object element2) {
+        append(String.format("%-37s%-1s%n", element1, element2));
+    }
+
+    /**
+     * Takes a constructed string, that wasn't sent by chunks yet.
+     *
+     * @return Сonstructed string.
+     */
+    public String getString() {
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Takes a constructed string, that wasn't sent by chunks yet, and clears the buffer.
+     *
+     * @return Сonstructed string.
+     */
+    public String getAndClear() {
+        String toReturn = stringBuilder.toString();
+        clear();
+        return toReturn;
+    }
+
+    /**
+     * Drops text, that wasn't sent yet. Buffer, that has grown too big, is released.
+     */
+    public void clear() {
+        if (stringBuilder.capacity() > BUFFER_POOL.getMaxCapacity()) stringBuilder = BUFFER_POOL.acquire();
+        else stringBuilder.setLength(0);
+    }
+
+    /**
+     * Returns the buffer to the pool, the context isn't used after it.
+     */
+    @Override
+    public void close() {
+        BUFFER_POOL.release(stringBuilder);
+        stringBuilder = null;
+    }
+}
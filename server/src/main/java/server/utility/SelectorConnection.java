@@ -0,0 +1,589 @@
+package server.utility;
+
+import common.exceptions.MessageRejectedException;
+import common.exceptions.QueueFullException;
+import common.interaction.CompressionType;
+import common.interaction.FrameCompressor;
+import common.interaction.Handshake;
+import common.interaction.MessageCodec;
+import common.interaction.MessageLimits;
+import common.interaction.MessageStream;
+import common.interaction.ObjectCodec;
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+import common.interaction.TrafficCounters;
+import common.utility.Outputer;
+import server.App;
+import server.Server;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking client connection of the selector mode.
+ * Reads frames on the event loop and passes complete requests to the scheduler.
+ * Several requests can be executed at once, when the limit is reached the connection stops reading.
+ * It stops reading also while its unwritten responses are bigger than the limit, and workers wait with the next
+ * parts of their responses, until the event loop writes the queue below the limit.
+ * Oversized frame is skipped while it arrives, without growing the read buffer.
+ * Drained connection stops reading, answers the requests it has already read and asks the client to reconnect.
+ * Requests over the limit of the server are answered as busy without running.
+ */
+public class SelectorConnection implements MonitoredConnection {
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private EventLoop eventLoop;
+    private Server server;
+    private SocketChannel clientChannel;
+    private CommandManager commandManager;
+    private Bulkheads scheduler;
+    private SessionTable sessionTable;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private ServerConfig config;
+    private int maxRequestsInFlight;
+    private MessageLimits requestLimits;
+    private SelectionKey key;
+    private volatile MessageCodec codec;
+    private volatile ChunkSender chunkSender;
+    private TrafficCounters trafficCounters = new TrafficCounters();
+    private volatile FrameCompressor compressor = new FrameCompressor(CompressionType.NONE, 0, trafficCounters);
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int bytesToSkip;
+    private Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private Lock queueLocker = new ReentrantLock();
+    private AtomicLong queuedBytes = new AtomicLong();
+    private Lock drainLocker = new ReentrantLock();
+    private Condition queueDrained = drainLocker.newCondition();
+    private volatile long peakQueuedBytes;
+    private volatile boolean closeAfterWrite;
+    private volatile boolean stopServerAfterWrite;
+    private volatile boolean isCloseRequested;
+    private volatile boolean isDraining;
+    private volatile long lastReadTime = System.nanoTime();
+    private volatile boolean isClosed;
+    // Are guarded by this
+    private int requestsInFlight;
+    private Request waitingFinalRequest;
+    private boolean isFinalRequestRunning;
+
+    public SelectorConnection(EventLoop eventLoop, Server server, SocketChannel clientChannel,
+                              CommandManager commandManager, Bulkheads scheduler, ServerConfig config) {
+        this.eventLoop = eventLoop;
+        this.server = server;
+        this.clientChannel = clientChannel;
+        this.commandManager = commandManager;
+        this.scheduler = scheduler;
+        this.sessionTable = new SessionTable(config.getMaxSessions());
+        this.concurrencyLimiter = server.getConcurrencyLimiter();
+        this.config = config;
+        this.maxRequestsInFlight = config.getMaxRequestsInFlight();
+        this.requestLimits = config.getRequestLimits();
+    }
+
+    /**
+     * @param key Selection key of the channel.
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Reads available bytes and passes complete requests to the workers.
+     */
+    void onReadable() {
+        try {
+            int count = clientChannel.read(readBuffer);
+            if (count == -1) {
+                close();
+                return;
+            }
+            if (count > 0) lastReadTime = System.nanoTime();
+            processBufferedFrames();
+        } catch (IOException exception) {
+            Outputer.printerror("Unexpected connection termination with the client!");
+            App.logger.warn("Unexpected connection termination with the client!");
+            close();
+        } catch (RuntimeException exception) {
+            closeBroken(exception);
+        }
+    }
+
+    /**
+     * Writes queued responses until the socket buffer is full.
+     */
+    void onWritable() {
+        try {
+            ByteBuffer frame;
+            while ((frame = writeQueue.peek()) != null) {
+                clientChannel.write(frame);
+                if (frame.hasRemaining()) return;
+                writeQueue.poll();
+                queuedBytes.addAndGet(-frame.limit());
+                server.getMetrics().addQueuedBytes(-frame.limit());
+                if (queuedBytes.get() <= config.getMaxQueuedBytes()) signalDrained();
+            }
+            if (closeAfterWrite) {
+                close();
+                if (stopServerAfterWrite) server.stop();
+                return;
+            }
+            updateInterest();
+        } catch (IOException exception) {
+            Outputer.printerror("An error occurred while sending data to the client!");
+            App.logger.error("An error occurred while sending data to the client!");
+            close();
+        } catch (RuntimeException exception) {
+            closeBroken(exception);
+        }
+    }
+
+    /**
+     * Sets interests by the state of the connection. Is called on the event loop thread.
+     */
+    void updateInterest() {
+        try {
+            if (isClosed || !key.isValid()) return;
+            if (isCloseRequested) {
+                close();
+                return;
+            }
+            if (isDraining && !closeAfterWrite && !hasRunningRequests()) askToReconnect();
+            boolean canRead = canReadRequests();
+            int interestOps = canRead ? SelectionKey.OP_READ : 0;
+            if (!writeQueue.isEmpty() || closeAfterWrite) interestOps |= SelectionKey.OP_WRITE;
+            key.interestOps(interestOps);
+            if (canRead && readBuffer.position() > 0) processBufferedFrames();
+        } catch (IOException exception) {
+            Outputer.printerror("An error occurred while reading received data!");
+            App.logger.error("An error occurred while reading received data!");
+            close();
+        } catch (RuntimeException exception) {
+            closeBroken(exception);
+        }
+    }
+
+    /**
+     * Closes only this connection, when handling of its client fails, so the event loop serves the others.
+     *
+     * @param exception Error of the handling.
+     */
+    private void closeBroken(RuntimeException exception) {
+        App.logger.error("An error occurred while handling the client, the connection is closed: " + exception);
+        close();
+    }
+
+    /**
+     * Closes the connection. Is called on the event loop thread.
+     */
+    void close() {
+        queueLocker.lock();
+        try {
+            if (isClosed) return;
+            isClosed = true;
+            server.getMetrics().addQueuedBytes(-queuedBytes.getAndSet(0));
+        } finally {
+            queueLocker.unlock();
+        }
+        compressor.close();
+        try {
+            server.getIdleMonitor().unregister(this);
+            key.cancel();
+            clientChannel.close();
+            Outputer.println("Client disconnected from the server.");
+            App.logger.info("Client disconnected from the server.");
+            App.logger.info("Traffic of the connection: " + trafficCounters + ", " + codec + ", peak queued bytes: " +
+                    peakQueuedBytes + ".");
+            if (codec != null) server.getMetrics().countCodec(codec);
+            server.getMetrics().countConnectionQueue(peakQueuedBytes);
+        } catch (IOException exception) {
+            Outputer.printerror("An error occurred while attempting to terminate the connection with the client!");
+            App.logger.error("An error occurred while attempting to terminate the connection with the client!");
+        }
+        signalDrained();
+        server.releaseConnection();
+    }
+
+    @Override
+    public long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    /**
+     * Writes of this mode never block a thread, slow clients only stop being read.
+     */
+    @Override
+    public long getWriteStartTime() {
+        return 0;
+    }
+
+    @Override
+    public synchronized int getRequestsInFlight() {
+        return requestsInFlight + (isFinalRequestRunning ? 1 : 0) + (waitingFinalRequest != null ? 1 : 0);
+    }
+
+    /**
+     * Only clients, that made the handshake, know heartbeats.
+     */
+    @Override
+    public boolean canReceiveHeartbeats() {
+        return chunkSender != null;
+    }
+
+    @Override
+    public void sendHeartbeat() {
+        queueResponse(new Response(ResponseCode.HEARTBEAT, ""));
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Asks the event loop to close the connection.
+     */
+    @Override
+    public void closeIdle() {
+        isCloseRequested = true;
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Asks the event loop to stop reading and to send the client away, when its requests are answered.
+     */
+    @Override
+    public void drain() {
+        isDraining = true;
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Asks the client of the drained connection to connect again later and closes the connection after that.
+     * Legacy clients are just disconnected.
+     */
+    private void askToReconnect() {
+        server.getMetrics().countDrainedConnection();
+        if (chunkSender != null) queueResponse(new Response(ResponseCode.RECONNECT, Server.RECONNECT_MESSAGE));
+        closeAfterWrite = true;
+    }
+
+    /**
+     * Takes complete frames from the read buffer, while the connection can accept new requests.
+     *
+     * @throws IOException When frame is incorrect.
+     */
+    private void processBufferedFrames() throws IOException {
+        readBuffer.flip();
+        try {
+            while (skipRejectedBytes() && readBuffer.remaining() >= MessageStream.HEADER_SIZE) {
+                if (!canReadRequests()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    break;
+                }
+                int frameHeader = readBuffer.getInt(readBuffer.position());
+                int length = FrameCompressor.payloadLength(frameHeader);
+                if (length > MessageStream.MAX_FRAME_SIZE) throw new IOException();
+                if (length > requestLimits.getMaxMessageBytes()) {
+                    int peekLength = Math.min(length, MessageLimits.PEEK_SIZE);
+                    if (readBuffer.remaining() < MessageStream.HEADER_SIZE + peekLength) break;
+                    readBuffer.position(readBuffer.position() + MessageStream.HEADER_SIZE);
+                    byte[] payloadStart = new byte[peekLength];
+                    readBuffer.get(payloadStart);
+                    bytesToSkip = length - peekLength;
+                    if (codec == null) codec = new ObjectCodec(config.getResetPolicy(), requestLimits);
+                    rejectRequest(requestLimits.rejectFrame(frameHeader, length, payloadStart, codec));
+                    continue;
+                }
+                if (readBuffer.remaining() < MessageStream.HEADER_SIZE + length) {
+                    if (readBuffer.remaining() == readBuffer.capacity()) growReadBuffer(length);
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + MessageStream.HEADER_SIZE);
+                byte[] payload = new byte[length];
+                readBuffer.get(payload);
+                try {
+                    payload = compressor.decompress(frameHeader, payload);
+                    if (codec == null) acceptHandshake(payload);
+                    else acceptRequest((Request) codec.decode(payload));
+                } catch (MessageRejectedException exception) {
+                    rejectRequest(exception);
+                }
+            }
+        } catch (ClassNotFoundException | ClassCastException exception) {
+            throw new IOException(exception);
+        } finally {
+            readBuffer.compact();
+        }
+        if (readBuffer.position() == 0 && readBuffer.capacity() > INITIAL_BUFFER_SIZE)
+            readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Drops buffered bytes of the rejected frame.
+     *
+     * @return Is the whole frame dropped.
+     */
+    private boolean skipRejectedBytes() {
+        int count = Math.min(bytesToSkip, readBuffer.remaining());
+        readBuffer.position(readBuffer.position() + count);
+        bytesToSkip -= count;
+        return bytesToSkip == 0;
+    }
+
+    /**
+     * Answers the request, that breaks the limits, with an error.
+     *
+     * @param exception Rejection of the request.
+     */
+    private void rejectRequest(MessageRejectedException exception) {
+        server.getMetrics().countRejectedRequest();
+        Outputer.printerror("Request of the client is rejected: " + exception.getMessage());
+        App.logger.warn("Request of the client is rejected: " + exception.getMessage());
+        queueResponse(new Response(exception.getRequestId(), ResponseCode.ERROR,
+                "error: Request is rejected by the server: " + exception.getMessage() + "\n"));
+        if (exception.isStreamBroken()) closeAfterWrite = true;
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * @return Can the connection take one more request now.
+     */
+    private synchronized boolean canReadRequests() {
+        return waitingFinalRequest == null && !isFinalRequestRunning && requestsInFlight < maxRequestsInFlight &&
+                !closeAfterWrite && !isDraining && queuedBytes.get() <= config.getMaxQueuedBytes();
+    }
+
+    /**
+     * @return Are some requests of the connection running or waiting for their turn.
+     */
+    private synchronized boolean hasRunningRequests() {
+        return requestsInFlight > 0 || isFinalRequestRunning || waitingFinalRequest != null;
+    }
+
+    /**
+     * Agrees on the codec and compression with the client.
+     * Client, that starts without handshake, gets Java serialization and its first frame is a request.
+     *
+     * @param payload Payload of the first frame.
+     * @throws IOException            When request cannot be decoded.
+     * @throws ClassNotFoundException When request has unknown class.
+     */
+    private void acceptHandshake(byte[] payload) throws IOException, ClassNotFoundException {
+        Handshake offer = Handshake.fromBytes(payload);
+        if (offer == null) {
+            codec = new ObjectCodec(config.getResetPolicy(), requestLimits);
+            App.logger.info("Settings of the connection: " + Handshake.legacy().getCodec() + ", " +
+                    Handshake.legacy().getCompression() + ".");
+            acceptRequest((Request) codec.decode(payload));
+            return;
+        }
+        Handshake settings = config.getSupportedSettings().agree(offer);
+        queueFrame(settings.toBytes());
+        if (settings.getCodec() == null) {
+            Outputer.printerror("Client doesn't support any codec of the server!");
+            App.logger.warn("Client doesn't support any codec of the server!");
+            closeAfterWrite = true;
+        } else {
+            compressor = new FrameCompressor(settings.getCompression(), config.getCompressionThreshold(),
+                    requestLimits.getMaxMessageBytes(), trafficCounters);
+            codec = settings.getCodec().newCodec(config.getResetPolicy(), requestLimits);
+            chunkSender = this::sendChunk;
+            App.logger.info("Settings of the connection: " + settings.getCodec() + ", " + settings.getCompression() +
+                    ".");
+        }
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Starts request execution. Final request waits until all previous ones are answered.
+     *
+     * @param userRequest Request of the client.
+     */
+    private synchronized void acceptRequest(Request userRequest) {
+        if (userRequest.isHeartbeat()) return;
+        RequestDeadline.startCountdown(userRequest, config.getRequestTimeout());
+        if (ConnectionHandler.isFinalRequest(userRequest)) {
+            if (requestsInFlight == 0) {
+                isFinalRequestRunning = true;
+                submitRequest(userRequest, true);
+            } else waitingFinalRequest = userRequest;
+        } else if (!concurrencyLimiter.tryAcquire()) {
+            queueResponse(ConnectionHandler.rejectBusy(userRequest, server));
+            eventLoop.requestUpdate(this);
+        } else {
+            requestsInFlight++;
+            submitRequest(userRequest, false);
+        }
+    }
+
+    /**
+     * Marks request as answered and starts the waiting final request, if it's its turn.
+     *
+     * @param isFinal Was it final request.
+     */
+    private void finishRequest(boolean isFinal) {
+        Request nextRequest = null;
+        synchronized (this) {
+            if (isFinal) isFinalRequestRunning = false;
+            else requestsInFlight--;
+            if (waitingFinalRequest != null && requestsInFlight == 0) {
+                nextRequest = waitingFinalRequest;
+                waitingFinalRequest = null;
+                isFinalRequestRunning = true;
+            }
+        }
+        if (nextRequest != null) submitRequest(nextRequest, true);
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Passes request to the scheduler of its bulkhead, that runs it in the pool of the bulkhead,
+     * and queues its response. When the queue of the bulkhead is full, the request is answered as busy.
+     *
+     * @param userRequest Request of the client.
+     * @param isFinal     Is it final request.
+     */
+    private void submitRequest(Request userRequest, boolean isFinal) {
+        long admissionTime = System.nanoTime();
+        try {
+            if (!sessionTable.submit(userRequest, sessionRequest -> {
+                try {
+                    Response responseToUser;
+                    try {
+                        responseToUser = new HandleRequestTask(sessionRequest, commandManager, chunkSender,
+                                server.getMetrics()).invoke();
+                        App.logger.info("Запрос '" + sessionRequest.getCommandName() + "' обработан.");
+                    } catch (RuntimeException exception) {
+                        responseToUser = ConnectionHandler.failRequest(sessionRequest, exception);
+                    }
+                    queueResponse(responseToUser);
+                    return responseToUser;
+                } finally {
+                    if (!isFinal) concurrencyLimiter.release(admissionTime);
+                    finishRequest(isFinal);
+                }
+            }, (client, job) -> scheduler.execute(userRequest, client, job))) {
+                if (!isFinal) concurrencyLimiter.cancel();
+                queueResponse(ConnectionHandler.rejectSession(userRequest));
+                finishRequest(isFinal);
+            }
+        } catch (QueueFullException exception) {
+            if (!isFinal) concurrencyLimiter.cancel();
+            queueResponse(ConnectionHandler.rejectBusy(userRequest, server));
+            finishRequest(isFinal);
+        } catch (RejectedExecutionException exception) {
+            if (!isFinal) concurrencyLimiter.cancel();
+            App.logger.warn("Request was rejected, because the server is stopping.");
+        }
+    }
+
+    /**
+     * Queues part of the response and wakes the event loop to write it.
+     *
+     * @param chunk Part of the response.
+     */
+    private void sendChunk(Response chunk) {
+        awaitBelowLimit();
+        if (isClosed) return;
+        queueResponse(chunk);
+        eventLoop.requestUpdate(this);
+    }
+
+    /**
+     * Waits until the event loop writes the queue below the limit or the connection is closed.
+     * Doesn't wait longer than the deadline of the current request.
+     */
+    private void awaitBelowLimit() {
+        drainLocker.lock();
+        try {
+            long remainingNanos = RequestDeadline.getRemainingNanos();
+            while (queuedBytes.get() > config.getMaxQueuedBytes() && !isClosed && remainingNanos > 0) {
+                if (remainingNanos == Long.MAX_VALUE) queueDrained.await();
+                else remainingNanos = queueDrained.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            drainLocker.unlock();
+        }
+    }
+
+    /**
+     * Wakes workers, that wait for the queue to be written.
+     */
+    private void signalDrained() {
+        drainLocker.lock();
+        try {
+            queueDrained.signalAll();
+        } finally {
+            drainLocker.unlock();
+        }
+    }
+
+    /**
+     * Encodes response and puts it into the write queue.
+     * Responses are queued in the order of encoding, because the codec may keep state between them.
+     *
+     * @param responseToUser Response to the client.
+     */
+    private void queueResponse(Response responseToUser) {
+        try {
+            queueLocker.lock();
+            try {
+                if (isClosed) return;
+                queueFrame(codec.encode(responseToUser));
+            } finally {
+                queueLocker.unlock();
+            }
+            if (responseToUser.getResponseCode() == ResponseCode.SERVER_EXIT) stopServerAfterWrite = true;
+            if (responseToUser.getResponseCode() == ResponseCode.SERVER_EXIT ||
+                    (responseToUser.getResponseCode() == ResponseCode.CLIENT_EXIT &&
+                            responseToUser.getSessionId() == 0)) closeAfterWrite = true;
+        } catch (IOException exception) {
+            Outputer.printerror("An error occurred while sending data to the client!");
+            App.logger.error("An error occurred while sending data to the client!");
+        }
+    }
+
+    /**
+     * Frame of the closed connection is dropped, so its bytes aren't counted after close() has taken them back.
+     *
+     * @param rawPayload Bytes of the message, are compressed if it is worth it.
+     */
+    private void queueFrame(byte[] rawPayload) {
+        byte[] payload = compressor.compress(rawPayload);
+        ByteBuffer frame = ByteBuffer.allocate(MessageStream.HEADER_SIZE + payload.length);
+        frame.putInt(FrameCompressor.frameHeader(payload, payload != rawPayload)).put(payload).flip();
+        queueLocker.lock();
+        try {
+            if (isClosed) return;
+            writeQueue.add(frame);
+            long connectionQueuedBytes = queuedBytes.addAndGet(frame.limit());
+            if (connectionQueuedBytes > peakQueuedBytes) peakQueuedBytes = connectionQueuedBytes;
+            server.getMetrics().addQueuedBytes(frame.limit());
+        } finally {
+            queueLocker.unlock();
+        }
+    }
+
+    /**
+     * Doubles read buffer, that is filled by the start of the frame, but not beyond the frame.
+     * So the buffer grows only as the bytes arrive and the declared length alone doesn't reserve memory.
+     *
+     * @param frameLength Length of the frame payload.
+     */
+    private void growReadBuffer(int frameLength) {
+        int capacity = (int) Math.min(MessageStream.HEADER_SIZE + (long) frameLength, 2L * readBuffer.capacity());
+        ByteBuffer biggerBuffer = ByteBuffer.allocate(capacity);
+        biggerBuffer.put(readBuffer);
+        readBuffer = biggerBuffer;
+        readBuffer.flip();
+    }
+}
@@ -0,0 +1,382 @@
+package server.utility;
+
+import common.interaction.MessageCodec;
+import common.interaction.ObjectCodec;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of the server work, that are written to the log when the server stops.
+ */
+public class ServerMetrics {
+    private long startTime = System.nanoTime();
+    private AtomicLong acceptedConnections = new AtomicLong();
+    private AtomicLong refusedConnections = new AtomicLong();
+    private AtomicLong acceptErrors = new AtomicLong();
+    private AtomicLong acceptSecond = new AtomicLong();
+    private AtomicLong acceptsInSecond = new AtomicLong();
+    private AtomicLong maxAcceptsPerSecond = new AtomicLong();
+    private AtomicLong heartbeatsSent = new AtomicLong();
+    private AtomicLong idleConnectionsClosed = new AtomicLong();
+    private AtomicLong stalledConnectionsClosed = new AtomicLong();
+    private AtomicLong streamResets = new AtomicLong();
+    private AtomicLong maxRetainedMessages = new AtomicLong();
+    private AtomicLong maxRetainedBytes = new AtomicLong();
+    private AtomicLong requestsRejected = new AtomicLong();
+    private AtomicLong requestsShed = new AtomicLong();
+    private AtomicLong expiredRequestsSkipped = new AtomicLong();
+    private AtomicLong expiredRequestsStopped = new AtomicLong();
+    private AtomicLong queuedBytes = new AtomicLong();
+    private AtomicLong maxConnectionQueuedBytes = new AtomicLong();
+    private AtomicLong drainedConnections = new AtomicLong();
+    private AtomicLong undrainedConnectionsClosed = new AtomicLong();
+    private AtomicLong httpRequests = new AtomicLong();
+    // Are indexed by ordinals of request priorities
+    private AtomicLongArray queuedRequests = new AtomicLongArray(RequestPriority.values().length);
+    private AtomicLongArray maxQueuedRequests = new AtomicLongArray(RequestPriority.values().length);
+    private AtomicLongArray scheduledRequests = new AtomicLongArray(RequestPriority.values().length);
+    private AtomicLongArray requestWaitNanos = new AtomicLongArray(RequestPriority.values().length);
+    private AtomicLongArray maxRequestWaitNanos = new AtomicLongArray(RequestPriority.values().length);
+    // Are indexed by ordinals of bulkheads
+    private AtomicLongArray bulkheadRequests = new AtomicLongArray(Bulkhead.values().length);
+    private AtomicLongArray rejectedBulkheadRequests = new AtomicLongArray(Bulkhead.values().length);
+    private AtomicLongArray maxRunningBulkheadRequests = new AtomicLongArray(Bulkhead.values().length);
+    private AtomicLongArray maxQueuedBulkheadRequests = new AtomicLongArray(Bulkhead.values().length);
+    private AtomicLongArray bulkheadBusyNanos = new AtomicLongArray(Bulkhead.values().length);
+
+    /**
+     * Counts accepted client and the accepts of the current second.
+     * Is called by all acceptors, so it only uses atomic counters.
+     */
+    public void countAcceptedConnection() {
+        acceptedConnections.incrementAndGet();
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+        long previousSecond = acceptSecond.get();
+        if (second != previousSecond && acceptSecond.compareAndSet(previousSecond, second)) acceptsInSecond.set(0);
+        maxAcceptsPerSecond.accumulateAndGet(acceptsInSecond.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * Counts accepted client, that was closed at once, because the server has too many clients.
+     */
+    public void countRefusedConnection() {
+        refusedConnections.incrementAndGet();
+    }
+
+    /**
+     * Counts failed accept, e.g. when the process has no free file descriptors.
+     */
+    public void countAcceptError() {
+        acceptErrors.incrementAndGet();
+    }
+
+    /**
+     * Counts heartbeat sent to an idle client.
+     */
+    public void countHeartbeat() {
+        heartbeatsSent.incrementAndGet();
+    }
+
+    /**
+     * Counts connection closed because the client was silent too long.
+     */
+    public void countIdleConnectionClosed() {
+        idleConnectionsClosed.incrementAndGet();
+    }
+
+    /**
+     * Counts connection closed because the client didn't read responses too long.
+     */
+    public void countStalledConnectionClosed() {
+        stalledConnectionsClosed.incrementAndGet();
+    }
+
+    /**
+     * Counts request rejected because it breaks the limits.
+     */
+    public void countRejectedRequest() {
+        requestsRejected.incrementAndGet();
+    }
+
+    /**
+     * Counts request rejected as busy because the server works on too many requests.
+     */
+    public void countShedRequest() {
+        requestsShed.incrementAndGet();
+    }
+
+    /**
+     * Counts request, whose deadline passed.
+     *
+     * @param isStarted Was it stopped while running, otherwise it was skipped in the queue.
+     */
+    public void countExpiredRequest(boolean isStarted) {
+        if (isStarted) expiredRequestsStopped.incrementAndGet();
+        else expiredRequestsSkipped.incrementAndGet();
+    }
+
+    /**
+     * Counts connection, whose client was asked to reconnect, because the server stops.
+     */
+    public void countDrainedConnection() {
+        drainedConnections.incrementAndGet();
+    }
+
+    /**
+     * @param closedConnections Connections closed because they weren't drained before the deadline.
+     */
+    public void countUndrainedConnectionsClosed(int closedConnections) {
+        undrainedConnectionsClosed.addAndGet(closedConnections);
+    }
+
+    /**
+     * Counts request received by the HTTP gateway.
+     */
+    public void countHttpRequest() {
+        httpRequests.incrementAndGet();
+    }
+
+    /**
+     * @param priority Class of the requests.
+     * @param requests Requests, that were queued by the scheduler, negative when they start.
+     */
+    public void addQueuedRequests(RequestPriority priority, int requests) {
+        long depth = queuedRequests.addAndGet(priority.ordinal(), requests);
+        maxQueuedRequests.accumulateAndGet(priority.ordinal(), depth, Math::max);
+    }
+
+    /**
+     * Counts started request and the time it waited for its turn.
+     *
+     * @param priority  Class of the request.
+     * @param waitNanos Time in the scheduler queue.
+     */
+    public void countRequestWait(RequestPriority priority, long waitNanos) {
+        scheduledRequests.incrementAndGet(priority.ordinal());
+        requestWaitNanos.addAndGet(priority.ordinal(), waitNanos);
+        maxRequestWaitNanos.accumulateAndGet(priority.ordinal(), waitNanos, Math::max);
+    }
+
+    /**
+     * @param priority Class of the requests.
+     * @return Number of requests of the class, that wait for their turn now.
+     */
+    public long getQueuedRequests(RequestPriority priority) {
+        return queuedRequests.get(priority.ordinal());
+    }
+
+    /**
+     * @param priority Class of the requests.
+     * @return Average time in milliseconds, that requests of the class waited for their turn.
+     */
+    public double getAverageRequestWait(RequestPriority priority) {
+        long requests = scheduledRequests.get(priority.ordinal());
+        if (requests == 0) return 0;
+        return requestWaitNanos.get(priority.ordinal()) / (double) requests / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Counts request taken by the bulkhead and how full the bulkhead is with it.
+     *
+     * @param bulkhead        Bulkhead of the request.
+     * @param runningRequests Requests, that the bulkhead runs now.
+     * @param queuedRequests  Requests, that wait in the bulkhead now.
+     */
+    public void countBulkheadRequest(Bulkhead bulkhead, int runningRequests, int queuedRequests) {
+        bulkheadRequests.incrementAndGet(bulkhead.ordinal());
+        maxRunningBulkheadRequests.accumulateAndGet(bulkhead.ordinal(), runningRequests, Math::max);
+        maxQueuedBulkheadRequests.accumulateAndGet(bulkhead.ordinal(), queuedRequests, Math::max);
+    }
+
+    /**
+     * Counts request rejected as busy because the queue of its bulkhead is full.
+     *
+     * @param bulkhead Bulkhead of the request.
+     */
+    public void countRejectedBulkheadRequest(Bulkhead bulkhead) {
+        rejectedBulkheadRequests.incrementAndGet(bulkhead.ordinal());
+    }
+
+    /**
+     * @param bulkhead  Bulkhead, whose thread ran the request.
+     * @param busyNanos Time, that the request took the thread.
+     */
+    public void addBulkheadBusyTime(Bulkhead bulkhead, long busyNanos) {
+        bulkheadBusyNanos.addAndGet(bulkhead.ordinal(), busyNanos);
+    }
+
+    /**
+     * @param bulkhead Bulkhead of the requests.
+     * @return Number of requests rejected, because the queue of the bulkhead was full.
+     */
+    public long getRejectedBulkheadRequests(Bulkhead bulkhead) {
+        return rejectedBulkheadRequests.get(bulkhead.ordinal());
+    }
+
+    /**
+     * @param bulkhead Bulkhead of the requests.
+     * @return Average time in milliseconds, that requests of the bulkhead took its threads.
+     */
+    public double getAverageBulkheadBusyTime(Bulkhead bulkhead) {
+        long requests = bulkheadRequests.get(bulkhead.ordinal());
+        if (requests == 0) return 0;
+        return bulkheadBusyNanos.get(bulkhead.ordinal()) / (double) requests / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param bytes Bytes of responses, that were queued for writing, negative when they are written.
+     */
+    public void addQueuedBytes(long bytes) {
+        queuedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param peakQueuedBytes The biggest outbound queue of the closed connection.
+     */
+    public void countConnectionQueue(long peakQueuedBytes) {
+        maxConnectionQueuedBytes.accumulateAndGet(peakQueuedBytes, Math::max);
+    }
+
+    /**
+     * Adds object stream statistics of the closed connection.
+     *
+     * @param codec Codec of the connection.
+     */
+    public void countCodec(MessageCodec codec) {
+        if (!(codec instanceof ObjectCodec)) return;
+        ObjectCodec objectCodec = (ObjectCodec) codec;
+        streamResets.addAndGet(objectCodec.getResets());
+        maxRetainedMessages.accumulateAndGet(objectCodec.getRetainedMessages(), Math::max);
+        maxRetainedBytes.accumulateAndGet(objectCodec.getRetainedBytes(), Math::max);
+    }
+
+    /**
+     * @return Number of accepted clients.
+     */
+    public long getAcceptedConnections() {
+        return acceptedConnections.get();
+    }
+
+    /**
+     * @return Number of failed accepts.
+     */
+    public long getAcceptErrors() {
+        return acceptErrors.get();
+    }
+
+    /**
+     * @return Average number of accepted clients per second since the start.
+     */
+    public double getAcceptRate() {
+        double seconds = Math.max(1, System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        return acceptedConnections.get() / seconds;
+    }
+
+    /**
+     * @return The biggest number of clients, accepted during one second.
+     */
+    public long getMaxAcceptsPerSecond() {
+        return maxAcceptsPerSecond.get();
+    }
+
+    /**
+     * @return Number of heartbeats sent.
+     */
+    public long getHeartbeatsSent() {
+        return heartbeatsSent.get();
+    }
+
+    /**
+     * @return Number of connections closed as idle.
+     */
+    public long getIdleConnectionsClosed() {
+        return idleConnectionsClosed.get();
+    }
+
+    /**
+     * @return Number of requests rejected by the limits.
+     */
+    public long getRequestsRejected() {
+        return requestsRejected.get();
+    }
+
+    /**
+     * @return Number of requests rejected as busy.
+     */
+    public long getRequestsShed() {
+        return requestsShed.get();
+    }
+
+    /**
+     * @return Number of requests skipped, because their deadline passed in the queue.
+     */
+    public long getExpiredRequestsSkipped() {
+        return expiredRequestsSkipped.get();
+    }
+
+    /**
+     * @return Number of requests stopped, because their deadline passed while they were running.
+     */
+    public long getExpiredRequestsStopped() {
+        return expiredRequestsStopped.get();
+    }
+
+    /**
+     * @return Bytes of responses of all connections, that are not written yet.
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return Requests, queue depth and wait time of every priority class.
+     */
+    private String schedulerMetrics() {
+        StringBuilder builder = new StringBuilder("[");
+        for (RequestPriority priority : RequestPriority.values()) {
+            int index = priority.ordinal();
+            if (index > 0) builder.append("; ");
+            builder.append(priority).append(": ").append(scheduledRequests.get(index)).append(" requests, queued ")
+                    .append(queuedRequests.get(index)).append(" (max ").append(maxQueuedRequests.get(index))
+                    .append(String.format("), wait %.2f ms (max %.2f ms)", getAverageRequestWait(priority),
+                            maxRequestWaitNanos.get(index) / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return builder.append("]").toString();
+    }
+
+    /**
+     * @return Requests, the most running and queued ones, rejections and busy time of every bulkhead.
+     */
+    private String bulkheadMetrics() {
+        StringBuilder builder = new StringBuilder("[");
+        for (Bulkhead bulkhead : Bulkhead.values()) {
+            int index = bulkhead.ordinal();
+            if (index > 0) builder.append("; ");
+            builder.append(bulkhead).append(": ").append(bulkheadRequests.get(index)).append(" requests, max running ")
+                    .append(maxRunningBulkheadRequests.get(index)).append(", max queued ")
+                    .append(maxQueuedBulkheadRequests.get(index)).append(", rejected ")
+                    .append(rejectedBulkheadRequests.get(index))
+                    .append(String.format(", busy %.2f ms", getAverageBulkheadBusyTime(bulkhead)));
+        }
+        return builder.append("]").toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ServerMetrics[accepted connections: " + acceptedConnections + String.format(", accept rate: %.2f/s",
+                getAcceptRate()) + ", max accepts per second: " + maxAcceptsPerSecond + ", refused connections: " +
+                refusedConnections + ", accept errors: " + acceptErrors + ", heartbeats sent: " +
+                heartbeatsSent + ", idle connections closed: " +
+                idleConnectionsClosed + ", stalled connections closed: " + stalledConnectionsClosed +
+                ", object stream resets: " + streamResets + ", max retained messages: " +
+                maxRetainedMessages + ", max retained bytes: " + maxRetainedBytes + ", requests rejected: " +
+                requestsRejected + ", requests shed: " + requestsShed + ", expired requests skipped: " +
+                expiredRequestsSkipped + ", expired requests stopped: " + expiredRequestsStopped + ", queued bytes: " +
+                queuedBytes + ", max queued bytes of a connection: " + maxConnectionQueuedBytes +
+                ", drained connections: " + drainedConnections + ", undrained connections closed: " +
+                undrainedConnectionsClosed + ", HTTP requests: " + httpRequests + ", scheduler: " + schedulerMetrics() +
+                ", bulkheads: " + bulkheadMetrics() + "]";
+    }
+}
@@ -0,0 +1,197 @@
+package server.utility;
+
+import common.interaction.Request;
+import common.interaction.Response;
+import common.interaction.ResponseCode;
+import common.interaction.User;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Sessions of one connection, so a gateway can serve many users over a few connections.
+ * Every request names its session, session 0 is the connection itself and works as before.
+ * Other sessions remember their user after 'login' or 'register', so next requests may come without it,
+ * and run their requests one after another in the order of arrival, while different sessions run in parallel.
+ * 'exit' of such session ends only the session.
+ * Requests are scheduled in the turn of the user, that the session or the connection authenticated by 'login' or
+ * 'register'. Until then they take the turn of the connection, so the username, that the client names in a request,
+ * doesn't choose its turn.
+ */
+class SessionTable {
+    static final String TOO_MANY_SESSIONS_MESSAGE = "error: Connection has too many sessions!\n";
+
+    private int maxSessions;
+    private Lock lock = new ReentrantLock();
+    // Are guarded by lock
+    private Map<Long, Session> sessions = new HashMap<>();
+    private String connectionUsername;
+
+    /**
+     * @param maxSessions Number of sessions, that the connection can have at once.
+     */
+    SessionTable(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Starts the request after the previous requests of its session.
+     *
+     * @param request Request of the client.
+     * @param job     Executes the request and sends its response.
+     * @param starter Starts the job in the turn of the client, e.g. passes both to the scheduler.
+     * @return Is request taken, false if there are too many sessions.
+     * @throws RejectedExecutionException When starter doesn't take jobs anymore.
+     */
+    boolean submit(Request request, Function<Request, Response> job, BiConsumer<Object, Runnable> starter) {
+        if (request.getSessionId() == 0) {
+            starter.accept(getClient(null), () -> remember(null, request, job.apply(request)));
+            return true;
+        }
+        SessionJob sessionJob;
+        lock.lock();
+        try {
+            Session session = sessions.get(request.getSessionId());
+            if (session == null) {
+                if (sessions.size() >= maxSessions) return false;
+                session = new Session(request.getSessionId());
+                sessions.put(session.id, session);
+            }
+            session.isClosed = false;
+            sessionJob = new SessionJob(session, request, job, starter);
+            if (session.isRunning) {
+                session.waitingJobs.add(sessionJob);
+                return true;
+            }
+            session.isRunning = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            starter.accept(getClient(sessionJob.session), () -> run(sessionJob));
+        } catch (RejectedExecutionException exception) {
+            takeNext(sessionJob.session);
+            throw exception;
+        }
+        return true;
+    }
+
+    /**
+     * @param session Session of the request, null for the connection itself.
+     * @return Username, that the session or the connection authenticated, or the table of the connection.
+     */
+    private Object getClient(Session session) {
+        lock.lock();
+        try {
+            if (session != null && session.user != null) return session.user.getUsername();
+            return connectionUsername != null ? connectionUsername : this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remembers the result of authorization.
+     *
+     * @param session  Session of the request, null for the connection itself.
+     * @param request  Executed request.
+     * @param response Response to it.
+     * @return The response.
+     */
+    private Response remember(Session session, Request request, Response response) {
+        boolean isAuthorized = response.getResponseCode() == ResponseCode.OK && request.getUser() != null &&
+                (request.getCommandName().equals("login") || request.getCommandName().equals("register"));
+        lock.lock();
+        try {
+            if (session == null) {
+                if (isAuthorized) connectionUsername = request.getUser().getUsername();
+            } else if (response.getResponseCode() == ResponseCode.CLIENT_EXIT) {
+                session.user = null;
+                session.isClosed = true;
+            } else if (isAuthorized) session.user = request.getUser();
+        } finally {
+            lock.unlock();
+        }
+        return response;
+    }
+
+    /**
+     * Runs the job with the user of the session, remembers the result of authorization and starts the next job.
+     *
+     * @param sessionJob Job of the session.
+     */
+    private void run(SessionJob sessionJob) {
+        Session session = sessionJob.session;
+        Request request = sessionJob.request;
+        SessionJob nextJob;
+        try {
+            if (request.getUser() == null) request.setUser(session.user);
+            remember(session, request, sessionJob.job.apply(request));
+        } finally {
+            nextJob = takeNext(session);
+        }
+        if (nextJob == null) return;
+        try {
+            nextJob.starter.accept(getClient(session), () -> run(nextJob));
+        } catch (RejectedExecutionException exception) {
+            run(nextJob);
+        }
+    }
+
+    /**
+     * @param session Session, whose job is finished.
+     * @return Next job of the session or null, if it has none.
+     */
+    private SessionJob takeNext(Session session) {
+        lock.lock();
+        try {
+            SessionJob nextJob = session.waitingJobs.poll();
+            if (nextJob != null) return nextJob;
+            session.isRunning = false;
+            if (session.isClosed) sessions.remove(session.id);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Session of one user.
+     */
+    private static class Session {
+        private final long id;
+        private User user;
+        private boolean isRunning;
+        private boolean isClosed;
+        private Queue<SessionJob> waitingJobs = new ArrayDeque<>();
+
+        private Session(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Request waiting for the previous requests of its session.
+     */
+    private static class SessionJob {
+        private final Session session;
+        private final Request request;
+        private final Function<Request, Response> job;
+        private final BiConsumer<Object, Runnable> starter;
+
+        private SessionJob(Session session, Request request, Function<Request, Response> job,
+                           BiConsumer<Object, Runnable> starter) {
+            this.session = session;
+            this.request = request;
+            this.job = job;
+            this.starter = starter;
+        }
+    }
+}
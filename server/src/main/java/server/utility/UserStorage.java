@@ -0,0 +1,23 @@
+package server.utility;
+
+import common.exceptions.DatabaseHandlingException;
+import common.interaction.User;
+
+/**
+ * Persistent storage of the users. Passwords are stored hashed.
+ */
+public interface UserStorage {
+    /**
+     * @param user User with the hashed password.
+     * @return Is there such user with such password.
+     * @throws DatabaseHandlingException When storage cannot be read.
+     */
+    boolean checkUserByUsernameAndPassword(User user) throws DatabaseHandlingException;
+
+    /**
+     * @param user User with the hashed password.
+     * @return Was user added, false if the username is taken.
+     * @throws DatabaseHandlingException When user cannot be stored.
+     */
+    boolean insertUser(User user) throws DatabaseHandlingException;
+}
@@ -0,0 +1,22 @@
+package server.utility;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads. They exist since Java 21, so they are looked up at runtime.
+ */
+public class VirtualThreads {
+    /**
+     * @return Executor, that starts a new virtual thread for each task.
+     * @throws UnsupportedOperationException When the running JVM has no virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", exception);
+        }
+    }
+}